@@ -12,6 +12,8 @@ plugins {
 	kotlin("kapt") version "1.8.21"
 	kotlin("plugin.lombok") version "1.9.0"
 	id("io.freefair.lombok") version "8.1.0"
+	id("org.hibernate.orm") version "6.2.2.Final"
+	id("me.champeau.jmh") version "0.7.1"
 }
 
 group = "com.ailegorreta"
@@ -69,6 +71,10 @@ dependencies {
 	// implementation("org.springframework.boot:spring-boot-starter-data-r2dbc")	// Reactive version
 	// implementation("org.springframework.retry:spring-retry")						// Reactive version
 	implementation("org.springframework.boot:spring-boot-starter-graphql")
+	implementation("org.springframework.boot:spring-boot-starter-websocket")		// GraphQL subscriptions
+	implementation("com.github.ben-manes.caffeine:caffeine")
+	implementation("com.github.ben-manes.caffeine:jcache")				// Hibernate second-level cache provider
+	implementation("org.hibernate.orm:hibernate-jcache")
 
 	implementation("org.springframework.boot:spring-boot-starter-oauth2-client")
 	implementation("org.springframework.boot:spring-boot-starter-oauth2-resource-server")
@@ -80,6 +86,7 @@ dependencies {
 
 	implementation("org.springframework.cloud:spring-cloud-stream")
 	implementation("org.springframework.cloud:spring-cloud-stream-binder-kafka-streams")
+	implementation("org.springframework.kafka:spring-kafka")			// param-audit listener (cache invalidation)
 
 	annotationProcessor("org.springframework.boot:spring-boot-configuration-processor")
 	kapt("org.springframework.boot:spring-boot-configuration-processor")
@@ -168,6 +175,21 @@ kapt {
 	}
 }
 
+hibernate {
+	enhancement {
+		enableLazyInitialization.set(true)
+		// ^ needed for the lazy inverse one-to-one Template.content and Datasource.content
+	}
+}
+
+jmh {
+	// ./gradlew jmh : gc.alloc.rate.norm is the number of bytes allocated per event
+	profilers.add("gc")
+	fork.set(1)
+	warmupIterations.set(3)
+	iterations.set(5)
+}
+
 kotlinLombok {
 	lombokConfigurationFile(file("lombok.config"))
 }
@@ -0,0 +1,89 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  EventSerializationBenchmark.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice;
+
+import com.ailegorreta.paramservice.domain.Template;
+import com.ailegorreta.paramservice.domain.TemplateField;
+import com.ailegorreta.paramservice.service.EventService;
+import com.ailegorreta.paramservice.service.TemplateEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes allocated per event body: the old path (writeValueAsString + readTree + ObjectNode over the whole
+ * Template with its fields) against the streaming path over the TemplateEvent projection.
+ *
+ * Run with ./gradlew jmh and compare gc.alloc.rate.norm (bytes/op) of both benchmarks.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventSerializationBenchmark {
+    private ObjectMapper mapper;
+    private ObjectWriter bodyWriter;
+    private Template     template;
+
+    @Setup
+    public void setup() {
+        mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                                   .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
+                                   .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        bodyWriter = mapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        template = new Template(UUID.randomUUID(), "Estado de cuenta", "/templates/edocta.html",
+                                Template.DestinoType.Email, "{\"pages\": []}", "<xml></xml>",
+                                LocalDate.now(), LocalDate.now(), "rlh", true, new ArrayList<>());
+        for (int i = 0; i < 20; i++)
+            template.getCampos().add(new TemplateField(UUID.randomUUID(), template, "campo" + i,
+                                                       TemplateField.FieldType.Texto, "valor" + i));
+    }
+
+    @Benchmark
+    public String treeOfEntity() throws Exception {
+        var eventBody = mapper.readTree(mapper.writeValueAsString(template));
+        var parentNode = mapper.createObjectNode();
+
+        parentNode.put("notificaFacultad", "NOTIFICA_PARAM");
+        parentNode.set("datos", (JsonNode) eventBody);
+
+        return bodyWriter.writeValueAsString(parentNode);
+    }
+
+    @Benchmark
+    public String streamOfProjection() {
+        return EventService.eventBody(bodyWriter, TemplateEvent.of(template));
+    }
+}
@@ -25,12 +25,14 @@ package com.ailegorreta.paramservice;
 import com.ailegorreta.commons.utils.HasLogger;
 import com.ailegorreta.paramservice.domain.*;
 import com.ailegorreta.paramservice.service.EventService;
-import jakarta.transaction.Transactional;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -41,6 +43,9 @@ import java.util.UUID;
 /**
  * Initialize default dates and some rates form demo purpose
  *
+ * If Postgres is not available the start-up continues (the parameters are served from the disk snapshot, see
+ * ParamSnapshotService) and the initialization is done in the next start-up.
+ *
  * @project param-service
  * @autho rlh
  * @date August 2023
@@ -51,22 +56,35 @@ class DataInitializer implements ApplicationRunner, HasLogger {
 
     final SystemDateRepository systemDateRepository;
     final SystemRateRepository systemRateRepository;
+    final SystemRateHistoryRepository systemRateHistoryRepository;
     final DocumentTypeRepository documentTypeRepository;
     final EventService eventService;
+    final TransactionTemplate transactionTemplate;
 
     public DataInitializer(SystemDateRepository systemDateRepository,
                            SystemRateRepository systemRateRepository,
+                           SystemRateHistoryRepository systemRateHistoryRepository,
                            DocumentTypeRepository documentTypeRepository,
-                           EventService eventService) {
+                           EventService eventService,
+                           TransactionTemplate transactionTemplate) {
         this.systemDateRepository = systemDateRepository;
         this.systemRateRepository = systemRateRepository;
+        this.systemRateHistoryRepository = systemRateHistoryRepository;
         this.documentTypeRepository = documentTypeRepository;
         this.eventService = eventService;
+        this.transactionTemplate = transactionTemplate;
     }
 
     @Override
-    @Transactional
     public void run(ApplicationArguments args) throws Exception {
+        try {
+            transactionTemplate.executeWithoutResult(status -> initialize());
+        } catch (DataAccessException | TransactionException e) {
+            getLogger().error("No se pudo inicializar la base de datos: {}", e.getMessage());
+        }
+    }
+
+    private void initialize() {
         if (this.systemDateRepository.findAll().size() == 0) {
             getLogger().info("Base de datos vacía, se inicializan algunos parámetros...");
             systemDateRepository.deleteAll();
@@ -90,6 +108,14 @@ class DataInitializer implements ApplicationRunner, HasLogger {
             rates.add(SystemRate.builder().name("MXN-DLR").rate(new BigDecimal( 20.15)).build());
             rates.add(SystemRate.builder().name("MXN-YEN").rate(new BigDecimal( 0.0013)).build());
             systemRateRepository.saveAll(rates);
+            systemRateHistoryRepository.saveAll(rates.stream()
+                                                     .map(rate -> SystemRateHistory.builder()
+                                                                                   .name(rate.getName())
+                                                                                   .rate(rate.getRate())
+                                                                                   .effectiveDate(today)
+                                                                                   .autor("NA")
+                                                                                   .build())
+                                                     .toList());
 
             List<DocumentType> documents = new ArrayList<>();
 
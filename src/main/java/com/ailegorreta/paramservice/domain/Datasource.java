@@ -23,10 +23,14 @@
 package com.ailegorreta.paramservice.domain;
 
 import com.ailegorreta.paramservice.gql.types.DatasourceInput;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 
@@ -36,6 +40,12 @@ import java.util.*;
 /**
  * This table stores the different datasource used by templates and by the ingestor to import data.
  *
+ * The json, blockly, config and mapping code are stored in data_source_contents (see DatasourceContent) and are
+ * read lazily the first time one of them is used, like Template.
+ *
+ * The datasource, its content and its campos are kept in the Hibernate second-level cache region
+ * param.datasources (see SecondLevelCacheConfig).
+ *
  *  note: This class is defined as a java class in order to keep with lombok & Kotlin working together.
  *  see: https://www.baeldung.com/kotlin/lombok
  *
@@ -46,10 +56,10 @@ import java.util.*;
 @Entity
 @Table(name = "data_sources")
 @Data
-@Builder
 @NoArgsConstructor
-@AllArgsConstructor
 //@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "param.datasources")
 public class Datasource {
 
     @Id
@@ -60,20 +70,10 @@ public class Datasource {
     @Column(name = "name") @NotNull
     private String nombre;
 
-    @Column(name = "json_code")
-    private String  json;
-
-    @Column(name = "blockly_block")
-    private String blockly;
-
-    @Column(name = "config_code")
-    private String  config;
-
-    @Column(name = "config_blockly_block")
-    private String configBlockly;
-
-    @Column(name = "mapping")
-    private String mapping;
+    @OneToOne(mappedBy = "datasource", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    @ToString.Exclude
+    @JsonIgnore
+    private DatasourceContent content;
 
     @CreatedDate
     @Column(name = "creation_date") @NotNull
@@ -91,10 +91,62 @@ public class Datasource {
 
     @Column(name = "fields")
     @OneToMany(mappedBy = "datasource", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "param.datasources")
     @ToString.Exclude
-    @Builder.Default
     private List<DatasourceField> campos = new ArrayList();
 
+    @Version
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long        version;        // optimistic locking, null until the row is stored
+
+    @Column(name = "source_id")
+    @JsonIgnore
+    private UUID        sourceId;       // exported id of an imported datasource (see CatalogTransferService)
+
+    @Builder
+    public Datasource(UUID id, String nombre, String json, String blockly, String config, String configBlockly,
+                      String mapping, LocalDate fechaCreacion, LocalDate fechaModificacion, String autor,
+                      Boolean activo, List<DatasourceField> campos) {
+        this.id = id;
+        this.nombre = nombre;
+        this.fechaCreacion = fechaCreacion;
+        this.fechaModificacion = fechaModificacion;
+        this.autor = autor;
+        this.activo = activo;
+        this.campos = (campos != null) ? campos : new ArrayList<>();
+        setJson(json);
+        setBlockly(blockly);
+        setConfig(config);
+        setConfigBlockly(configBlockly);
+        setMapping(mapping);
+    }
+
+    public String getJson() { return (content != null) ? content.getJson() : null; }
+
+    public void setJson(String json) { content().setJson(json); }
+
+    public String getBlockly() { return (content != null) ? content.getBlockly() : null; }
+
+    public void setBlockly(String blockly) { content().setBlockly(blockly); }
+
+    public String getConfig() { return (content != null) ? content.getConfig() : null; }
+
+    public void setConfig(String config) { content().setConfig(config); }
+
+    public String getConfigBlockly() { return (content != null) ? content.getConfigBlockly() : null; }
+
+    public void setConfigBlockly(String configBlockly) { content().setConfigBlockly(configBlockly); }
+
+    public String getMapping() { return (content != null) ? content.getMapping() : null; }
+
+    public void setMapping(String mapping) { content().setMapping(mapping); }
+
+    private DatasourceContent content() {
+        if (content == null)
+            content = new DatasourceContent(this);
+
+        return content;
+    }
 
     public static Datasource fromDTO(DatasourceInput datasourceInput ) {
         var datasource = new Datasource(datasourceInput.getId(),
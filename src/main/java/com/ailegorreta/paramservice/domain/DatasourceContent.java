@@ -0,0 +1,91 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  DatasourceContent.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The large columns of a datasource (json, blockly, config and mapping code). They are stored apart from the
+ * data_sources table, with the same primary key, so the listings do not read them. See Datasource.getJson()
+ *
+ *  note: This class is defined as a java class in order to keep with lombok & Kotlin working together.
+ *  see: https://www.baeldung.com/kotlin/lombok
+ *
+ * @project param-service
+ * @autho rlh
+ * @date August 2023
+ */
+@Entity
+@Table(name = "data_source_contents")
+@Data
+@NoArgsConstructor
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "param.datasources")
+public class DatasourceContent {
+
+    @Id
+    private UUID id;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "id_data_source")
+    @ToString.Exclude
+    private Datasource datasource;
+
+    @Column(name = "json_code")
+    private String  json;
+
+    @Column(name = "blockly_block")
+    private String blockly;
+
+    @Column(name = "config_code")
+    private String  config;
+
+    @Column(name = "config_blockly_block")
+    private String configBlockly;
+
+    @Column(name = "mapping")
+    private String mapping;
+
+    public DatasourceContent(Datasource datasource) {
+        this.datasource = datasource;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+        DatasourceContent that = (DatasourceContent) o;
+        return id != null && Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() { return getClass().hashCode(); }
+}
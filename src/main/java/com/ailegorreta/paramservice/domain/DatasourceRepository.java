@@ -23,10 +23,20 @@
 package com.ailegorreta.paramservice.domain;
 
 import com.ailegorreta.data.jpa.querydsl.QuerydslRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.querydsl.binding.QuerydslBindings;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.graphql.data.GraphQlRepository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -44,15 +54,69 @@ import java.util.UUID;
  *       error "No property customize found in 'XXXX'. See:
  *       https://github.com/spring-projects/spring-data-jpa/issues/2576
  *
+ * The collection resources return the DatasourceSummary excerpt (without the code), the item resource returns the
+ * complete entity.
+ *
  * @project param-service
  * @autho rlh
  * @date August 2023
  */
-@RepositoryRestResource(path = "data_source", collectionResourceRel = "data_sources", itemResourceRel = "data_source")
+@RepositoryRestResource(path = "data_source", collectionResourceRel = "data_sources", itemResourceRel = "data_source",
+                        excerptProjection = DatasourceSummary.class)
 @GraphQlRepository
 public interface DatasourceRepository extends QuerydslRepository<Datasource, UUID, QDatasource> {
     Datasource findDatasourceByNombre(String nombre);
 
+    /**
+     * All the datasources with their code and fields in one query, for the parameter snapshot (see
+     * ParamSnapshotService).
+     */
+    @RestResource(exported = false)
+    @Query("SELECT DISTINCT d FROM Datasource d LEFT JOIN FETCH d.content LEFT JOIN FETCH d.campos")
+    List<Datasource> findAllWithContent();
+
+    /**
+     * The changed datasources with their code and fields, the snapshot is updated with just them.
+     */
+    @RestResource(exported = false)
+    @Query("SELECT DISTINCT d FROM Datasource d LEFT JOIN FETCH d.content LEFT JOIN FETCH d.campos WHERE d.id IN :ids")
+    List<Datasource> findAllWithContentByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Updates the datasource only if it still has the version read by the client. Returns 0 if it was changed (or
+     * deleted) in the meantime. The code is updated with upsertContent.
+     */
+    @RestResource(exported = false)
+    @Modifying
+    @Query("""
+           UPDATE Datasource d SET d.nombre = :nombre, d.activo = :activo, d.fechaModificacion = :fechaModificacion,
+                                   d.version = d.version + 1
+           WHERE d.id = :id AND d.version = :version
+           """)
+    int updateIfVersion(@Param("id") UUID id, @Param("nombre") String nombre, @Param("activo") Boolean activo,
+                        @Param("fechaModificacion") LocalDate fechaModificacion, @Param("version") Long version);
+
+    /**
+     * Updates the code of the datasource, the data_source_contents row is inserted if the datasource does not have
+     * one.
+     */
+    @RestResource(exported = false)
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "data_source_contents"))
+    @Query(value = """
+                   INSERT INTO data_source_contents (id_data_source, json_code, blockly_block, config_code,
+                                                     config_blockly_block, mapping)
+                   VALUES (:id, :json, :blockly, :config, :configBlockly, :mapping)
+                   ON CONFLICT (id_data_source) DO UPDATE SET json_code = EXCLUDED.json_code,
+                                                              blockly_block = EXCLUDED.blockly_block,
+                                                              config_code = EXCLUDED.config_code,
+                                                              config_blockly_block = EXCLUDED.config_blockly_block,
+                                                              mapping = EXCLUDED.mapping
+                   """, nativeQuery = true)
+    int upsertContent(@Param("id") UUID id, @Param("json") String json, @Param("blockly") String blockly,
+                      @Param("config") String config, @Param("configBlockly") String configBlockly,
+                      @Param("mapping") String mapping);
+
     /**
      * For more detail how dateBetween has been developed (in order to add extra custom queries) you can
      * see the super class QuerydslRepository
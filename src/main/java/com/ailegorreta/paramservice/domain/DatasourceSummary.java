@@ -0,0 +1,55 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  DatasourceSummary.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.domain;
+
+import org.springframework.data.rest.core.config.Projection;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Excerpt of a Datasource for the Spring Data REST collection resources (/param/api/data_source and its searches):
+ * the columns of the data_sources row without the code (json, blockly, config, configBlockly, mapping), so a
+ * listing does not read data_source_contents once per row. The code is returned by the item resource
+ * /param/api/data_source/{id}.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Projection(name = "summary", types = Datasource.class)
+public interface DatasourceSummary {
+    UUID getId();
+
+    String getNombre();
+
+    LocalDate getFechaCreacion();
+
+    LocalDate getFechaModificacion();
+
+    String getAutor();
+
+    Boolean getActivo();
+
+    Long getVersion();
+}
@@ -22,10 +22,8 @@
  */
 package com.ailegorreta.paramservice.domain;
 
-import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.Id;
-import jakarta.persistence.Table;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.Hibernate;
 
@@ -59,6 +57,14 @@ public class DocumentType {
 
     private String expiration;      // Expiration for the document 15d, 1m, 3m, etc
 
+    @Version
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long        version;        // optimistic locking, null until the row is stored
+
+    public DocumentType(UUID id, String name, String expiration) {
+        this(id, name, expiration, null);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
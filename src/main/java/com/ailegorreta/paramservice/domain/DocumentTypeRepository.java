@@ -22,8 +22,14 @@
  */
 package com.ailegorreta.paramservice.domain;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.data.repository.query.Param;
 import org.springframework.graphql.data.GraphQlRepository;
 
 import java.util.UUID;
@@ -46,4 +52,29 @@ public interface DocumentTypeRepository extends JpaRepository<DocumentType, UUID
                                                 QuerydslPredicateExecutor<DocumentType> {
 
     DocumentType findDocumentTypeByName(String name);
+
+    /**
+     * Inserts the document type if its name does not exist (unique index document_types_name_uk). Returns 0 if it
+     * already existed.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "document_types"))
+    @Query(value = """
+                   INSERT INTO document_types (id, name, expiration)
+                   VALUES (:id, :name, :expiration)
+                   ON CONFLICT (name) DO NOTHING
+                   """, nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id, @Param("name") String name, @Param("expiration") String expiration);
+
+    /**
+     * Updates the document type only if it still has the version read by the client. Returns 0 if it was changed
+     * (or deleted) in the meantime.
+     */
+    @Modifying
+    @Query("""
+           UPDATE DocumentType d SET d.name = :name, d.expiration = :expiration, d.version = d.version + 1
+           WHERE d.id = :id AND d.version = :version
+           """)
+    int updateIfVersion(@Param("id") UUID id, @Param("name") String name, @Param("expiration") String expiration,
+                        @Param("version") Long version);
 }
\ No newline at end of file
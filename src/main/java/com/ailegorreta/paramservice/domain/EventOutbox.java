@@ -0,0 +1,99 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  EventOutbox.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.domain;
+
+import com.ailegorreta.commons.event.EventType;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.Hibernate;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * One audit event waiting to be sent to Kafka (transactional outbox). The event body is stored as JSON text.
+ *
+ *  note: This class is defined as a java class in order to keep with lombok & Kotlin working together.
+ *  see: https://www.baeldung.com/kotlin/lombok
+ *
+ * @project param-service
+ * @autho rlh
+ * @date August 2023
+ */
+@Entity
+@Table(name = "event_outbox")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EventOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long            id;
+
+    @Column(name = "correlation_id")
+    private String          correlationId;
+
+    @Column(name = "event_type")
+    @Enumerated(EnumType.STRING)
+    private EventType       eventType;
+
+    private String          username;
+
+    @Column(name = "event_name")
+    private String          eventName;
+
+    @Column(name = "application_name")
+    private String          applicationName;
+
+    @Column(name = "core_name")
+    private String          coreName;
+
+    @Column(name = "event_body")
+    @ToString.Exclude
+    private String          eventBody;
+
+    @Column(name = "creation_date")
+    private LocalDateTime   creationDate;
+
+    /**
+     * The outbox row of the event, the body is already serialized.
+     */
+    public static EventOutbox of(String correlationId, EventType eventType, String username, String eventName,
+                                 String applicationName, String coreName, String eventBody) {
+        return new EventOutbox(null, correlationId, eventType, username, eventName, applicationName, coreName,
+                               eventBody, LocalDateTime.now());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+        EventOutbox that = (EventOutbox) o;
+        return id != null && Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() { return getClass().hashCode(); }
+}
@@ -0,0 +1,94 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamChange.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.Hibernate;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Append-only change log of all parameters. Each mutation done by the services writes one row (or one per
+ * element for batch operations) in the same transaction, so the sequence is monotonically increasing and a client
+ * can ask only for the changes after the last sequence it has seen.
+ *
+ * The payload is the JSON of the parameter after the mutation (or before it for deletes). Templates and datasources
+ * are stored without their code and fields (see TemplateEvent.summaryOf).
+ *
+ *  note: This class is defined as a java class in order to keep with lombok & Kotlin working together.
+ *  see: https://www.baeldung.com/kotlin/lombok
+ *
+ * @project param-service
+ * @autho rlh
+ * @date August 2023
+ */
+@Entity
+@Table(name = "param_changes")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ParamChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "seq")
+    private Long            sequence;
+
+    @Column(name = "param_type")
+    @Enumerated(EnumType.STRING)
+    private ParamType       type;
+
+    @Column(name = "entity_id")
+    private UUID            entityId;
+
+    private String          name;
+
+    @Column(name = "event_name")
+    private String          eventName;
+
+    private Boolean         deleted;
+
+    @Column(name = "author")
+    private String          user;
+
+    @Column(name = "change_date")
+    private LocalDateTime   changeDate;
+
+    @ToString.Exclude
+    private String          payload;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
+        ParamChange that = (ParamChange) o;
+        return sequence != null && Objects.equals(sequence, that.sequence);
+    }
+
+    @Override
+    public int hashCode() { return getClass().hashCode(); }
+}
@@ -22,6 +22,7 @@
  */
 package com.ailegorreta.paramservice.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.Hibernate;
@@ -67,6 +68,14 @@ public class SystemDate {
 
     private LocalDate day;
 
+    @Version
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long        version;        // optimistic locking, null until the row is stored
+
+    public SystemDate(UUID id, DayType name, LocalDate day) {
+        this(id, name, day, null);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
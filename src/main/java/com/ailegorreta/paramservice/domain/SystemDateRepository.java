@@ -22,10 +22,19 @@
  */
 package com.ailegorreta.paramservice.domain;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.data.repository.query.Param;
 import org.springframework.graphql.data.GraphQlRepository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -46,4 +55,31 @@ public interface SystemDateRepository extends JpaRepository<SystemDate, UUID>,
                                               QuerydslPredicateExecutor<SystemDate> {
     SystemDate findSystemDateByName(DayType name);
 
+    List<SystemDate> findByNameIn(Collection<DayType> names);
+
+    /**
+     * Inserts the date if its name does not exist (partial unique index sys_dates_name_uk). FESTIVO dates are not
+     * in the index so they are always inserted. Returns 0 if the date already existed.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "sys_dates"))  // do not evict all the L2 cache
+    @Query(value = """
+                   INSERT INTO sys_dates (id, name, day)
+                   VALUES (:id, :name, :day)
+                   ON CONFLICT (name) WHERE name <> 'FESTIVO' DO NOTHING
+                   """, nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id, @Param("name") String name, @Param("day") LocalDate day);
+
+    /**
+     * Updates the date only if it still has the version read by the client. Returns 0 if it was changed (or
+     * deleted) in the meantime.
+     */
+    @Modifying
+    @Query("""
+           UPDATE SystemDate d SET d.name = :name, d.day = :day, d.version = d.version + 1
+           WHERE d.id = :id AND d.version = :version
+           """)
+    int updateIfVersion(@Param("id") UUID id, @Param("name") DayType name, @Param("day") LocalDate day,
+                        @Param("version") Long version);
+
 }
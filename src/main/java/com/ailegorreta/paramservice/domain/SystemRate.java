@@ -22,10 +22,8 @@
  */
 package com.ailegorreta.paramservice.domain;
 
-import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.Id;
-import jakarta.persistence.Table;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.Hibernate;
 
@@ -57,6 +55,14 @@ public class SystemRate {
     private String      name;
     private BigDecimal rate;
 
+    @Version
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long        version;        // optimistic locking, null until the row is stored
+
+    public SystemRate(UUID id, String name, BigDecimal rate) {
+        this(id, name, rate, null);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,65 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  SystemRateHistoryRepository.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.domain;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository for the sys_rate_history table. The as-of queries are not done here but with the in-memory index
+ * of SystemRateHistoryService.
+ *
+ * @project param-service
+ * @autho rlh
+ * @date August 2023
+ */
+public interface SystemRateHistoryRepository extends JpaRepository<SystemRateHistory, UUID> {
+
+    List<SystemRateHistory> findByNameOrderByEffectiveDateAsc(String name);
+
+    List<SystemRateHistory> findAllByOrderByNameAscEffectiveDateAsc();
+
+    /**
+     * Adds the value of the rate effective since effectiveDate. If the rate was already changed the same day
+     * the value is replaced.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "sys_rate_history"))  // do not evict all the L2 cache
+    @Query(value = """
+                   INSERT INTO sys_rate_history (name, rate, effective_date, author)
+                   VALUES (:name, :rate, :effectiveDate, :autor)
+                   ON CONFLICT (name, effective_date) DO UPDATE SET rate = EXCLUDED.rate, author = EXCLUDED.author
+                   """, nativeQuery = true)
+    int upsert(@Param("name") String name, @Param("rate") BigDecimal rate,
+               @Param("effectiveDate") LocalDate effectiveDate, @Param("autor") String autor);
+}
@@ -22,14 +22,49 @@
  */
 package com.ailegorreta.paramservice.domain;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.data.repository.query.Param;
 import org.springframework.graphql.data.GraphQlRepository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @GraphQlRepository
 public interface SystemRateRepository extends JpaRepository<SystemRate, UUID>,
                                               QuerydslPredicateExecutor<SystemRate> {
     SystemRate findSystemRateByName(String name);
+
+    List<SystemRate> findByNameIn(Collection<String> names);
+
+    /**
+     * Inserts the rate if its name does not exist (unique index sys_rates_name_uk). Returns 0 if it already existed.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "sys_rates"))  // do not evict all the L2 cache
+    @Query(value = """
+                   INSERT INTO sys_rates (id, name, rate)
+                   VALUES (:id, :name, :rate)
+                   ON CONFLICT (name) DO NOTHING
+                   """, nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id, @Param("name") String name, @Param("rate") BigDecimal rate);
+
+    /**
+     * Updates the rate only if it still has the version read by the client. Returns 0 if it was changed (or
+     * deleted) in the meantime.
+     */
+    @Modifying
+    @Query("""
+           UPDATE SystemRate r SET r.name = :name, r.rate = :rate, r.version = r.version + 1
+           WHERE r.id = :id AND r.version = :version
+           """)
+    int updateIfVersion(@Param("id") UUID id, @Param("name") String name, @Param("rate") BigDecimal rate,
+                        @Param("version") Long version);
 }
@@ -23,10 +23,14 @@
 package com.ailegorreta.paramservice.domain;
 
 import com.ailegorreta.paramservice.gql.types.TemplateInput;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 
@@ -36,6 +40,13 @@ import java.util.*;
 /**
  * Table where all templates are defined. The actual content of the template is stored in Alresco
  *
+ * The json and blockly code are stored in template_contents (see TemplateContent) and are read lazily the first
+ * time getJson() or getBlockly() is called. The laziness of the inverse one-to-one relies on the Hibernate bytecode
+ * enhancement (see build.gradle.kts).
+ *
+ * The template, its content and its campos are kept in the Hibernate second-level cache region param.templates (see
+ * SecondLevelCacheConfig).
+ *
  *  note: This class is defined as a java class in order to keep with lombok & Kotlin working together.
  *  see: https://www.baeldung.com/kotlin/lombok
  *
@@ -47,8 +58,8 @@ import java.util.*;
 @Table(name = "templates")
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
-@Builder
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "param.templates")
 public class Template {
     @Id
     @GeneratedValue
@@ -63,11 +74,10 @@ public class Template {
     @Column(name = "channel")
     private DestinoType  destino;
 
-    @Column(name = "json_code")
-    private String  json;
-
-    @Column(name = "blockly_blocks")
-    private String blockly;
+    @OneToOne(mappedBy = "template", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    @ToString.Exclude
+    @JsonIgnore
+    private TemplateContent content;
 
     @CreatedDate
     @Column(name = "creation_date")
@@ -85,10 +95,50 @@ public class Template {
 
     @Column(name = "fields")
     @OneToMany(mappedBy = "template", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "param.templates")
     @ToString.Exclude
-    @Builder.Default
     private Collection<TemplateField> campos = new ArrayList();
 
+    @Version
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long        version;        // optimistic locking, null until the row is stored
+
+    @Column(name = "source_id")
+    @JsonIgnore
+    private UUID        sourceId;       // exported id of an imported template (see CatalogTransferService)
+
+    @Builder
+    public Template(UUID id, String nombre, String fileRepo, DestinoType destino, String json, String blockly,
+                    LocalDate fechaCreacion, LocalDate fechaModificacion, String autor, Boolean activo,
+                    Collection<TemplateField> campos) {
+        this.id = id;
+        this.nombre = nombre;
+        this.fileRepo = fileRepo;
+        this.destino = destino;
+        this.fechaCreacion = fechaCreacion;
+        this.fechaModificacion = fechaModificacion;
+        this.autor = autor;
+        this.activo = activo;
+        this.campos = (campos != null) ? campos : new ArrayList<>();
+        setJson(json);
+        setBlockly(blockly);
+    }
+
+    public String getJson() { return (content != null) ? content.getJson() : null; }
+
+    public void setJson(String json) { content().setJson(json); }
+
+    public String getBlockly() { return (content != null) ? content.getBlockly() : null; }
+
+    public void setBlockly(String blockly) { content().setBlockly(blockly); }
+
+    private TemplateContent content() {
+        if (content == null)
+            content = new TemplateContent(this);
+
+        return content;
+    }
+
     public static Template fromDTO(TemplateInput templateInput ) {
         var template = new Template(templateInput.getId(),
                                     templateInput.getNombre(),
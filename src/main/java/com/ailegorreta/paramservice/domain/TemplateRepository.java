@@ -23,10 +23,20 @@
 package com.ailegorreta.paramservice.domain;
 
 import com.ailegorreta.data.jpa.querydsl.QuerydslRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.querydsl.binding.QuerydslBindings;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.graphql.data.GraphQlRepository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -44,15 +54,64 @@ import java.util.UUID;
  *       error "No property customize found in 'XXXX'. See:
  *       https://github.com/spring-projects/spring-data-jpa/issues/2576
  *
+ * The collection resources return the TemplateSummary excerpt (without the code), the item resource returns the
+ * complete entity.
+ *
  * @project param-service
  * @autho rlh
  * @date August 2023
  */
-@RepositoryRestResource(path = "template", collectionResourceRel = "templates", itemResourceRel = "template")
+@RepositoryRestResource(path = "template", collectionResourceRel = "templates", itemResourceRel = "template",
+                        excerptProjection = TemplateSummary.class)
 @GraphQlRepository
 public interface TemplateRepository extends QuerydslRepository<Template, UUID, QTemplate> {
     Template findTemplateByNombre(String nombre);
 
+    /**
+     * All the templates with their code and fields in one query, for the parameter snapshot (see
+     * ParamSnapshotService).
+     */
+    @RestResource(exported = false)
+    @Query("SELECT DISTINCT t FROM Template t LEFT JOIN FETCH t.content LEFT JOIN FETCH t.campos")
+    List<Template> findAllWithContent();
+
+    /**
+     * The changed templates with their code and fields, the snapshot is updated with just them.
+     */
+    @RestResource(exported = false)
+    @Query("SELECT DISTINCT t FROM Template t LEFT JOIN FETCH t.content LEFT JOIN FETCH t.campos WHERE t.id IN :ids")
+    List<Template> findAllWithContentByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Updates the template only if it still has the version read by the client. Returns 0 if it was changed (or
+     * deleted) in the meantime. The code is updated with upsertContent.
+     */
+    @RestResource(exported = false)
+    @Modifying
+    @Query("""
+           UPDATE Template t SET t.nombre = :nombre, t.fileRepo = :fileRepo, t.destino = :destino,
+                                 t.activo = :activo, t.fechaModificacion = :fechaModificacion,
+                                 t.version = t.version + 1
+           WHERE t.id = :id AND t.version = :version
+           """)
+    int updateIfVersion(@Param("id") UUID id, @Param("nombre") String nombre, @Param("fileRepo") String fileRepo,
+                        @Param("destino") Template.DestinoType destino, @Param("activo") Boolean activo,
+                        @Param("fechaModificacion") LocalDate fechaModificacion, @Param("version") Long version);
+
+    /**
+     * Updates the code of the template, the template_contents row is inserted if the template does not have one.
+     */
+    @RestResource(exported = false)
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "template_contents"))
+    @Query(value = """
+                   INSERT INTO template_contents (id_template, json_code, blockly_blocks)
+                   VALUES (:id, :json, :blockly)
+                   ON CONFLICT (id_template) DO UPDATE SET json_code = EXCLUDED.json_code,
+                                                           blockly_blocks = EXCLUDED.blockly_blocks
+                   """, nativeQuery = true)
+    int upsertContent(@Param("id") UUID id, @Param("json") String json, @Param("blockly") String blockly);
+
     /**
      * For more detail how dateBetween has been developed (in order to add extra custom queries) you can
      * see the super class QuerydslRepository
@@ -0,0 +1,58 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  TemplateSummary.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.domain;
+
+import org.springframework.data.rest.core.config.Projection;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Excerpt of a Template for the Spring Data REST collection resources (/param/api/template and its searches): the
+ * columns of the templates row without the code (json, blockly), so a listing does not read template_contents once
+ * per row. The code is returned by the item resource /param/api/template/{id}.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Projection(name = "summary", types = Template.class)
+public interface TemplateSummary {
+    UUID getId();
+
+    String getNombre();
+
+    String getFileRepo();
+
+    Template.DestinoType getDestino();
+
+    LocalDate getFechaCreacion();
+
+    LocalDate getFechaModificacion();
+
+    String getAutor();
+
+    Boolean getActivo();
+
+    Long getVersion();
+}
@@ -80,6 +80,7 @@ public class EventsRuntimeWiring implements RuntimeWiringConfigurer {
                 .scalar(UUIDScalar.graphQLScalarType())
                 .scalar(LocalDateScalar.graphQLScalarType())
                 .scalar(BigDecimalScalar.graphQLScalarType())
+                .scalar(LongScalar.graphQLScalarType())
                 .directive("uppercase", new UpperCaseDirectiveWiring())
                 .build();
     }
@@ -0,0 +1,163 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  FieldBatchController.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.gql;
+
+import com.ailegorreta.paramservice.domain.*;
+import com.ailegorreta.paramservice.service.ParamSnapshot;
+import com.ailegorreta.paramservice.service.ParamSnapshotService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
+import org.springframework.graphql.data.method.annotation.ContextValue;
+import org.springframework.stereotype.Controller;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Batch loaders for the Template and Datasource relations.
+ *
+ * Without them every Template.campos (or TemplateField.template) of a response initializes its lazy
+ * association one parent at a time (N+1 SELECTs). With @BatchMapping Spring GraphQL collects all the parents
+ * of one level in a DataLoader and each level is read with one IN (...) query.
+ *
+ * The results are returned in the same order as the parents, as required by the DataLoader.
+ *
+ * In degraded mode (see TemplateQueryController) the relations are read from the ParamSnapshot.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Controller
+@RequiredArgsConstructor
+public class FieldBatchController {
+
+    private static final String SNAPSHOT = SnapshotVersionInterceptor.SNAPSHOT_CONTEXT_KEY;
+
+    private final TemplateRepository templateRepository;
+    private final TemplateFieldRepository templateFieldRepository;
+    private final DatasourceRepository datasourceRepository;
+    private final DatasourceFieldRepository datasourceFieldRepository;
+    private final ParamSnapshotService paramSnapshotService;
+
+    @BatchMapping(typeName = "Template", field = "campos")
+    public List<List<TemplateField>> templateCampos(
+                                    List<Template> templates,
+                                    @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        var degraded = degraded(paramSnapshot);
+
+        if (degraded != null)
+            return templates.stream()
+                            .map(template -> campos(degraded.getTemplate(template.getId()), Template::getCampos))
+                            .toList();
+
+        var fields = templateFieldRepository.findByTemplateIdIn(ids(templates, Template::getId))
+                                            .stream()
+                                            .collect(Collectors.groupingBy(field -> field.getTemplate().getId()));
+
+        return templates.stream()
+                        .map(template -> fields.getOrDefault(template.getId(), List.of()))
+                        .toList();
+    }
+
+    @BatchMapping(typeName = "Datasource", field = "campos")
+    public List<List<DatasourceField>> datasourceCampos(
+                                    List<Datasource> datasources,
+                                    @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        var degraded = degraded(paramSnapshot);
+
+        if (degraded != null)
+            return datasources.stream()
+                              .map(datasource -> campos(degraded.getDatasource(datasource.getId()),
+                                                        Datasource::getCampos))
+                              .toList();
+
+        var fields = datasourceFieldRepository.findByDatasourceIdIn(ids(datasources, Datasource::getId))
+                                              .stream()
+                                              .collect(Collectors.groupingBy(field -> field.getDatasource().getId()));
+
+        return datasources.stream()
+                          .map(datasource -> fields.getOrDefault(datasource.getId(), List.of()))
+                          .toList();
+    }
+
+    @BatchMapping(typeName = "TemplateField", field = "template")
+    public List<Template> template(List<TemplateField> templateFields,
+                                   @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        var degraded = degraded(paramSnapshot);
+
+        if (degraded != null)
+            return templateFields.stream()
+                                 .map(field -> degraded.getTemplate(field.getTemplate().getId()))
+                                 .toList();
+
+        // getId() of an uninitialized proxy does not hit the database
+        var templates = byId(templateRepository.findAllById(ids(templateFields, field -> field.getTemplate().getId())),
+                             Template::getId);
+
+        return templateFields.stream()
+                             .map(field -> templates.get(field.getTemplate().getId()))
+                             .toList();
+    }
+
+    @BatchMapping(typeName = "DatasourceField", field = "datasource")
+    public List<Datasource> datasource(List<DatasourceField> datasourceFields,
+                                       @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        var degraded = degraded(paramSnapshot);
+
+        if (degraded != null)
+            return datasourceFields.stream()
+                                   .map(field -> degraded.getDatasource(field.getDatasource().getId()))
+                                   .toList();
+
+        var datasources = byId(datasourceRepository.findAllById(ids(datasourceFields, field -> field.getDatasource().getId())),
+                               Datasource::getId);
+
+        return datasourceFields.stream()
+                               .map(field -> datasources.get(field.getDatasource().getId()))
+                               .toList();
+    }
+
+    private ParamSnapshot degraded(ParamSnapshot paramSnapshot) {
+        var snapshot = (paramSnapshot != null) ? paramSnapshot : paramSnapshotService.current();
+
+        return snapshot.isDegraded() ? snapshot : null;
+    }
+
+    private static <T, F> List<F> campos(T parent, Function<T, ? extends Collection<F>> campos) {
+        return (parent == null) ? List.of() : List.copyOf(campos.apply(parent));
+    }
+
+    private static <T> Set<UUID> ids(Collection<T> values, Function<T, UUID> id) {
+        return values.stream().map(id).filter(Objects::nonNull).collect(Collectors.toSet());
+    }
+
+    private static <T> Map<UUID, T> byId(Iterable<T> values, Function<T, UUID> id) {
+        var result = new HashMap<UUID, T>();
+
+        values.forEach(value -> result.put(id.apply(value), value));
+
+        return result;
+    }
+}
@@ -0,0 +1,92 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  LongScalar.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.gql;
+
+import graphql.GraphQLContext;
+import graphql.execution.CoercedVariables;
+import graphql.language.IntValue;
+import graphql.language.StringValue;
+import graphql.language.Value;
+import graphql.schema.Coercing;
+import graphql.schema.CoercingParseLiteralException;
+import graphql.schema.CoercingParseValueException;
+import graphql.schema.CoercingSerializeException;
+import graphql.schema.GraphQLScalarType;
+
+import java.util.Locale;
+
+/**
+ * 64-bit integer scalar for the change log sequences (bigint). The GraphQL Int is 32-bit, so a sequence greater
+ * than 2^31 - 1 would be a serialization error. It is serialized as a JSON number and parsed from a number or a
+ * string (for the clients that can not represent 64-bit numbers).
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+public final class LongScalar {
+
+    private LongScalar() {}
+
+    public static GraphQLScalarType graphQLScalarType() {
+        return GraphQLScalarType.newScalar()
+                                .name("Long")
+                                .description("64-bit integer")
+                                .coercing(new Coercing<Long, Long>() {
+                                    @Override
+                                    public Long serialize(Object value, GraphQLContext context, Locale locale) {
+                                        if (value instanceof Number number)
+                                            return number.longValue();
+                                        throw new CoercingSerializeException("No es un Long: " + value);
+                                    }
+
+                                    @Override
+                                    public Long parseValue(Object input, GraphQLContext context, Locale locale) {
+                                        try {
+                                            if (input instanceof Number number)
+                                                return number.longValue();
+                                            if (input instanceof String string)
+                                                return Long.parseLong(string);
+                                        } catch (NumberFormatException e) {
+                                            throw new CoercingParseValueException("No es un Long: " + input, e);
+                                        }
+                                        throw new CoercingParseValueException("No es un Long: " + input);
+                                    }
+
+                                    @Override
+                                    public Long parseLiteral(Value<?> input, CoercedVariables variables,
+                                                             GraphQLContext context, Locale locale) {
+                                        try {
+                                            if (input instanceof IntValue intValue)
+                                                return intValue.getValue().longValueExact();
+                                            if (input instanceof StringValue stringValue)
+                                                return Long.parseLong(stringValue.getValue());
+                                        } catch (ArithmeticException | NumberFormatException e) {
+                                            throw new CoercingParseLiteralException("No es un Long: " + input, e);
+                                        }
+                                        throw new CoercingParseLiteralException("No es un Long: " + input);
+                                    }
+                                })
+                                .build();
+    }
+}
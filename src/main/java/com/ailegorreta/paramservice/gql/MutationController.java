@@ -33,6 +33,7 @@ import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.annotation.Validated;
 
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -52,6 +53,7 @@ public class MutationController implements HasLogger {
     private final SystemRateService systemRateService;
     private final DocumentTypeService documentTypeService;
     private final TemplateService templateService;
+    private final TemplateBulkService templateBulkService;
 
     @MutationMapping
     public SystemDate addSystemDate(@Argument("systemDateInput") SystemDateInput systemDateInput) {
@@ -63,6 +65,11 @@ public class MutationController implements HasLogger {
         return systemDateService.updateSystemDate(systemDateInput);
     }
 
+    @MutationMapping
+    public List<SystemDate> upsertSystemDates(@Argument("systemDateInputs") List<SystemDateInput> systemDateInputs) {
+        return systemDateService.upsertSystemDates(systemDateInputs);
+    }
+
     @MutationMapping
     public SystemDate deleteSystemDate(@Argument("id") UUID id,
                                        @Argument("user")String user) {
@@ -79,6 +86,16 @@ public class MutationController implements HasLogger {
         return systemRateService.updateSystemRate(systemRateInput);
     }
 
+    @MutationMapping
+    public List<SystemRate> addSystemRates(@Argument("systemRateInputs") List<SystemRateInput> systemRateInputs) {
+        return systemRateService.addSystemRates(systemRateInputs);
+    }
+
+    @MutationMapping
+    public List<SystemRate> updateSystemRates(@Argument("systemRateInputs") List<SystemRateInput> systemRateInputs) {
+        return systemRateService.updateSystemRates(systemRateInputs);
+    }
+
     @MutationMapping
     public SystemRate deleteSystemRate(@Argument("id")UUID id,
                                        @Argument("user")String user) {
@@ -172,6 +189,32 @@ public class MutationController implements HasLogger {
         return templateService.deleteDatasource(id, user);
     }
 
+    @MutationMapping
+    public Long updateTemplatesActivo(@Argument("filter") TemplateFilterInput filter,
+                                      @Argument("activo") Boolean activo,
+                                      @Argument("user") String user) {
+        return templateBulkService.updateTemplatesActivo(filter, activo, user);
+    }
+
+    @MutationMapping
+    public Long deleteTemplates(@Argument("filter") TemplateFilterInput filter,
+                                @Argument("user") String user) {
+        return templateBulkService.deleteTemplates(filter, user);
+    }
+
+    @MutationMapping
+    public Long updateDatasourcesActivo(@Argument("filter") DatasourceFilterInput filter,
+                                        @Argument("activo") Boolean activo,
+                                        @Argument("user") String user) {
+        return templateBulkService.updateDatasourcesActivo(filter, activo, user);
+    }
+
+    @MutationMapping
+    public Long deleteDatasources(@Argument("filter") DatasourceFilterInput filter,
+                                  @Argument("user") String user) {
+        return templateBulkService.deleteDatasources(filter, user);
+    }
+
     @Override
     public Logger getLogger() { return HasLogger.DefaultImpls.getLogger(this); }
 
@@ -0,0 +1,82 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamExceptionHandler.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.gql;
+
+import com.ailegorreta.paramservice.service.VersionConflictException;
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.schema.DataFetchingEnvironment;
+import org.springframework.graphql.data.method.annotation.GraphQlExceptionHandler;
+import org.springframework.graphql.execution.ErrorType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Maps the optimistic locking failures to a GraphQL error with the extension code VERSION_CONFLICT, so the
+ * clients can re-read the parameter instead of showing a generic internal error.
+ *
+ * - VersionConflictException: a conditional update (input with version) found another version.
+ * - ObjectOptimisticLockingFailureException: an update without version was overlapped by another one.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@ControllerAdvice
+public class ParamExceptionHandler {
+    public static final String VERSION_CONFLICT = "VERSION_CONFLICT";
+
+    @GraphQlExceptionHandler
+    public GraphQLError handle(VersionConflictException e, DataFetchingEnvironment env) {
+        Map<String, Object> extensions = new LinkedHashMap<>();
+
+        extensions.put("code", VERSION_CONFLICT);
+        extensions.put("type", e.getType().name());
+        extensions.put("id", e.getId().toString());
+        extensions.put("expectedVersion", e.getExpectedVersion());
+
+        return GraphqlErrorBuilder.newError(env)
+                                  .errorType(ErrorType.BAD_REQUEST)
+                                  .message(e.getMessage())
+                                  .extensions(extensions)
+                                  .build();
+    }
+
+    @GraphQlExceptionHandler
+    public GraphQLError handle(ObjectOptimisticLockingFailureException e, DataFetchingEnvironment env) {
+        Map<String, Object> extensions = new LinkedHashMap<>();
+
+        extensions.put("code", VERSION_CONFLICT);
+        if (e.getIdentifier() != null)
+            extensions.put("id", e.getIdentifier().toString());
+
+        return GraphqlErrorBuilder.newError(env)
+                                  .errorType(ErrorType.BAD_REQUEST)
+                                  .message(VersionConflictException.MESSAGE)
+                                  .extensions(extensions)
+                                  .build();
+    }
+}
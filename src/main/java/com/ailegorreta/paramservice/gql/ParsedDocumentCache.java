@@ -0,0 +1,115 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParsedDocumentCache.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.gql;
+
+import com.ailegorreta.paramservice.config.ServiceConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.autoconfigure.graphql.GraphQlSourceBuilderCustomizer;
+import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Cache of the parsed and validated documents (graphql-java PreparsedDocumentProvider), keyed by the document text.
+ * The UI and the other microservices send a few distinct documents, so after the first request of each one its
+ * parse and validation against schema.graphqls are skipped. Documents with syntax or validation errors are not
+ * stored.
+ *
+ * Metrics:
+ * - cache.gets with the tag cache=param.graphqlDocuments: hits and misses.
+ * - param.graphql.parse: time to parse and validate a document (only misses).
+ * - param.graphql.parse.saved: seconds of parse and validation skipped by the hits (the time each document took
+ *   the first time).
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Component
+public class ParsedDocumentCache implements PreparsedDocumentProvider, GraphQlSourceBuilderCustomizer {
+
+    private final Cache<String, Parsed> documents;
+    private final Timer parseTimer;
+    private final Counter parseSaved;
+
+    public ParsedDocumentCache(ServiceConfig serviceConfig, MeterRegistry meterRegistry) {
+        Cache<String, Parsed> cache = Caffeine.newBuilder()
+                                              .maximumSize(serviceConfig.getDocumentCacheMaxSize())
+                                              .recordStats()
+                                              .build();
+
+        this.documents = CaffeineCacheMetrics.monitor(meterRegistry, cache, "param.graphqlDocuments");
+        this.parseTimer = Timer.builder("param.graphql.parse")
+                               .description("Parse and validation of the GraphQL documents not cached")
+                               .register(meterRegistry);
+        this.parseSaved = Counter.builder("param.graphql.parse.saved")
+                                 .description("Parse and validation time skipped by the cached documents")
+                                 .baseUnit("seconds")
+                                 .register(meterRegistry);
+    }
+
+    @Override
+    public void customize(GraphQlSource.SchemaResourceBuilder builder) {
+        builder.configureGraphQl(graphQl -> graphQl.preparsedDocumentProvider(this));
+    }
+
+    @Override
+    public PreparsedDocumentEntry getDocument(ExecutionInput executionInput,
+                                              Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidate) {
+        var parsed = documents.getIfPresent(executionInput.getQuery());
+
+        if (parsed != null) {
+            parseSaved.increment(parsed.nanos() / 1e9);
+            return parsed.entry();
+        }
+
+        var start = System.nanoTime();
+        var entry = parseAndValidate.apply(executionInput);
+        var nanos = System.nanoTime() - start;
+
+        parseTimer.record(nanos, TimeUnit.NANOSECONDS);
+        if (!entry.hasErrors())
+            documents.put(executionInput.getQuery(), new Parsed(entry, nanos));
+
+        return entry;
+    }
+
+    @Override
+    public CompletableFuture<PreparsedDocumentEntry> getDocumentAsync(
+            ExecutionInput executionInput, Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidate) {
+        return CompletableFuture.completedFuture(getDocument(executionInput, parseAndValidate));
+    }
+
+    private record Parsed(PreparsedDocumentEntry entry, long nanos) {}
+}
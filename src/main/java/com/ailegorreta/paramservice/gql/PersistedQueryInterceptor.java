@@ -0,0 +1,138 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  PersistedQueryInterceptor.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.gql;
+
+import com.ailegorreta.paramservice.config.ServiceConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import graphql.ExecutionResultImpl;
+import graphql.GraphqlErrorBuilder;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.support.DefaultExecutionGraphQlResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Automatic persisted queries (Apollo protocol). The client sends the sha256 of the document in the extension
+ * persistedQuery and, for the hot operations, only the hash:
+ *
+ *      { "extensions": { "persistedQuery": { "version": 1, "sha256Hash": "..." } } }
+ *
+ * (PersistedQueryRequestFilter sets the PersistedQuerySupport marker as the query of these requests, Spring GraphQL
+ * rejects a request without it). If the hash is not registered the response is the error PersistedQueryNotFound
+ * and the client sends it again with the document, which is registered after checking its hash
+ * (PersistedQueryIdInvalid if it does not match).
+ *
+ * The registered document is set in the execution input, so the next interceptors (see ResponseCacheInterceptor)
+ * and ParsedDocumentCache see the complete document. The registry is bounded (param-service.graphql
+ * .persisted-queries.max-size), hits and misses are published in Micrometer as cache.gets with the tag
+ * cache=param.persistedQueries.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class PersistedQueryInterceptor implements WebGraphQlInterceptor {
+
+    public static final String PERSISTED_QUERY_NOT_FOUND = "PersistedQueryNotFound";
+    public static final String PERSISTED_QUERY_ID_INVALID = "PersistedQueryIdInvalid";
+
+    private final Cache<String, String> documents;
+
+    public PersistedQueryInterceptor(ServiceConfig serviceConfig, MeterRegistry meterRegistry) {
+        Cache<String, String> cache = Caffeine.newBuilder()
+                                              .maximumSize(serviceConfig.getPersistedQueriesMaxSize())
+                                              .recordStats()
+                                              .build();
+
+        this.documents = CaffeineCacheMetrics.monitor(meterRegistry, cache, "param.persistedQueries");
+    }
+
+    @Override
+    public Mono<WebGraphQlResponse> intercept(WebGraphQlRequest request, Chain chain) {
+        var hash = sha256Hash(request.getExtensions());
+
+        if (hash == null)
+            return chain.next(request);
+
+        var document = request.getDocument();
+
+        if (document == null || document.isBlank() || document.equals(PersistedQuerySupport.PERSISTED_QUERY_MARKER)) {
+            var registered = documents.getIfPresent(hash);
+
+            if (registered == null)
+                return Mono.just(error(request, PERSISTED_QUERY_NOT_FOUND));
+            request.configureExecutionInput((executionInput, builder) -> builder.query(registered).build());
+        } else {
+            if (!hash.equalsIgnoreCase(sha256(document)))
+                return Mono.just(error(request, PERSISTED_QUERY_ID_INVALID));
+            documents.put(hash, document);
+        }
+
+        return chain.next(request);
+    }
+
+    private static String sha256Hash(Map<String, Object> extensions) {
+        if (extensions != null && extensions.get("persistedQuery") instanceof Map<?, ?> persistedQuery &&
+            persistedQuery.get("sha256Hash") instanceof String hash)
+            return hash;
+
+        return null;
+    }
+
+    static String sha256(String document) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                                                         .digest(document.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static WebGraphQlResponse error(WebGraphQlRequest request, String classification) {
+        var error = GraphqlErrorBuilder.newError()
+                                       .message(classification)
+                                       .extensions(Map.of("classification", classification))
+                                       .build();
+
+        return new WebGraphQlResponse(new DefaultExecutionGraphQlResponse(request.toExecutionInput(),
+                                                                          ExecutionResultImpl.newExecutionResult()
+                                                                                             .addError(error)
+                                                                                             .build()));
+    }
+}
@@ -0,0 +1,292 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  PersistedQueryRequestFilter.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.gql;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * The hash-only requests of the automatic persisted queries do not have the "query" key:
+ *
+ *      { "extensions": { "persistedQuery": { "version": 1, "sha256Hash": "..." } } }
+ *
+ * and Spring GraphQL rejects a request without document before any WebGraphQlInterceptor runs. This filter adds
+ * the PersistedQuerySupport marker as the query of those requests, so they reach PersistedQueryInterceptor that
+ * replaces it with the registered document (or answers PersistedQueryNotFound).
+ *
+ * Only the POST requests to spring.graphql.path are scanned, with a streaming parser that stops at the "query"
+ * key (see hashOnly): the requests with a document are not buffered nor changed, only the hash-only ones are.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Component
+public class PersistedQueryRequestFilter extends OncePerRequestFilter {
+
+    private static final UrlPathHelper PATH_HELPER = new UrlPathHelper();
+
+    private final ObjectMapper mapper;
+    private final String       graphqlPath;
+
+    public PersistedQueryRequestFilter(ObjectMapper mapper,
+                                       @Value("${spring.graphql.path:/graphql}") String graphqlPath) {
+        this.mapper = mapper;
+        this.graphqlPath = graphqlPath;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.POST.matches(request.getMethod()) ||
+               !graphqlPath.equals(PATH_HELPER.getPathWithinApplication(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        var in = new RecordingInputStream(request.getInputStream());
+
+        if (hashOnly(in)) {
+            in.readAllBytes();
+
+            var body = withMarker(in.recorded());
+
+            filterChain.doFilter(new BodyRequest(request, new ByteArrayInputStream(body), body.length), response);
+        } else
+            filterChain.doFilter(new BodyRequest(request,
+                                                 new SequenceInputStream(new ByteArrayInputStream(in.recorded()),
+                                                                         request.getInputStream()),
+                                                 -1), response);
+    }
+
+    /**
+     * Streams the top level keys of the body until it finds a non blank "query" (the usual request, the rest of
+     * the body is not read) or the end of the object. True if it has no query and its extensions have a
+     * persistedQuery. Only the values of the other keys are skipped, nothing is materialized.
+     */
+    private boolean hashOnly(InputStream in) {
+        var persistedQuery = false;
+
+        try (var parser = mapper.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                return false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var name = parser.currentName();
+                var token = parser.nextToken();
+
+                if ("query".equals(name) && token == JsonToken.VALUE_STRING && !isBlank(parser))
+                    return false;
+                if ("extensions".equals(name) && token == JsonToken.START_OBJECT)
+                    persistedQuery = hasPersistedQuery(parser);
+                else
+                    parser.skipChildren();
+            }
+        } catch (IOException e) {
+            return false;           // not JSON, Spring GraphQL answers the error
+        }
+
+        return persistedQuery;
+    }
+
+    /**
+     * Reads the extensions object up to its end.
+     */
+    private static boolean hasPersistedQuery(JsonParser parser) throws IOException {
+        var persistedQuery = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var name = parser.currentName();
+
+            if (parser.nextToken() == JsonToken.START_OBJECT && "persistedQuery".equals(name))
+                persistedQuery = true;
+            parser.skipChildren();
+        }
+
+        return persistedQuery;
+    }
+
+    private static boolean isBlank(JsonParser parser) throws IOException {
+        var chars = parser.getTextCharacters();
+
+        for (int i = parser.getTextOffset(), end = i + parser.getTextLength(); i < end; i++)
+            if (!Character.isWhitespace(chars[i]))
+                return false;
+
+        return true;
+    }
+
+    /**
+     * The hash-only request with the marker as its query. It is small, the document is registered.
+     */
+    private byte[] withMarker(byte[] body) {
+        try {
+            if (mapper.readTree(body) instanceof ObjectNode json) {
+                json.put("query", PersistedQuerySupport.PERSISTED_QUERY_MARKER);
+
+                return mapper.writeValueAsBytes(json);
+            }
+        } catch (IOException e) {
+            // not JSON, Spring GraphQL answers the error
+        }
+
+        return body;
+    }
+
+    /**
+     * Keeps the bytes read by hashOnly, so they are sent again to Spring GraphQL. It is not closed by the parser.
+     */
+    private static class RecordingInputStream extends FilterInputStream {
+        private final ByteArrayOutputStream recorded = new ByteArrayOutputStream(512);
+
+        RecordingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            var b = super.read();
+
+            if (b >= 0)
+                recorded.write(b);
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            var n = super.read(b, off, len);
+
+            if (n > 0)
+                recorded.write(b, off, n);
+
+            return n;
+        }
+
+        @Override
+        public void close() { }
+
+        byte[] recorded() { return recorded.toByteArray(); }
+    }
+
+    /**
+     * The request with the body already read (and maybe changed), or with the bytes read by hashOnly followed by
+     * the rest of the original body (length -1, the original Content-Length is kept).
+     */
+    private static class BodyRequest extends HttpServletRequestWrapper {
+        private final InputStream body;
+        private final long        length;
+
+        BodyRequest(HttpServletRequest request, InputStream body, long length) {
+            super(request);
+            this.body = body;
+            this.length = length;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return new ServletInputStream() {
+                private boolean finished;
+
+                @Override
+                public int read() throws IOException {
+                    var b = body.read();
+
+                    finished = b < 0;
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    var n = body.read(b, off, len);
+
+                    finished = n < 0;
+                    return n;
+                }
+
+                @Override
+                public boolean isFinished() { return finished; }
+
+                @Override
+                public boolean isReady() { return true; }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int getContentLength() { return (length < 0) ? super.getContentLength() : (int) length; }
+
+        @Override
+        public long getContentLengthLong() { return (length < 0) ? super.getContentLengthLong() : length; }
+
+        @Override
+        public String getHeader(String name) {
+            return (length >= 0 && HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) ? String.valueOf(length)
+                                                                                      : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return (length >= 0 && HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name))
+                        ? Collections.enumeration(List.of(getHeader(name)))
+                        : super.getHeaders(name);
+        }
+    }
+}
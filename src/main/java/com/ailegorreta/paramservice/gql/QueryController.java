@@ -0,0 +1,190 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  QueryController.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.gql;
+
+import com.ailegorreta.commons.utils.HasLogger;
+import com.ailegorreta.paramservice.domain.*;
+import com.ailegorreta.paramservice.gql.types.SystemRateAsOfInput;
+import com.ailegorreta.paramservice.service.BusinessCalendarService;
+import com.ailegorreta.paramservice.service.ParamChangeLogService;
+import com.ailegorreta.paramservice.service.ParamChanges;
+import com.ailegorreta.paramservice.service.ParamSnapshot;
+import com.ailegorreta.paramservice.service.ParamSnapshotService;
+import com.ailegorreta.paramservice.service.SystemRateHistoryService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.ContextValue;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.stereotype.Controller;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Queries for system dates, system rates and document types.
+ *
+ * These queries were auto-registered by the @GraphQlRepository QueryDSL data fetchers. Since they are the
+ * most requested by cache-service and other microservices they are declared here in order to read the
+ * immutable ParamSnapshot instead of going to Postgres in every call. Spring GraphQL does not auto-register
+ * a QueryDSL data fetcher for a field that already has a controller mapping.
+ *
+ * The snapshot is pinned for the whole request by SnapshotVersionInterceptor, so all fields of one response
+ * come from the same generation and its version is returned in the response extensions.
+ *
+ * The multi-get queries (systemRatesByNames, systemDatesByTypes and documentTypesByNames) resolve all names in
+ * one pass over the snapshot indexes and return one element per name in the same order, null if not found.
+ *
+ * The business-day queries are answered by the BusinessCalendar compiled from the FESTIVO system dates.
+ *
+ * The as-of queries read the in-memory index of the system rate history (binary search by effective date).
+ *
+ * The paramChanges query is the delta-sync API: it returns only the changes after the sequence the client
+ * already has, read from the param_changes log.
+ *
+ * @project param-service
+ * @autho rlh
+ * @date August 2023
+ */
+@Controller
+@RequiredArgsConstructor
+public class QueryController implements HasLogger {
+
+    private static final String SNAPSHOT = SnapshotVersionInterceptor.SNAPSHOT_CONTEXT_KEY;
+
+    private final ParamSnapshotService paramSnapshotService;
+    private final ParamChangeLogService paramChangeLogService;
+    private final BusinessCalendarService businessCalendarService;
+    private final SystemRateHistoryService systemRateHistoryService;
+
+    @QueryMapping
+    public List<SystemDate> systemDates(@Argument("name") DayType name,
+                                        @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        return snapshot(paramSnapshot).getSystemDates(name);
+    }
+
+    @QueryMapping
+    public SystemDate systemDate(@Argument("id") UUID id,
+                                 @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        return snapshot(paramSnapshot).getSystemDate(id);
+    }
+
+    @QueryMapping
+    public List<SystemDate> systemDatesByTypes(
+                                    @Argument("names") List<DayType> names,
+                                    @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        return snapshot(paramSnapshot).getSystemDatesByNames(names);
+    }
+
+    @QueryMapping
+    public Boolean isBusinessDay(@Argument("day") LocalDate day) {
+        return businessCalendarService.calendar().isBusinessDay(day);
+    }
+
+    @QueryMapping
+    public LocalDate nextBusinessDay(@Argument("day") LocalDate day) {
+        return businessCalendarService.calendar().nextBusinessDay(day);
+    }
+
+    @QueryMapping
+    public LocalDate addBusinessDays(@Argument("day") LocalDate day, @Argument("days") Integer days) {
+        return businessCalendarService.calendar().addBusinessDays(day, days);
+    }
+
+    @QueryMapping
+    public Long businessDaysBetween(@Argument("from") LocalDate from, @Argument("to") LocalDate to) {
+        return businessCalendarService.calendar().businessDaysBetween(from, to);
+    }
+
+    @QueryMapping
+    public List<SystemRate> systemRates(@Argument("name") String name,
+                                        @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        return snapshot(paramSnapshot).getSystemRates(name);
+    }
+
+    @QueryMapping
+    public SystemRate systemRate(@Argument("id") UUID id,
+                                 @Argument("name") String name,
+                                 @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        if (id != null)
+            return snapshot(paramSnapshot).getSystemRate(id);
+        if (name != null)
+            return snapshot(paramSnapshot).getSystemRate(name);
+
+        return null;
+    }
+
+    @QueryMapping
+    public List<SystemRate> systemRatesByNames(
+                                    @Argument("names") List<String> names,
+                                    @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        return snapshot(paramSnapshot).getSystemRatesByNames(names);
+    }
+
+    @QueryMapping
+    public SystemRateHistory systemRateAsOf(@Argument("name") String name, @Argument("day") LocalDate day) {
+        return systemRateHistoryService.asOf(name, day);
+    }
+
+    @QueryMapping
+    public List<SystemRateHistory> systemRatesAsOf(@Argument("requests") List<SystemRateAsOfInput> requests) {
+        return systemRateHistoryService.asOf(requests);
+    }
+
+    @QueryMapping
+    public List<DocumentType> documentTypes(@Argument("name") String name,
+                                            @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        return snapshot(paramSnapshot).getDocumentTypes(name);
+    }
+
+    @QueryMapping
+    public DocumentType documentType(@Argument("id") UUID id,
+                                     @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        return snapshot(paramSnapshot).getDocumentType(id);
+    }
+
+    @QueryMapping
+    public List<DocumentType> documentTypesByNames(
+                                    @Argument("names") List<String> names,
+                                    @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        return snapshot(paramSnapshot).getDocumentTypesByNames(names);
+    }
+
+    @QueryMapping
+    public ParamChanges paramChanges(@Argument("since") Long since, @Argument("limit") Integer limit) {
+        return paramChangeLogService.changesSince(since, limit);
+    }
+
+    /**
+     * The snapshot pinned by SnapshotVersionInterceptor or, if the request did not come from the web
+     * (e.g., GraphQlTester), the current one.
+     */
+    private ParamSnapshot snapshot(ParamSnapshot paramSnapshot) {
+        return (paramSnapshot != null) ? paramSnapshot : paramSnapshotService.current();
+    }
+
+    @Override
+    public Logger getLogger() { return HasLogger.DefaultImpls.getLogger(this); }
+
+}
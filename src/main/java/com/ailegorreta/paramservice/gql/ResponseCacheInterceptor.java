@@ -0,0 +1,247 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ResponseCacheInterceptor.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.gql;
+
+import com.ailegorreta.commons.utils.HasLogger;
+import com.ailegorreta.paramservice.config.ServiceConfig;
+import com.ailegorreta.paramservice.domain.ParamType;
+import com.ailegorreta.paramservice.service.ParamChangedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import graphql.ExecutionResultImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.validation.constraints.NotNull;
+import org.slf4j.Logger;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.support.DefaultExecutionGraphQlResponse;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Response cache for the GraphQL queries. The UI and the other microservices send the same templates,
+ * datasources and documentTypes queries over and over; a hit returns the stored response without parsing,
+ * validating or executing the document, and the data is written as the JSON stored the first time (RawValue)
+ * instead of serializing the result tree again.
+ *
+ * The key is the normalized document (comments, commas and whitespace outside strings removed), the operation
+ * name, the variables and the authorities of the caller. Only documents without mutation or subscription
+ * operations and responses without errors are stored.
+ *
+ * Every entry is tagged with the parameter types its document reads (e.g., a document with 'templates' reads
+ * TEMPLATE) and the entries of a type are evicted after any change of that type: the ParamChangedEvent of the
+ * mutation services (local or remote, see RemoteParamChangeListener) and the Spring Data REST writes (see
+ * RepositoryWriteHandler). A response that was being executed while a change happened is not stored. The eviction
+ * listener is ordered after the listeners that rebuild the in-memory structures read by the queries
+ * (ParamSnapshotService, BusinessCalendarService and SystemRateHistoryService), so a response executed between the
+ * eviction and a rebuild cannot store the old values. The entries also expire after
+ * param-service.graphql.response-cache.expire-after-write, a bound for any change that was not notified.
+ *
+ * It is the innermost interceptor (after SnapshotVersionInterceptor), so the cached responses get the current
+ * snapshot version. Hits and misses are published in Micrometer as cache.gets with the tag
+ * cache=param.graphqlResponses.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class ResponseCacheInterceptor implements WebGraphQlInterceptor, HasLogger {
+
+    private static final Pattern NOT_A_QUERY = Pattern.compile("(^|})(mutation|subscription)\\b");
+    private static final Map<ParamType, List<String>> TYPE_FIELDS = Map.of(
+            ParamType.TEMPLATE, List.of("template", "paramchanges"),
+            ParamType.DATASOURCE, List.of("datasource", "paramchanges"),
+            ParamType.DOCUMENT_TYPE, List.of("documenttype", "paramchanges"),
+            ParamType.SYSTEM_RATE, List.of("systemrate", "paramchanges"),
+            ParamType.SYSTEM_DATE, List.of("systemdate", "businessday", "paramchanges"));
+
+    private final Cache<Key, CachedResponse> responses;
+    private final ObjectWriter dataWriter;
+    private final AtomicLong generation = new AtomicLong();    // incremented by every eviction
+
+    public ResponseCacheInterceptor(ServiceConfig serviceConfig, ObjectMapper mapper, MeterRegistry meterRegistry) {
+        Cache<Key, CachedResponse> cache = Caffeine.newBuilder()
+                                                   .maximumWeight(serviceConfig.getResponseCacheMaxSize().toBytes())
+                                                   .<Key, CachedResponse>weigher((key, response) ->
+                                                           key.document().length() + response.data().length())
+                                                   .expireAfterWrite(serviceConfig.getResponseCacheExpireAfterWrite())
+                                                   .recordStats()
+                                                   .build();
+
+        this.responses = CaffeineCacheMetrics.monitor(meterRegistry, cache, "param.graphqlResponses");
+        this.dataWriter = mapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    @Override
+    public Mono<WebGraphQlResponse> intercept(WebGraphQlRequest request, Chain chain) {
+        var document = normalize(request.toExecutionInput().getQuery());     // resolved by PersistedQueryInterceptor
+
+        if (NOT_A_QUERY.matcher(document).find())
+            return chain.next(request);
+
+        var key = new Key(document, request.getOperationName(), request.getVariables(), authorities());
+        var cached = responses.getIfPresent(key);
+
+        if (cached != null)
+            return Mono.just(cached.toResponse(request));
+
+        var start = generation.get();
+
+        return chain.next(request).doOnNext(response -> store(key, response, start));
+    }
+
+    /**
+     * Evicts the responses that read the parameter type.
+     */
+    public void evict(ParamType type) {
+        generation.incrementAndGet();
+        responses.asMap().values().removeIf(response -> response.types().contains(type));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)       // after the rebuilds of the snapshot, calendar and rate history
+    public void onParamChanged(ParamChangedEvent event) {
+        evict(event.getType());
+    }
+
+    private void store(Key key, WebGraphQlResponse response, long start) {
+        if (!response.isValid() || !response.getErrors().isEmpty())
+            return;
+        try {
+            var data = dataWriter.writeValueAsString(response.getExecutionResult().getData());
+
+            if (generation.get() == start)
+                responses.put(key, new CachedResponse(data, new LinkedHashMap<>(response.getExtensions()),
+                                                      types(key.document())));
+        } catch (JsonProcessingException e) {
+            getLogger().warn("The GraphQL response could not be cached: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The document without comments, commas and insignificant whitespace, the strings are kept as they are.
+     */
+    static String normalize(String document) {
+        var result = new StringBuilder(document.length());
+        var pendingSpace = false;
+
+        for (int i = 0; i < document.length(); i++) {
+            char c = document.charAt(i);
+
+            if (c == '"') {
+                var end = document.startsWith("\"\"\"", i) ? stringEnd(document, i + 3, "\"\"\"")
+                                                           : stringEnd(document, i + 1, "\"");
+                pendingSpace = false;
+                result.append(document, i, end);
+                i = end - 1;
+            } else if (c == '#') {
+                while (i + 1 < document.length() && document.charAt(i + 1) != '\n')
+                    i++;
+                pendingSpace = true;
+            } else if (Character.isWhitespace(c) || c == ',') {
+                pendingSpace = true;
+            } else {
+                if (pendingSpace && !result.isEmpty() && isNameChar(c) &&
+                    isNameChar(result.charAt(result.length() - 1)))
+                    result.append(' ');
+                pendingSpace = false;
+                result.append(c);
+            }
+        }
+
+        return result.toString();
+    }
+
+    private static int stringEnd(String document, int from, String quote) {
+        for (int i = from; i < document.length(); i++) {
+            if (document.charAt(i) == '\\')
+                i++;
+            else if (document.startsWith(quote, i))
+                return i + quote.length();
+        }
+
+        return document.length();
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static Set<ParamType> types(String document) {
+        var lowerCase = document.toLowerCase(Locale.ROOT);
+        var result = EnumSet.noneOf(ParamType.class);
+
+        TYPE_FIELDS.forEach((type, fields) -> {
+            if (fields.stream().anyMatch(lowerCase::contains))
+                result.add(type);
+        });
+
+        return result;
+    }
+
+    private static String authorities() {
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        return (authentication == null) ? "" : authentication.getAuthorities().stream()
+                                                             .map(GrantedAuthority::getAuthority)
+                                                             .sorted()
+                                                             .collect(Collectors.joining(","));
+    }
+
+    private record Key(String document, String operationName, Map<String, Object> variables, String authorities) {}
+
+    private record CachedResponse(String data, Map<Object, Object> extensions, Set<ParamType> types) {
+
+        WebGraphQlResponse toResponse(WebGraphQlRequest request) {
+            var result = ExecutionResultImpl.newExecutionResult()
+                                            .data(new RawValue(data))
+                                            .extensions(extensions.isEmpty() ? null : extensions)
+                                            .build();
+
+            return new WebGraphQlResponse(new DefaultExecutionGraphQlResponse(request.toExecutionInput(), result));
+        }
+    }
+
+    @NotNull
+    @Override
+    public Logger getLogger() { return HasLogger.DefaultImpls.getLogger(this); }
+}
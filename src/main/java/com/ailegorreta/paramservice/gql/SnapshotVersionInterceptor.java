@@ -0,0 +1,84 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  SnapshotVersionInterceptor.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.gql;
+
+import com.ailegorreta.paramservice.service.ParamSnapshotService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pins the current ParamSnapshot in the GraphQL context (key 'paramSnapshot') for the whole request and
+ * returns its version in the response, both as the 'snapshotVersion' extension and as the
+ * X-Param-Snapshot-Version header, so clients can tell which generation of the parameters they got.
+ *
+ * When the snapshot is degraded (restored from the disk because Postgres is not available) the response has
+ * the 'degraded' extension with the snapshot creation time and the X-Param-Snapshot-Degraded header.
+ *
+ * @project param-service
+ * @autho rlh
+ * @date August 2023
+ */
+@Component
+@Order(0)       // before ResponseCacheInterceptor
+@RequiredArgsConstructor
+public class SnapshotVersionInterceptor implements WebGraphQlInterceptor {
+
+    public static final String SNAPSHOT_CONTEXT_KEY = "paramSnapshot";
+    public static final String SNAPSHOT_VERSION_EXTENSION = "snapshotVersion";
+    public static final String SNAPSHOT_VERSION_HEADER = "X-Param-Snapshot-Version";
+    public static final String DEGRADED_EXTENSION = "degraded";
+    public static final String DEGRADED_HEADER = "X-Param-Snapshot-Degraded";
+
+    private final ParamSnapshotService paramSnapshotService;
+
+    @Override
+    public Mono<WebGraphQlResponse> intercept(WebGraphQlRequest request, Chain chain) {
+        var snapshot = paramSnapshotService.current();
+
+        request.configureExecutionInput((executionInput, builder) ->
+                builder.graphQLContext(Map.of(SNAPSHOT_CONTEXT_KEY, snapshot)).build());
+
+        return chain.next(request).map(response -> {
+            response.getResponseHeaders().set(SNAPSHOT_VERSION_HEADER, String.valueOf(snapshot.getVersion()));
+            if (snapshot.isDegraded())
+                response.getResponseHeaders().set(DEGRADED_HEADER, snapshot.getCreatedAt().toString());
+
+            return response.transform(builder -> {
+                Map<Object, Object> extensions = new LinkedHashMap<>(response.getExtensions());
+
+                extensions.put(SNAPSHOT_VERSION_EXTENSION, snapshot.getVersion());
+                if (snapshot.isDegraded())
+                    extensions.put(DEGRADED_EXTENSION, Map.of("createdAt", snapshot.getCreatedAt().toString()));
+                builder.extensions(extensions);
+            });
+        });
+    }
+}
@@ -0,0 +1,58 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  SubscriptionController.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.gql;
+
+import com.ailegorreta.paramservice.domain.ParamChange;
+import com.ailegorreta.paramservice.domain.ParamType;
+import com.ailegorreta.paramservice.service.ParamChangeFeed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.SubscriptionMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * GraphQL subscriptions, served over WebSocket in /param/graphql (graphql-transport-ws protocol), e.g.:
+ *
+ *      subscription { parameterChanged(types: [SYSTEM_DATE, SYSTEM_RATE]) { sequence type name eventName } }
+ *
+ * receives every committed change of the system dates and rates, see ParamChangeFeed.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Controller
+@RequiredArgsConstructor
+public class SubscriptionController {
+
+    private final ParamChangeFeed paramChangeFeed;
+
+    @SubscriptionMapping
+    public Flux<ParamChange> parameterChanged(@Argument("types") List<ParamType> types,
+                                              @Argument("names") List<String> names) {
+        return paramChangeFeed.changes(types, names);
+    }
+}
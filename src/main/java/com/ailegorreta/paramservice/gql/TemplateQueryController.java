@@ -0,0 +1,271 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  TemplateQueryController.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.gql;
+
+import com.ailegorreta.paramservice.domain.*;
+import com.ailegorreta.paramservice.service.CatalogPageService;
+import com.ailegorreta.paramservice.service.KeysetPage;
+import com.ailegorreta.paramservice.service.ParamSnapshot;
+import com.ailegorreta.paramservice.service.ParamSnapshotService;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import graphql.schema.DataFetchingFieldSelectionSet;
+import lombok.RequiredArgsConstructor;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.ContextValue;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.stereotype.Controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Queries for the templates and datasources listings.
+ *
+ * They were auto-registered by the @GraphQlRepository QueryDSL data fetchers that read complete entities, including
+ * the json and blockly columns (up to 20 KB per row) even if the client only asks for 'id nombre activo'. Here the
+ * GraphQL selection set decides which columns are selected with a QueryDSL bean projection, the id is always
+ * selected because the campos batch loader (FieldBatchController) needs it. The contents table (json, blockly, ...)
+ * is joined only if one of its columns is requested.
+ *
+ * The templatesConnection and datasourcesConnection queries are the keyset paginated versions (see
+ * CatalogPageService), the node selection set is projected the same way.
+ *
+ * In degraded mode (the ParamSnapshot pinned for the request was restored from the disk because Postgres is not
+ * available) all these queries, and template(id) and datasource(id), are answered with the complete templates and
+ * datasources of the snapshot.
+ *
+ * note: The returned Template and Datasource are partially filled and not managed by the EntityManager, so they
+ *       must not be used for updates.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Controller
+@RequiredArgsConstructor
+public class TemplateQueryController {
+
+    private static final QTemplate TEMPLATE = QTemplate.template;
+    private static final QTemplateContent TEMPLATE_CONTENT = QTemplateContent.templateContent;
+    private static final QDatasource DATASOURCE = QDatasource.datasource;
+    private static final QDatasourceContent DATASOURCE_CONTENT = QDatasourceContent.datasourceContent;
+
+    private static final Map<String, Path<?>> TEMPLATE_COLUMNS = Map.of(
+            "nombre", TEMPLATE.nombre,
+            "fileRepo", TEMPLATE.fileRepo,
+            "destino", TEMPLATE.destino,
+            "fechaCreacion", TEMPLATE.fechaCreacion,
+            "fechaModificacion", TEMPLATE.fechaModificacion,
+            "autor", TEMPLATE.autor,
+            "activo", TEMPLATE.activo,
+            "version", TEMPLATE.version);
+
+    private static final Map<String, Path<?>> TEMPLATE_CONTENT_COLUMNS = Map.of(
+            "json", TEMPLATE_CONTENT.json,
+            "blockly", TEMPLATE_CONTENT.blockly);
+
+    private static final Map<String, Path<?>> DATASOURCE_COLUMNS = Map.of(
+            "nombre", DATASOURCE.nombre,
+            "fechaCreacion", DATASOURCE.fechaCreacion,
+            "fechaModificacion", DATASOURCE.fechaModificacion,
+            "autor", DATASOURCE.autor,
+            "activo", DATASOURCE.activo,
+            "version", DATASOURCE.version);
+
+    private static final Map<String, Path<?>> DATASOURCE_CONTENT_COLUMNS = Map.of(
+            "json", DATASOURCE_CONTENT.json,
+            "blockly", DATASOURCE_CONTENT.blockly,
+            "config", DATASOURCE_CONTENT.config,
+            "configBlockly", DATASOURCE_CONTENT.configBlockly,
+            "mapping", DATASOURCE_CONTENT.mapping);
+
+    private static final String SNAPSHOT = SnapshotVersionInterceptor.SNAPSHOT_CONTEXT_KEY;
+
+    private final JPAQueryFactory queryFactory;
+    private final CatalogPageService catalogPageService;
+    private final ParamSnapshotService paramSnapshotService;
+    private final TemplateRepository templateRepository;
+    private final DatasourceRepository datasourceRepository;
+
+    @QueryMapping
+    public Template template(@Argument("id") UUID id,
+                             @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        var degraded = degraded(paramSnapshot);
+
+        return (degraded != null) ? degraded.getTemplate(id) : templateRepository.findById(id).orElse(null);
+    }
+
+    @QueryMapping
+    public Datasource datasource(@Argument("id") UUID id,
+                                 @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        var degraded = degraded(paramSnapshot);
+
+        return (degraded != null) ? degraded.getDatasource(id) : datasourceRepository.findById(id).orElse(null);
+    }
+
+    @QueryMapping
+    public List<Template> templates(@Argument("nombre") String nombre, DataFetchingFieldSelectionSet selectionSet,
+                                    @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        var degraded = degraded(paramSnapshot);
+
+        if (degraded != null)
+            return degraded.getTemplates(nombre);
+
+        var columns = columns(selectionSet, TEMPLATE.id, TEMPLATE_COLUMNS);
+        var contentColumns = columns(selectionSet, null, TEMPLATE_CONTENT_COLUMNS);
+        var query = queryFactory.select(Projections.bean(Template.class, concat(columns, contentColumns)))
+                                .from(TEMPLATE);
+
+        if (!contentColumns.isEmpty())
+            query.leftJoin(TEMPLATE.content, TEMPLATE_CONTENT);
+
+        return query.where(nombre != null ? TEMPLATE.nombre.eq(nombre) : null)
+                    .fetch();
+    }
+
+    @QueryMapping
+    public List<Datasource> datasources(@Argument("nombre") String nombre, DataFetchingFieldSelectionSet selectionSet,
+                                        @ContextValue(name = SNAPSHOT, required = false) ParamSnapshot paramSnapshot) {
+        var degraded = degraded(paramSnapshot);
+
+        if (degraded != null)
+            return degraded.getDatasources(nombre);
+
+        var columns = columns(selectionSet, DATASOURCE.id, DATASOURCE_COLUMNS);
+        var contentColumns = columns(selectionSet, null, DATASOURCE_CONTENT_COLUMNS);
+        var query = queryFactory.select(Projections.bean(Datasource.class, concat(columns, contentColumns)))
+                                .from(DATASOURCE);
+
+        if (!contentColumns.isEmpty())
+            query.leftJoin(DATASOURCE.content, DATASOURCE_CONTENT);
+
+        return query.where(nombre != null ? DATASOURCE.nombre.eq(nombre) : null)
+                    .fetch();
+    }
+
+    @QueryMapping
+    public KeysetPage<Template> templatesConnection(@Argument("nombre") String nombre,
+                                                    @Argument("first") Integer first,
+                                                    @Argument("after") String after,
+                                                    DataFetchingFieldSelectionSet selectionSet,
+                                                    @ContextValue(name = SNAPSHOT, required = false)
+                                                    ParamSnapshot paramSnapshot) {
+        var degraded = degraded(paramSnapshot);
+
+        if (degraded != null)
+            return CatalogPageService.snapshotPage(degraded.getTemplates(nombre), first, after,
+                                                   Template::getFechaModificacion, Template::getId);
+
+        var columns = cursorColumns(columns(selectionSet, TEMPLATE.id, nodeColumns(TEMPLATE_COLUMNS)),
+                                    TEMPLATE.fechaModificacion);
+        var contentColumns = columns(selectionSet, null, nodeColumns(TEMPLATE_CONTENT_COLUMNS));
+
+        return catalogPageService.templates(nombre, first, after,
+                                            Projections.bean(Template.class, concat(columns, contentColumns)),
+                                            !contentColumns.isEmpty());
+    }
+
+    @QueryMapping
+    public KeysetPage<Datasource> datasourcesConnection(@Argument("nombre") String nombre,
+                                                        @Argument("first") Integer first,
+                                                        @Argument("after") String after,
+                                                        DataFetchingFieldSelectionSet selectionSet,
+                                                        @ContextValue(name = SNAPSHOT, required = false)
+                                                        ParamSnapshot paramSnapshot) {
+        var degraded = degraded(paramSnapshot);
+
+        if (degraded != null)
+            return CatalogPageService.snapshotPage(degraded.getDatasources(nombre), first, after,
+                                                   Datasource::getFechaModificacion, Datasource::getId);
+
+        var columns = cursorColumns(columns(selectionSet, DATASOURCE.id, nodeColumns(DATASOURCE_COLUMNS)),
+                                    DATASOURCE.fechaModificacion);
+        var contentColumns = columns(selectionSet, null, nodeColumns(DATASOURCE_CONTENT_COLUMNS));
+
+        return catalogPageService.datasources(nombre, first, after,
+                                              Projections.bean(Datasource.class, concat(columns, contentColumns)),
+                                              !contentColumns.isEmpty());
+    }
+
+    /**
+     * The snapshot pinned by SnapshotVersionInterceptor (or the current one) if it is degraded, null if the
+     * queries can go to the database.
+     */
+    private ParamSnapshot degraded(ParamSnapshot paramSnapshot) {
+        var snapshot = (paramSnapshot != null) ? paramSnapshot : paramSnapshotService.current();
+
+        return snapshot.isDegraded() ? snapshot : null;
+    }
+
+    /**
+     * The id (if not null) plus the columns of the fields requested in the selection set.
+     */
+    private static List<Expression<?>> columns(DataFetchingFieldSelectionSet selectionSet, Path<?> id,
+                                               Map<String, Path<?>> columns) {
+        var result = new ArrayList<Expression<?>>();
+
+        if (id != null)
+            result.add(id);
+        columns.forEach((field, column) -> {
+            if (selectionSet.contains(field))
+                result.add(column);
+        });
+
+        return result;
+    }
+
+    private static Expression<?>[] concat(List<Expression<?>> columns, List<Expression<?>> contentColumns) {
+        var result = new ArrayList<>(columns);
+
+        result.addAll(contentColumns);
+
+        return result.toArray(new Expression<?>[0]);
+    }
+
+    /**
+     * The same columns addressed by their path in a connection selection set (edges/node/...).
+     */
+    private static Map<String, Path<?>> nodeColumns(Map<String, Path<?>> columns) {
+        var result = new HashMap<String, Path<?>>();
+
+        columns.forEach((field, column) -> result.put("edges/node/" + field, column));
+
+        return result;
+    }
+
+    /**
+     * The modification date is always read because the cursors are made from it.
+     */
+    private static List<Expression<?>> cursorColumns(List<Expression<?>> columns, Path<?> fechaModificacion) {
+        if (!columns.contains(fechaModificacion))
+            columns.add(fechaModificacion);
+
+        return columns;
+    }
+}
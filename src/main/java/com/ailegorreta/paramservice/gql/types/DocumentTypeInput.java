@@ -46,4 +46,5 @@ public class DocumentTypeInput {
     private String  name;
     private String  expiration;
     private String  userModify;
+    private Long    version;            // optional, the update is only done if it has this version
 }
\ No newline at end of file
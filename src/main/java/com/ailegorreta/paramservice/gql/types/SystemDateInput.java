@@ -48,4 +48,5 @@ public class SystemDateInput {
     private DayType name;
     private LocalDate day;
     private String      userModify;
+    private Long        version;            // optional, the update is only done if it has this version
 }
\ No newline at end of file
@@ -28,6 +28,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.UUID;
 
 /**
@@ -46,5 +47,7 @@ public class SystemRateInput {
     private UUID id;
     private String      name;
     private BigDecimal rate;
+    private LocalDate   effectiveDate;      // optional, by default the system date HOY
     private String      userModify;
+    private Long        version;            // optional, the update is only done if it has this version
 }
\ No newline at end of file
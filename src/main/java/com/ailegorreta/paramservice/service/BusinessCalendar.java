@@ -0,0 +1,291 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  BusinessCalendar.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable business-day calendar. Saturdays, Sundays and the FESTIVO system dates are non-business days.
+ *
+ * Each year is compiled into a bitset of 6 longs (366 days), where a set bit is a non-business day. The years
+ * without holidays share one of the 14 precomputed weekend templates (day of week of January 1st x leap year),
+ * so only the years that have FESTIVO dates use memory. Queries are O(1) (isBusinessDay) or O(words) using
+ * Long.bitCount, and the business days of every year are precomputed to skip whole years.
+ *
+ * Mutations (withHoliday, withoutHoliday) return a new calendar copying only the affected year, so readers never
+ * need a lock.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+public final class BusinessCalendar {
+    public static final int MAX_BUSINESS_DAYS = 1_000_000;             // ~3,800 years, bounds the loop by years
+    private static final int WORDS = 6;                                 // 6 x 64 = 384 bits >= 366 days
+    private static final YearBits[] WEEKEND_TEMPLATES = new YearBits[14]; // January 1st (0 = Monday) + 7 if leap
+
+    static {
+        for (int leap = 0; leap < 2; leap++)
+            for (int january1st = 0; january1st < 7; january1st++) {
+                var nonBusiness = new long[WORDS];
+
+                for (int day = 0; day < WORDS * 64; day++)
+                    if (day >= 365 + leap || (january1st + day) % 7 >= 5)   // padding, Saturday or Sunday
+                        nonBusiness[day >>> 6] |= 1L << day;
+                WEEKEND_TEMPLATES[january1st + 7 * leap] = new YearBits(nonBusiness, countBusinessDays(nonBusiness));
+            }
+    }
+
+    private final Map<Integer, YearBits> holidayYears;      // only the years with at least one holiday
+
+    private BusinessCalendar(Map<Integer, YearBits> holidayYears) {
+        this.holidayYears = holidayYears;
+    }
+
+    public static BusinessCalendar of(Collection<LocalDate> holidays) {
+        var calendar = new BusinessCalendar(Map.of());
+
+        for (LocalDate holiday : holidays)
+            calendar = calendar.withHoliday(holiday);
+
+        return calendar;
+    }
+
+    public BusinessCalendar withHoliday(LocalDate day) {
+        var year = yearBits(day.getYear());
+        int index = day.getDayOfYear() - 1;
+
+        if (isSet(year.nonBusiness, index))
+            return this;            // weekend or already a holiday
+
+        var nonBusiness = year.nonBusiness.clone();
+
+        nonBusiness[index >>> 6] |= 1L << index;
+
+        return with(day.getYear(), new YearBits(nonBusiness, year.businessDays - 1));
+    }
+
+    public BusinessCalendar withoutHoliday(LocalDate day) {
+        var year = yearBits(day.getYear());
+        int index = day.getDayOfYear() - 1;
+
+        if (!isSet(year.nonBusiness, index) || isSet(template(day.getYear()).nonBusiness, index))
+            return this;            // not a holiday or it is a weekend
+
+        var nonBusiness = year.nonBusiness.clone();
+
+        nonBusiness[index >>> 6] &= ~(1L << index);
+
+        return with(day.getYear(), new YearBits(nonBusiness, year.businessDays + 1));
+    }
+
+    public boolean isBusinessDay(LocalDate day) {
+        return !isSet(yearBits(day.getYear()).nonBusiness, day.getDayOfYear() - 1);
+    }
+
+    public LocalDate nextBusinessDay(LocalDate day) {
+        return addBusinessDays(day, 1);
+    }
+
+    public LocalDate previousBusinessDay(LocalDate day) {
+        return addBusinessDays(day, -1);
+    }
+
+    /**
+     * The business day that is 'days' business days after (or before, if negative) the day. The day itself is not
+     * counted, so with days = 0 the same day is returned even if it is not a business day.
+     *
+     * The loop goes year by year, so |days| must be at most MAX_BUSINESS_DAYS (IllegalArgumentException) and the
+     * result must be between LocalDate.MIN and LocalDate.MAX (DateTimeException).
+     */
+    public LocalDate addBusinessDays(LocalDate day, int days) {
+        if (Math.abs((long) days) > MAX_BUSINESS_DAYS)
+            throw new IllegalArgumentException("Los días hábiles deben estar entre -" + MAX_BUSINESS_DAYS + " y " +
+                                               MAX_BUSINESS_DAYS + ": " + days);
+
+        long remaining = Math.abs((long) days);
+        int year = day.getYear();
+
+        if (days > 0) {
+            int from = day.getDayOfYear();              // index of the day after
+
+            while (true) {
+                var bits = yearBits(year);
+                int available = (from == 0) ? bits.businessDays : countBusinessDays(bits.nonBusiness, from, Year.of(year).length());
+
+                if (available >= remaining)
+                    return LocalDate.ofYearDay(year, selectForward(bits.nonBusiness, from, (int) remaining) + 1);
+                remaining -= available;
+                if (year == Year.MAX_VALUE)
+                    throw new DateTimeException("El día hábil es posterior a " + LocalDate.MAX);
+                year++;
+                from = 0;
+            }
+        } else if (days < 0) {
+            int to = day.getDayOfYear() - 1;            // index of the day, exclusive
+
+            while (true) {
+                var bits = yearBits(year);
+                int available = (to == Year.of(year).length()) ? bits.businessDays : countBusinessDays(bits.nonBusiness, 0, to);
+
+                if (available >= remaining)
+                    return LocalDate.ofYearDay(year, selectBackward(bits.nonBusiness, to, (int) remaining) + 1);
+                remaining -= available;
+                if (year == Year.MIN_VALUE)
+                    throw new DateTimeException("El día hábil es anterior a " + LocalDate.MIN);
+                year--;
+                to = Year.of(year).length();
+            }
+        }
+
+        return day;
+    }
+
+    /**
+     * Number of business days in the interval (from, to], negative if to is before from.
+     */
+    public long businessDaysBetween(LocalDate from, LocalDate to) {
+        if (to.isBefore(from))
+            return -businessDaysBetween(to, from);
+
+        long count = 0;
+        int year = from.getYear();
+        int start = from.getDayOfYear();                // index of the day after 'from'
+
+        for (; year < to.getYear(); year++, start = 0) {
+            var bits = yearBits(year);
+
+            count += (start == 0) ? bits.businessDays : countBusinessDays(bits.nonBusiness, start, Year.of(year).length());
+        }
+
+        return count + countBusinessDays(yearBits(year).nonBusiness, start, to.getDayOfYear());
+    }
+
+    /**
+     * Number of holidays that fall on a weekday. Holidays on weekends do not change the calendar.
+     */
+    public int getHolidays() {
+        return holidayYears.entrySet().stream()
+                           .mapToInt(e -> template(e.getKey()).businessDays - e.getValue().businessDays)
+                           .sum();
+    }
+
+    private BusinessCalendar with(int year, YearBits bits) {
+        var years = new HashMap<>(holidayYears);
+
+        if (bits.businessDays == template(year).businessDays)
+            years.remove(year);     // back to the weekend template
+        else
+            years.put(year, bits);
+
+        return new BusinessCalendar(Map.copyOf(years));
+    }
+
+    private YearBits yearBits(int year) {
+        var bits = holidayYears.get(year);
+
+        return (bits != null) ? bits : template(year);
+    }
+
+    private static YearBits template(int year) {
+        int january1st = LocalDate.of(year, 1, 1).getDayOfWeek().getValue() - 1;
+
+        return WEEKEND_TEMPLATES[january1st + (Year.isLeap(year) ? 7 : 0)];
+    }
+
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static int countBusinessDays(long[] nonBusiness) {
+        return countBusinessDays(nonBusiness, 0, WORDS * 64);
+    }
+
+    /**
+     * Business days with index in [from, to).
+     */
+    private static int countBusinessDays(long[] nonBusiness, int from, int to) {
+        int count = 0;
+
+        for (int index = from; index < to; ) {
+            int word = index >>> 6;
+            int end = Math.min(to, (word + 1) << 6);
+            int high = end - (word << 6);
+            long mask = (high == 64 ? -1L : (1L << high) - 1) & (-1L << index);
+
+            count += Long.bitCount(~nonBusiness[word] & mask);
+            index = end;
+        }
+
+        return count;
+    }
+
+    /**
+     * Index of the k-th business day with index >= from. The caller guarantees that it exists in the year.
+     */
+    private static int selectForward(long[] nonBusiness, int from, int k) {
+        for (int word = from >>> 6; ; word++) {
+            long business = ~nonBusiness[word] & ((word == from >>> 6) ? -1L << from : -1L);
+            int count = Long.bitCount(business);
+
+            if (count >= k) {
+                for (; k > 1; k--)
+                    business &= business - 1;       // clear the lowest business day
+
+                return (word << 6) + Long.numberOfTrailingZeros(business);
+            }
+            k -= count;
+        }
+    }
+
+    /**
+     * Index of the k-th business day with index < to, counting backwards. The caller guarantees that it exists.
+     */
+    private static int selectBackward(long[] nonBusiness, int to, int k) {
+        for (int word = (to - 1) >>> 6; ; word--) {
+            int high = to - (word << 6);
+            long business = ~nonBusiness[word] & (high >= 64 ? -1L : (1L << high) - 1);
+            int count = Long.bitCount(business);
+
+            if (count >= k) {
+                for (; k > 1; k--)
+                    business &= ~Long.highestOneBit(business);  // clear the highest business day
+
+                return (word << 6) + 63 - Long.numberOfLeadingZeros(business);
+            }
+            k -= count;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BusinessCalendar{holidays=" + getHolidays() + ", years=" + holidayYears.keySet() + "}";
+    }
+
+    private record YearBits(long[] nonBusiness, int businessDays) {}
+}
@@ -0,0 +1,132 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  BusinessCalendarService.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.commons.utils.HasLogger;
+import com.ailegorreta.paramservice.domain.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Holds the BusinessCalendar compiled from the FESTIVO system dates.
+ *
+ * The calendar is built once at start-up and then updated incrementally: when a FESTIVO row is added, updated or
+ * deleted only its year is copied and the bit is changed. The ids of the FESTIVO rows are kept because more than
+ * one row can have the same day, and an update does not tell which was the previous day.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Service
+@RequiredArgsConstructor
+public class BusinessCalendarService implements HasLogger {
+
+    private final SystemDateRepository systemDateRepository;
+
+    private final Map<UUID, LocalDate> holidays = new HashMap<>();     // FESTIVO rows, guarded by this
+    private volatile BusinessCalendar calendar;
+
+    public BusinessCalendar calendar() {
+        var current = calendar;
+
+        return (current != null) ? current : rebuild();
+    }
+
+    /**
+     * Reloads all FESTIVO system dates from the database.
+     */
+    public synchronized BusinessCalendar rebuild() {
+        holidays.clear();
+        systemDateRepository.findAll(QSystemDate.systemDate.name.eq(DayType.FESTIVO))
+                            .forEach(systemDate -> holidays.put(systemDate.getId(), systemDate.getDay()));
+        calendar = BusinessCalendar.of(holidays.values());
+        getLogger().debug("Business calendar rebuilt: {}", calendar);
+
+        return calendar;
+    }
+
+    /**
+     * If Postgres is not available at start-up the business calendar is built by the first query after it is.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            rebuild();
+        } catch (DataAccessException | TransactionException e) {
+            getLogger().warn("No se pudo cargar al iniciar: {}", e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0)      // before the eviction of the GraphQL responses (ResponseCacheInterceptor)
+    public synchronized void onParamChanged(ParamChangedEvent event) {
+        if (event.getType() != ParamType.SYSTEM_DATE)
+            return;
+        if (calendar == null || event.isRemote()) {
+            rebuild();
+            return;
+        }
+
+        Collection<?> values = (event.getValue() instanceof Collection<?> collection) ? collection
+                                                                                     : List.of(event.getValue());
+        var updated = calendar;
+
+        for (Object value : values)
+            if (value instanceof SystemDate systemDate)
+                updated = apply(updated, systemDate, event.isDeleted());
+        calendar = updated;
+    }
+
+    private BusinessCalendar apply(BusinessCalendar calendar, SystemDate systemDate, boolean deleted) {
+        var previous = holidays.remove(systemDate.getId());
+
+        if (previous != null && !holidays.containsValue(previous))
+            calendar = calendar.withoutHoliday(previous);
+        if (!deleted && systemDate.getName() == DayType.FESTIVO && systemDate.getDay() != null) {
+            holidays.put(systemDate.getId(), systemDate.getDay());
+            calendar = calendar.withHoliday(systemDate.getDay());
+        }
+
+        return calendar;
+    }
+
+    @NotNull
+    @Override
+    public Logger getLogger() { return HasLogger.DefaultImpls.getLogger(this); }
+}
@@ -0,0 +1,227 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CatalogPageService.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.commons.utils.HasLogger;
+import com.ailegorreta.paramservice.domain.*;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.dsl.ComparablePath;
+import com.querydsl.core.types.dsl.DatePath;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.transaction.Transactional;
+import jakarta.validation.constraints.NotNull;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Keyset (cursor) pagination of templates and datasources, for the GraphQL connections and the REST keyset
+ * resources.
+ *
+ * The rows are ordered by (fechaModificacion, id) descending, the newest first, and the next page starts after the
+ * cursor of the last row instead of skipping an offset:
+ *
+ *      WHERE (modification_date, id) < (:date, :id)
+ *      ORDER BY modification_date DESC, id DESC LIMIT first + 1
+ *
+ * The row-value comparison is a single index condition on both columns (an OR of the two columns makes Postgres
+ * filter the rows of the cursor date instead of seeking to them), so it is a range scan of the
+ * (modification_date DESC, id DESC) indexes (see V0008) and a deep page costs the same as the first one. One extra
+ * row is read to know if there is a next page.
+ *
+ * In degraded mode (Postgres not available) the pages are made from the templates and datasources of the parameter
+ * snapshot with the same order and cursors (see snapshotPage).
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class CatalogPageService implements HasLogger {
+    public static final int DEFAULT_FIRST = 50;
+    public static final int MAX_FIRST = 500;
+
+    private static final QTemplate          TEMPLATE = QTemplate.template;
+    private static final QTemplateContent   TEMPLATE_CONTENT = QTemplateContent.templateContent;
+    private static final QDatasource        DATASOURCE = QDatasource.datasource;
+    private static final QDatasourceContent DATASOURCE_CONTENT = QDatasourceContent.datasourceContent;
+
+    private static final Expression<Template> TEMPLATE_ROW = Projections.bean(Template.class,
+            TEMPLATE.id, TEMPLATE.nombre, TEMPLATE.fileRepo, TEMPLATE.destino, TEMPLATE_CONTENT.json,
+            TEMPLATE_CONTENT.blockly, TEMPLATE.fechaCreacion, TEMPLATE.fechaModificacion, TEMPLATE.autor,
+            TEMPLATE.activo, TEMPLATE.version);
+
+    private static final Expression<Datasource> DATASOURCE_ROW = Projections.bean(Datasource.class,
+            DATASOURCE.id, DATASOURCE.nombre, DATASOURCE_CONTENT.json, DATASOURCE_CONTENT.blockly,
+            DATASOURCE_CONTENT.config, DATASOURCE_CONTENT.configBlockly, DATASOURCE_CONTENT.mapping,
+            DATASOURCE.fechaCreacion, DATASOURCE.fechaModificacion, DATASOURCE.autor, DATASOURCE.activo,
+            DATASOURCE.version);
+
+    private final JPAQueryFactory queryFactory;
+
+    /**
+     * A page of templates with all their columns (but not the campos).
+     */
+    public KeysetPage<Template> templates(String nombre, Integer first, String after) {
+        return templates(nombre, first, after, TEMPLATE_ROW, true);
+    }
+
+    /**
+     * A page of templates read with the projection, it must include the id and fechaModificacion because the cursor
+     * is made from them.
+     *
+     * @param withContent true if the projection has columns of the template contents
+     */
+    public KeysetPage<Template> templates(String nombre, Integer first, String after,
+                                          Expression<Template> projection, boolean withContent) {
+        var query = queryFactory.select(projection).from(TEMPLATE);
+
+        if (withContent)
+            query.leftJoin(TEMPLATE.content, TEMPLATE_CONTENT);
+
+        return page(query, nombre != null ? TEMPLATE.nombre.eq(nombre) : null,
+                    TEMPLATE.fechaModificacion, TEMPLATE.id, first, after,
+                    Template::getFechaModificacion, Template::getId);
+    }
+
+    /**
+     * A page of datasources with all their columns (but not the campos).
+     */
+    public KeysetPage<Datasource> datasources(String nombre, Integer first, String after) {
+        return datasources(nombre, first, after, DATASOURCE_ROW, true);
+    }
+
+    /**
+     * A page of datasources read with the projection, it must include the id and fechaModificacion because the
+     * cursor is made from them.
+     *
+     * @param withContent true if the projection has columns of the datasource contents
+     */
+    public KeysetPage<Datasource> datasources(String nombre, Integer first, String after,
+                                              Expression<Datasource> projection, boolean withContent) {
+        var query = queryFactory.select(projection).from(DATASOURCE);
+
+        if (withContent)
+            query.leftJoin(DATASOURCE.content, DATASOURCE_CONTENT);
+
+        return page(query, nombre != null ? DATASOURCE.nombre.eq(nombre) : null,
+                    DATASOURCE.fechaModificacion, DATASOURCE.id, first, after,
+                    Datasource::getFechaModificacion, Datasource::getId);
+    }
+
+    /**
+     * The same page made from the rows of the parameter snapshot (degraded mode, see ParamSnapshot), already
+     * filtered. The rows are ordered as Postgres orders them (a uuid is compared as unsigned bytes), so the cursors
+     * are the same. It does not touch the database (it is static, so it is not transactional).
+     */
+    public static <T> KeysetPage<T> snapshotPage(List<T> rows, Integer first, String after,
+                                                 Function<T, LocalDate> rowFechaModificacion,
+                                                 Function<T, UUID> rowId) {
+        var size = size(first);
+        Comparator<T> order = Comparator.comparing(rowFechaModificacion)
+                                        .thenComparing(rowId, CatalogPageService::compareUuid);
+        var cursor = (after == null) ? null : KeysetCursor.decode(after);
+        var page = rows.stream()
+                       .filter(row -> cursor == null || afterCursor(rowFechaModificacion.apply(row), rowId.apply(row),
+                                                                    cursor))
+                       .sorted(order.reversed())
+                       .limit(size + 1)
+                       .toList();
+
+        return toPage(page, size, rowFechaModificacion, rowId);
+    }
+
+    private <T> KeysetPage<T> page(JPAQuery<T> query, Predicate filter,
+                                   DatePath<LocalDate> fechaModificacion, ComparablePath<UUID> id,
+                                   Integer first, String after,
+                                   Function<T, LocalDate> rowFechaModificacion, Function<T, UUID> rowId) {
+        var size = size(first);
+        Predicate afterCursor = null;
+
+        if (after != null) {
+            var cursor = KeysetCursor.decode(after);
+
+            afterCursor = Expressions.booleanTemplate("({0}, {1}) < ({2}, {3})",
+                                                      fechaModificacion, id,
+                                                      Expressions.constant(cursor.getFechaModificacion()),
+                                                      Expressions.constant(cursor.getId()));
+        }
+
+        var rows = query.where(filter, afterCursor)
+                        .orderBy(fechaModificacion.desc(), id.desc())
+                        .limit(size + 1)
+                        .fetch();
+
+        return toPage(rows, size, rowFechaModificacion, rowId);
+    }
+
+    private static int size(Integer first) {
+        return (first == null) ? DEFAULT_FIRST : Math.min(Math.max(first, 1), MAX_FIRST);
+    }
+
+    /**
+     * The first size rows as edges, rows has one more row if there is a next page.
+     */
+    private static <T> KeysetPage<T> toPage(List<T> rows, int size,
+                                            Function<T, LocalDate> rowFechaModificacion, Function<T, UUID> rowId) {
+        var edges = rows.stream()
+                        .limit(size)
+                        .map(row -> new KeysetPage.Edge<>(new KeysetCursor(rowFechaModificacion.apply(row),
+                                                                           rowId.apply(row)).encode(),
+                                                          row))
+                        .toList();
+        var endCursor = edges.isEmpty() ? null : edges.get(edges.size() - 1).getCursor();
+
+        return new KeysetPage<>(edges, new KeysetPage.PageInfo(rows.size() > size, endCursor));
+    }
+
+    private static boolean afterCursor(LocalDate fechaModificacion, UUID id, KeysetCursor cursor) {
+        return fechaModificacion.isBefore(cursor.getFechaModificacion()) ||
+               (fechaModificacion.isEqual(cursor.getFechaModificacion()) && compareUuid(id, cursor.getId()) < 0);
+    }
+
+    /**
+     * The uuid order of Postgres: the 16 bytes compared as unsigned.
+     */
+    private static int compareUuid(UUID a, UUID b) {
+        var result = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+
+        return (result != 0) ? result : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    @NotNull
+    @Override
+    public Logger getLogger() { return HasLogger.DefaultImpls.getLogger(this); }
+}
@@ -0,0 +1,428 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CatalogTransferService.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.commons.utils.HasLogger;
+import com.ailegorreta.paramservice.config.ServiceConfig;
+import com.ailegorreta.paramservice.domain.*;
+import com.ailegorreta.resourceserver.utils.UserContext;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.constraints.NotNull;
+import org.hibernate.jpa.HibernateHints;
+import org.slf4j.Logger;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * NDJSON export and import of the templates and datasources with their fields, to move the catalogs between
+ * environments.
+ *
+ * Export: two scalar queries read with server-side cursors (fetch size) in a read-only, repeatable read
+ * transaction (both see the same snapshot): the parents with their content, and their fields, both ordered by
+ * parent id and merged by id (see writeTemplates), so the contents are read once and not repeated per field.
+ * No entity is loaded in the persistence context and only one parent is in memory at a time. The transaction holds a
+ * pooled connection until the client has read the whole response, so at most param-service.transfer.max-exports
+ * exports run at the same time (see tryStartExport), the rest of the pool is left for the other requests.
+ *
+ * Import: the lines are parsed one at a time (MappingIterator) and inserted in transactions of
+ * param-service.transfer.batch-size parents, each parent together with its fields (JDBC batched, see DataConfig).
+ * The imported rows get new ids, the exported id is kept in their source_id. A record is matched by its exported
+ * id: an id already stored as id or source_id (or repeated in the file) is skipped, a name already used by another
+ * id is rejected and returned in the ImportResult (see check). One summary event is sent per batch.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Service
+public class CatalogTransferService implements HasLogger {
+    private static final QTemplate          TEMPLATE = QTemplate.template;
+    private static final QTemplateContent   TEMPLATE_CONTENT = QTemplateContent.templateContent;
+    private static final QTemplateField     TEMPLATE_FIELD = QTemplateField.templateField;
+    private static final QDatasource        DATASOURCE = QDatasource.datasource;
+    private static final QDatasourceContent DATASOURCE_CONTENT = QDatasourceContent.datasourceContent;
+    private static final QDatasourceField   DATASOURCE_FIELD = QDatasourceField.datasourceField;
+
+    private final JPAQueryFactory           queryFactory;
+    private final EntityManager             entityManager;
+    private final EventService              eventService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate       transactionTemplate;
+    private final TransactionTemplate       readOnlyTransactionTemplate;
+    private final ObjectWriter              lineWriter;
+    private final ObjectReader              templateReader;
+    private final ObjectReader              datasourceReader;
+    private final int                       batchSize;
+    private final int                       fetchSize;
+    private final Semaphore                 exports;
+
+    public CatalogTransferService(JPAQueryFactory queryFactory,
+                                  EntityManager entityManager,
+                                  EventService eventService,
+                                  ApplicationEventPublisher eventPublisher,
+                                  PlatformTransactionManager transactionManager,
+                                  ObjectMapper mapper,
+                                  ServiceConfig serviceConfig) {
+        this.queryFactory = queryFactory;
+        this.entityManager = entityManager;
+        this.eventService = eventService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.readOnlyTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.lineWriter = mapper.writer()
+                                .without(SerializationFeature.INDENT_OUTPUT)
+                                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                                .withRootValueSeparator("\n");
+        this.templateReader = mapper.readerFor(TemplateRecord.class);
+        this.datasourceReader = mapper.readerFor(DatasourceRecord.class);
+        this.batchSize = serviceConfig.getTransferBatchSize();
+        this.fetchSize = serviceConfig.getTransferFetchSize();
+        this.exports = new Semaphore(serviceConfig.getTransferMaxExports());
+    }
+
+    /**
+     * Reserves one of the param-service.transfer.max-exports exports, false if all of them are running. The
+     * reservation must be released with endExport when the export finishes.
+     */
+    public boolean tryStartExport() {
+        return exports.tryAcquire();
+    }
+
+    public void endExport() {
+        exports.release();
+    }
+
+    /**
+     * Writes all the templates, one per line. Returns the number of templates written.
+     */
+    public long exportTemplates(OutputStream out) {
+        return readOnlyTransactionTemplate.execute(status -> {
+            try (var lines = lineWriter.writeValues(out);
+                 var rows = queryFactory.select(TEMPLATE.id, TEMPLATE.nombre, TEMPLATE.fileRepo, TEMPLATE.destino,
+                                                TEMPLATE_CONTENT.json, TEMPLATE_CONTENT.blockly,
+                                                TEMPLATE.fechaCreacion, TEMPLATE.fechaModificacion,
+                                                TEMPLATE.autor, TEMPLATE.activo)
+                                        .from(TEMPLATE)
+                                        .leftJoin(TEMPLATE.content, TEMPLATE_CONTENT)
+                                        .orderBy(TEMPLATE.id.asc())
+                                        .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                                        .setHint(HibernateHints.HINT_READ_ONLY, true)
+                                        .stream();
+                 var fields = queryFactory.select(TEMPLATE_FIELD.template.id, TEMPLATE_FIELD.id,
+                                                  TEMPLATE_FIELD.nombre, TEMPLATE_FIELD.tipo,
+                                                  TEMPLATE_FIELD.valorDefault)
+                                          .from(TEMPLATE_FIELD)
+                                          .orderBy(TEMPLATE_FIELD.template.id.asc(), TEMPLATE_FIELD.nombre.asc())
+                                          .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                                          .setHint(HibernateHints.HINT_READ_ONLY, true)
+                                          .stream()) {
+                return writeTemplates(rows, fields, lines);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Writes all the datasources, one per line. Returns the number of datasources written.
+     */
+    public long exportDatasources(OutputStream out) {
+        return readOnlyTransactionTemplate.execute(status -> {
+            try (var lines = lineWriter.writeValues(out);
+                 var rows = queryFactory.select(DATASOURCE.id, DATASOURCE.nombre,
+                                                DATASOURCE_CONTENT.json, DATASOURCE_CONTENT.blockly,
+                                                DATASOURCE_CONTENT.config, DATASOURCE_CONTENT.configBlockly,
+                                                DATASOURCE_CONTENT.mapping,
+                                                DATASOURCE.fechaCreacion, DATASOURCE.fechaModificacion,
+                                                DATASOURCE.autor, DATASOURCE.activo)
+                                        .from(DATASOURCE)
+                                        .leftJoin(DATASOURCE.content, DATASOURCE_CONTENT)
+                                        .orderBy(DATASOURCE.id.asc())
+                                        .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                                        .setHint(HibernateHints.HINT_READ_ONLY, true)
+                                        .stream();
+                 var fields = queryFactory.select(DATASOURCE_FIELD.datasource.id, DATASOURCE_FIELD.id,
+                                                  DATASOURCE_FIELD.nombre, DATASOURCE_FIELD.tipo,
+                                                  DATASOURCE_FIELD.validaciones)
+                                          .from(DATASOURCE_FIELD)
+                                          .orderBy(DATASOURCE_FIELD.datasource.id.asc(), DATASOURCE_FIELD.nombre.asc())
+                                          .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                                          .setHint(HibernateHints.HINT_READ_ONLY, true)
+                                          .stream()) {
+                return writeDatasources(rows, fields, lines);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Reads the templates, one per line, and inserts the ones whose id was not imported yet (see check).
+     */
+    public ImportResult importTemplates(InputStream in, String user) throws IOException {
+        var names = new HashMap<String, UUID>();
+        var ids = new HashSet<UUID>();
+        var batch = new ArrayList<Template>(batchSize);
+        var rejected = new ArrayList<String>();
+        long imported = 0, skipped = 0;
+
+        queryFactory.select(TEMPLATE.nombre, TEMPLATE.id, TEMPLATE.sourceId).from(TEMPLATE).fetch()
+                    .forEach(row -> {
+                        names.put(row.get(TEMPLATE.nombre), row.get(TEMPLATE.id));
+                        ids.add(row.get(TEMPLATE.id));
+                        if (row.get(TEMPLATE.sourceId) != null)
+                            ids.add(row.get(TEMPLATE.sourceId));
+                    });
+
+        try (MappingIterator<TemplateRecord> records = templateReader.readValues(in)) {
+            while (records.hasNextValue()) {
+                var record = records.nextValue();
+
+                switch (check(record.getId(), record.getNombre(), ids, names)) {
+                    case SKIP -> skipped++;
+                    case REJECT -> rejected.add(record.getNombre());
+                    case IMPORT -> {
+                        batch.add(toTemplate(record, user));
+                        if (batch.size() == batchSize)
+                            imported += insert(ParamType.TEMPLATE, "IMPORTA_TEMPLATES", batch, user);
+                    }
+                }
+            }
+            imported += insert(ParamType.TEMPLATE, "IMPORTA_TEMPLATES", batch, user);
+        }
+        if (!rejected.isEmpty())
+            getLogger().warn("Templates no importados, el nombre ya existe con otro id: " + rejected);
+
+        return new ImportResult(imported, skipped, rejected);
+    }
+
+    /**
+     * Reads the datasources, one per line, and inserts the ones whose id was not imported yet (see check).
+     */
+    public ImportResult importDatasources(InputStream in, String user) throws IOException {
+        var names = new HashMap<String, UUID>();
+        var ids = new HashSet<UUID>();
+        var batch = new ArrayList<Datasource>(batchSize);
+        var rejected = new ArrayList<String>();
+        long imported = 0, skipped = 0;
+
+        queryFactory.select(DATASOURCE.nombre, DATASOURCE.id, DATASOURCE.sourceId).from(DATASOURCE).fetch()
+                    .forEach(row -> {
+                        names.put(row.get(DATASOURCE.nombre), row.get(DATASOURCE.id));
+                        ids.add(row.get(DATASOURCE.id));
+                        if (row.get(DATASOURCE.sourceId) != null)
+                            ids.add(row.get(DATASOURCE.sourceId));
+                    });
+
+        try (MappingIterator<DatasourceRecord> records = datasourceReader.readValues(in)) {
+            while (records.hasNextValue()) {
+                var record = records.nextValue();
+
+                switch (check(record.getId(), record.getNombre(), ids, names)) {
+                    case SKIP -> skipped++;
+                    case REJECT -> rejected.add(record.getNombre());
+                    case IMPORT -> {
+                        batch.add(toDatasource(record, user));
+                        if (batch.size() == batchSize)
+                            imported += insert(ParamType.DATASOURCE, "IMPORTA_DATASOURCES", batch, user);
+                    }
+                }
+            }
+            imported += insert(ParamType.DATASOURCE, "IMPORTA_DATASOURCES", batch, user);
+        }
+        if (!rejected.isEmpty())
+            getLogger().warn("Datasources no importados, el nombre ya existe con otro id: " + rejected);
+
+        return new ImportResult(imported, skipped, rejected);
+    }
+
+    private enum Check { IMPORT, SKIP, REJECT }
+
+    /**
+     * A record whose exported id is already stored (as the id of a row or the source_id of an imported one), or was
+     * read before in the same file, is skipped. Otherwise, if its name is used by another id it is rejected (the
+     * names are unique), else it is imported. The accepted ids and names are added to the sets, so the rest of the
+     * file is checked against them.
+     */
+    private static Check check(UUID id, String nombre, Set<UUID> ids, Map<String, UUID> names) {
+        if (id != null && !ids.add(id))
+            return Check.SKIP;
+        if (names.containsKey(nombre))
+            return Check.REJECT;
+        names.put(nombre, id);
+
+        return Check.IMPORT;
+    }
+
+    /**
+     * Both cursors are ordered by the template id (in the database order), so the fields of each template are the
+     * next ones in the fields cursor: they are read until the template id changes.
+     */
+    private long writeTemplates(Stream<Tuple> rows, Stream<Tuple> fields, SequenceWriter lines) throws IOException {
+        var it = fields.iterator();
+        var field = it.hasNext() ? it.next() : null;
+        long count = 0;
+
+        for (var row : (Iterable<Tuple>) rows::iterator) {
+            var id = row.get(TEMPLATE.id);
+            var campos = new ArrayList<TemplateFieldRecord>();
+
+            while (field != null && id.equals(field.get(TEMPLATE_FIELD.template.id))) {
+                campos.add(new TemplateFieldRecord(field.get(TEMPLATE_FIELD.id), field.get(TEMPLATE_FIELD.nombre),
+                                                   field.get(TEMPLATE_FIELD.tipo),
+                                                   field.get(TEMPLATE_FIELD.valorDefault)));
+                field = it.hasNext() ? it.next() : null;
+            }
+            lines.write(new TemplateRecord(id, row.get(TEMPLATE.nombre),
+                                           row.get(TEMPLATE.fileRepo), row.get(TEMPLATE.destino),
+                                           row.get(TEMPLATE_CONTENT.json), row.get(TEMPLATE_CONTENT.blockly),
+                                           row.get(TEMPLATE.fechaCreacion), row.get(TEMPLATE.fechaModificacion),
+                                           row.get(TEMPLATE.autor), row.get(TEMPLATE.activo), campos));
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Same merge as writeTemplates, by datasource id.
+     */
+    private long writeDatasources(Stream<Tuple> rows, Stream<Tuple> fields, SequenceWriter lines) throws IOException {
+        var it = fields.iterator();
+        var field = it.hasNext() ? it.next() : null;
+        long count = 0;
+
+        for (var row : (Iterable<Tuple>) rows::iterator) {
+            var id = row.get(DATASOURCE.id);
+            var campos = new ArrayList<DatasourceFieldRecord>();
+
+            while (field != null && id.equals(field.get(DATASOURCE_FIELD.datasource.id))) {
+                campos.add(new DatasourceFieldRecord(field.get(DATASOURCE_FIELD.id),
+                                                     field.get(DATASOURCE_FIELD.nombre),
+                                                     field.get(DATASOURCE_FIELD.tipo),
+                                                     field.get(DATASOURCE_FIELD.validaciones)));
+                field = it.hasNext() ? it.next() : null;
+            }
+            lines.write(new DatasourceRecord(id, row.get(DATASOURCE.nombre),
+                                             row.get(DATASOURCE_CONTENT.json),
+                                             row.get(DATASOURCE_CONTENT.blockly),
+                                             row.get(DATASOURCE_CONTENT.config),
+                                             row.get(DATASOURCE_CONTENT.configBlockly),
+                                             row.get(DATASOURCE_CONTENT.mapping),
+                                             row.get(DATASOURCE.fechaCreacion),
+                                             row.get(DATASOURCE.fechaModificacion),
+                                             row.get(DATASOURCE.autor), row.get(DATASOURCE.activo), campos));
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Inserts the batch (parents with their fields and content by cascade) in one transaction and clears it.
+     */
+    private long insert(ParamType type, String eventName, List<?> batch, String user) {
+        if (batch.isEmpty())
+            return 0;
+
+        var names = batch.stream()
+                         .map(entity -> (entity instanceof Template template) ? template.getNombre()
+                                                                              : ((Datasource) entity).getNombre())
+                         .toList();
+        var summary = new BulkChangeEvent(type, Map.of("nombres", names), batch.size());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            batch.forEach(entityManager::persist);
+            entityManager.flush();
+            entityManager.clear();
+            eventService.sendEvent(UserContext.getCorrelationId(), user, eventName, summary);
+            eventPublisher.publishEvent(ParamChangedEvent.saved(type, eventName, user, summary));
+        });
+        getLogger().info(eventName + " " + batch.size() + " rows, user:" + user);
+        batch.clear();
+
+        return summary.getCount();
+    }
+
+    private static Template toTemplate(TemplateRecord record, String user) {
+        var template = new Template(null, record.getNombre(), record.getFileRepo(), record.getDestino(),
+                                    record.getJson(), record.getBlockly(),
+                                    Objects.requireNonNullElse(record.getFechaCreacion(), LocalDate.now()),
+                                    LocalDate.now(),
+                                    Objects.requireNonNullElse(record.getAutor(), user),
+                                    Objects.requireNonNullElse(record.getActivo(), Boolean.TRUE),
+                                    null);
+
+        template.setSourceId(record.getId());
+        record.getCampos().forEach(campo -> template.getCampos().add(new TemplateField(null, template,
+                                                                                       campo.getNombre(),
+                                                                                       campo.getTipo(),
+                                                                                       campo.getValorDefault())));
+        return template;
+    }
+
+    private static Datasource toDatasource(DatasourceRecord record, String user) {
+        var datasource = new Datasource(null, record.getNombre(), record.getJson(), record.getBlockly(),
+                                        record.getConfig(), record.getConfigBlockly(), record.getMapping(),
+                                        Objects.requireNonNullElse(record.getFechaCreacion(), LocalDate.now()),
+                                        LocalDate.now(),
+                                        Objects.requireNonNullElse(record.getAutor(), user),
+                                        Objects.requireNonNullElse(record.getActivo(), Boolean.TRUE),
+                                        null);
+
+        datasource.setSourceId(record.getId());
+        record.getCampos().forEach(campo -> datasource.getCampos().add(new DatasourceField(null, datasource,
+                                                                                           campo.getNombre(),
+                                                                                           campo.getTipo(),
+                                                                                           campo.getValidaciones())));
+        return datasource;
+    }
+
+    @NotNull
+    @Override
+    public Logger getLogger() { return HasLogger.DefaultImpls.getLogger(this); }
+}
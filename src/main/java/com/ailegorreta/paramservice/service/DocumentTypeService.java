@@ -25,12 +25,15 @@ package com.ailegorreta.paramservice.service;
 import com.ailegorreta.commons.utils.HasLogger;
 import com.ailegorreta.paramservice.domain.DocumentType;
 import com.ailegorreta.paramservice.domain.DocumentTypeRepository;
+import com.ailegorreta.paramservice.domain.ParamType;
 import com.ailegorreta.paramservice.gql.types.DocumentTypeInput;
 import com.ailegorreta.resourceserver.utils.UserContext;
+import jakarta.transaction.Transactional;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang.Validate;
 import org.slf4j.Logger;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.UUID;
@@ -43,28 +46,37 @@ import java.util.UUID;
  * @date August 2023
  */
 @Service
+@Transactional
 @RequiredArgsConstructor
 public class DocumentTypeService implements HasLogger {
 
     final DocumentTypeRepository documentTypeRepository;
     final EventService eventService;
+    final ApplicationEventPublisher eventPublisher;
 
     public DocumentType addDocumentType(DocumentTypeInput documentTypeInput) {
-        // validate uniqueness
-        var documentType = documentTypeRepository.findDocumentTypeByName(documentTypeInput.getName());
+        var savedDocumentType = new DocumentType(UUID.randomUUID(), documentTypeInput.getName(),
+                                                 documentTypeInput.getExpiration(), 0L);
+        // validate uniqueness and insert in one statement (unique index on the name)
+        var inserted = documentTypeRepository.insertIfAbsent(savedDocumentType.getId(), savedDocumentType.getName(),
+                                                             savedDocumentType.getExpiration());
 
-        Validate.isTrue(documentType == null,"El tipo de documento YA existe en el catálogo");
-
-        documentType = new DocumentType(null, documentTypeInput.getName(), documentTypeInput.getExpiration());
+        Validate.isTrue(inserted == 1,"El tipo de documento YA existe en el catálogo");
 
         eventService.sendEvent(UserContext.getCorrelationId(),
-                               documentTypeInput.getUserModify(),"ANADE_TIPO_DOCUMENTO", documentType);
-        getLogger().info("Add a new document type " + documentType.getName());
+                               documentTypeInput.getUserModify(),"ANADE_TIPO_DOCUMENTO", savedDocumentType);
+        getLogger().info("Add a new document type " + savedDocumentType.getName());
+
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.DOCUMENT_TYPE, "ANADE_TIPO_DOCUMENTO",
+                                                            documentTypeInput.getUserModify(), savedDocumentType));
 
-        return documentTypeRepository.save(documentType);
+        return savedDocumentType;
     }
 
     public DocumentType updateDocumentType(DocumentTypeInput documentTypeInput) {
+        if (documentTypeInput.getVersion() != null)
+            return updateDocumentTypeIfVersion(documentTypeInput);
+
         // Validate that the documentType already exists
         var documentType = documentTypeRepository.findById(documentTypeInput.getId());
 
@@ -77,7 +89,36 @@ public class DocumentTypeService implements HasLogger {
                 "MODIFICA_TIPO_DOCUMENTO", documentType.get());
         getLogger().info("Update a document type " + documentType.get().getName());
 
-        return documentTypeRepository.save(documentType.get());
+        var savedDocumentType = documentTypeRepository.save(documentType.get());
+
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.DOCUMENT_TYPE, "MODIFICA_TIPO_DOCUMENTO",
+                                                            documentTypeInput.getUserModify(), savedDocumentType));
+
+        return savedDocumentType;
+    }
+
+    /**
+     * Conditional update: one statement that validates the version and updates the document type, without reading
+     * it first.
+     */
+    private DocumentType updateDocumentTypeIfVersion(DocumentTypeInput documentTypeInput) {
+        var version = documentTypeInput.getVersion();
+        var updated = documentTypeRepository.updateIfVersion(documentTypeInput.getId(), documentTypeInput.getName(),
+                                                             documentTypeInput.getExpiration(), version);
+
+        if (updated == 0)
+            throw new VersionConflictException(ParamType.DOCUMENT_TYPE, documentTypeInput.getId(), version);
+
+        var savedDocumentType = new DocumentType(documentTypeInput.getId(), documentTypeInput.getName(),
+                                                 documentTypeInput.getExpiration(), version + 1);
+
+        eventService.sendEvent(UserContext.getCorrelationId(), documentTypeInput.getUserModify(),
+                "MODIFICA_TIPO_DOCUMENTO", savedDocumentType);
+        getLogger().info("Update a document type " + savedDocumentType.getName() + " version:" + version);
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.DOCUMENT_TYPE, "MODIFICA_TIPO_DOCUMENTO",
+                                                            documentTypeInput.getUserModify(), savedDocumentType));
+
+        return savedDocumentType;
     }
 
     public DocumentType deleteDocumentType(UUID id, String user) {
@@ -87,6 +128,7 @@ public class DocumentTypeService implements HasLogger {
         Validate.isTrue(documentType.isPresent(), "El tipo de documento ya NO existe en el catálogo.");
 
         documentTypeRepository.deleteById(id);
+        eventPublisher.publishEvent(ParamChangedEvent.deleted(ParamType.DOCUMENT_TYPE, "ELIMINA_TIPO_DOCUMENTO", user, documentType.get()));
 
         eventService.sendEvent(UserContext.getCorrelationId(),user,
                 "ELIMINA_TIPO_DOCUMENTO", documentType.get());
@@ -0,0 +1,153 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  EventOutboxRelay.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.commons.event.EventDTO;
+import com.ailegorreta.commons.utils.HasLogger;
+import com.ailegorreta.paramservice.config.ServiceConfig;
+import com.ailegorreta.paramservice.domain.EventOutbox;
+import com.ailegorreta.paramservice.domain.EventOutboxRepository;
+import com.fasterxml.jackson.databind.util.RawValue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.constraints.NotNull;
+import org.slf4j.Logger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Drains the event_outbox table to Kafka (producer-out-0) in batches.
+ *
+ * Each batch is locked with FOR UPDATE SKIP LOCKED, sent and deleted in one transaction. The producer binding is
+ * sync (spring.cloud.stream.kafka.bindings.producer-out-0.producer.sync), so StreamBridge.send returns after the
+ * broker acknowledged the event and throws if it was not written; the rows are deleted only after every event of
+ * the batch was acknowledged. If a send fails the transaction is rolled back and the batch is retried in the next
+ * run, so the delivery is at-least-once (the events that were sent before the failure are sent again).
+ *
+ * Metrics:
+ * - param.outbox.lag: time from the mutation (outbox insert) until the event is sent.
+ * - param.outbox.batch.size: events sent per batch.
+ * - param.outbox.failures: batches rolled back because Kafka did not accept an event.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Component
+@ConditionalOnProperty(value = "param-service.outbox.relay-enabled", havingValue = "true", matchIfMissing = true)
+public class EventOutboxRelay implements HasLogger {
+    private static final String BINDING = "producer-out-0";
+
+    private final EventOutboxRepository eventOutboxRepository;
+    private final StreamBridge          streamBridge;
+    private final TransactionTemplate   transactionTemplate;
+    private final int                   batchSize;
+
+    private final Timer                 lag;
+    private final DistributionSummary   batchSizes;
+    private final Counter               failures;
+
+    public EventOutboxRelay(EventOutboxRepository eventOutboxRepository,
+                            StreamBridge streamBridge,
+                            PlatformTransactionManager transactionManager,
+                            ServiceConfig serviceConfig,
+                            MeterRegistry meterRegistry) {
+        this.eventOutboxRepository = eventOutboxRepository;
+        this.streamBridge = streamBridge;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = serviceConfig.getOutboxBatchSize();
+        this.lag = Timer.builder("param.outbox.lag")
+                        .description("Time from the mutation until its event is sent to Kafka")
+                        .publishPercentiles(0.5, 0.99)
+                        .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("param.outbox.batch.size")
+                                             .description("Events sent per outbox batch")
+                                             .register(meterRegistry);
+        this.failures = Counter.builder("param.outbox.failures")
+                               .description("Outbox batches rolled back because an event was not sent")
+                               .register(meterRegistry);
+    }
+
+    /**
+     * Sends batches until the outbox is empty (or a batch fails).
+     */
+    @Scheduled(fixedDelayString = "${param-service.outbox.relay-delay:500}")
+    public void relay() {
+        try {
+            Integer sent;
+
+            do {
+                sent = transactionTemplate.execute(status -> relayBatch());
+            } while (sent != null && sent == batchSize);
+        } catch (RuntimeException e) {
+            failures.increment();
+            getLogger().error("Could not relay the outbox events, they will be retried: " + e.getMessage());
+        }
+    }
+
+    private int relayBatch() {
+        var batch = eventOutboxRepository.lockNextBatch(batchSize);
+
+        if (batch.isEmpty())
+            return 0;
+
+        var now = LocalDateTime.now();
+
+        for (EventOutbox eventOutbox : batch) {
+            if (!streamBridge.send(BINDING, toEventDTO(eventOutbox)))
+                throw new IllegalStateException("El evento " + eventOutbox.getId() + " no fue aceptado por " + BINDING);
+            lag.record(Duration.between(eventOutbox.getCreationDate(), now));
+        }
+        eventOutboxRepository.deleteAllInBatch(batch);
+        batchSizes.record(batch.size());
+
+        return batch.size();
+    }
+
+    /**
+     * The body was serialized by EventService when the event was stored, it is written as is (RawValue) in the
+     * message instead of being parsed to a tree and serialized again.
+     */
+    private static EventDTO toEventDTO(EventOutbox eventOutbox) {
+        return new EventDTO(eventOutbox.getCorrelationId(),
+                            eventOutbox.getEventType(),
+                            eventOutbox.getUsername(),
+                            eventOutbox.getEventName(),
+                            eventOutbox.getApplicationName(),
+                            eventOutbox.getCoreName(),
+                            new RawValue(eventOutbox.getEventBody()));
+    }
+
+    @NotNull
+    @Override
+    public Logger getLogger() { return HasLogger.DefaultImpls.getLogger(this); }
+}
@@ -0,0 +1,187 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamChangeFeed.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.commons.utils.HasLogger;
+import com.ailegorreta.paramservice.config.ServiceConfig;
+import com.ailegorreta.paramservice.domain.ParamChange;
+import com.ailegorreta.paramservice.domain.ParamChangeRepository;
+import com.ailegorreta.paramservice.domain.ParamType;
+import jakarta.validation.constraints.NotNull;
+import org.slf4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.event.TransactionalEventListener;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live feed of the parameter changes for the GraphQL subscription parameterChanged, so the other microservices
+ * get a push (e.g., the daily date roll) instead of polling systemDates and systemRates.
+ *
+ * The feed publishes the rows of the change log (param_changes): after every committed ParamChangedEvent, local
+ * or remote (see RemoteParamChangeListener), it reads the rows after the last sequence published. So every
+ * replica publishes the changes of all of them, in sequence order, with the same sequence that the delta-sync
+ * query paramChanges uses. The sequences are assigned in commit order (see ParamChangeLogService), so moving
+ * lastSequence past a row never skips a change that commits later.
+ *
+ * Each subscriber has its own bounded buffer (param-service.subscriptions.buffer-size) and its own filter, a slow
+ * subscriber does not delay the others: when its buffer overflows its subscription ends with an error and it must
+ * resync with paramChanges(since: last sequence received) and subscribe again.
+ *
+ * The last changes published (param-service.subscriptions.replay-size) are kept in a bounded replay window, so the
+ * SSE clients resume after a reconnection (Last-Event-ID) without a database read; older resume points are caught
+ * up from the change log first and then continue with the window.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Service
+public class ParamChangeFeed implements HasLogger {
+
+    private final ParamChangeRepository paramChangeRepository;
+    private final Sinks.Many<ParamChange> changes;
+    private final Deque<Long> replayed = new ArrayDeque<>();   // sequences kept by the replay window
+    private final int bufferSize;
+    private final int replaySize;
+    private Long lastSequence;      // last change published, null until the application is ready
+
+    public ParamChangeFeed(ParamChangeRepository paramChangeRepository, ServiceConfig serviceConfig) {
+        this.paramChangeRepository = paramChangeRepository;
+        this.bufferSize = serviceConfig.getSubscriptionBufferSize();
+        this.replaySize = serviceConfig.getSubscriptionReplaySize();
+        this.changes = Sinks.many().replay().limit(replaySize);
+    }
+
+    /**
+     * The changes committed from now on, only of the types and names requested (all if null or empty).
+     */
+    public Flux<ParamChange> changes(Collection<ParamType> types, Collection<String> names) {
+        return Flux.defer(() -> {
+            synchronized (this) {
+                return live((lastSequence == null) ? 0L : lastSequence, types, names);
+            }
+        });
+    }
+
+    /**
+     * The changes with sequence greater than after and then the changes committed from now on, only of the types
+     * and names requested (all if null or empty). When after is older than the replay window the missing changes
+     * are read from the change log.
+     */
+    public Flux<ParamChange> changesAfter(long after, Collection<ParamType> types, Collection<String> names) {
+        return Flux.defer(() -> {
+            synchronized (this) {
+                if (lastSequence != null &&
+                    (after >= lastSequence || (!replayed.isEmpty() && after + 1 >= replayed.peekFirst())))
+                    return live(after, types, names);
+            }
+            var caughtUp = new AtomicLong(after);
+
+            return Mono.fromCallable(() -> readAfter(caughtUp.get()))
+                       .expand(rows -> (rows.size() < ParamChangeLogService.MAX_LIMIT) ? Mono.empty()
+                                       : Mono.fromCallable(() -> readAfter(rows.get(rows.size() - 1).getSequence())))
+                       .flatMapIterable(rows -> rows)
+                       .doOnNext(change -> caughtUp.set(change.getSequence()))
+                       .filter(change -> matches(change, types, names))
+                       .subscribeOn(Schedulers.boundedElastic())
+                       .concatWith(Flux.defer(() -> live(caughtUp.get(), types, names)));
+        });
+    }
+
+    private List<ParamChange> readAfter(long sequence) {
+        return paramChangeRepository.findBySequenceGreaterThanOrderBySequenceAsc(sequence,
+                                                              PageRequest.of(0, ParamChangeLogService.MAX_LIMIT));
+    }
+
+    private Flux<ParamChange> live(long after, Collection<ParamType> types, Collection<String> names) {
+        return changes.asFlux()
+                      .filter(change -> change.getSequence() > after && matches(change, types, names))
+                      .onBackpressureBuffer(bufferSize,
+                                            change -> getLogger().warn("Subscriber buffer overflow at change {}",
+                                                                       change.getSequence()),
+                                            BufferOverflowStrategy.ERROR);
+    }
+
+    private static boolean matches(ParamChange change, Collection<ParamType> types, Collection<String> names) {
+        return (types == null || types.isEmpty() || types.contains(change.getType())) &&
+               (names == null || names.isEmpty() || names.contains(change.getName()));
+    }
+
+    /**
+     * Starts the feed after the last change. If Postgres is not available at start-up the feed starts with the
+     * first change after it is, the subscribers resync that one with paramChanges.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void onApplicationReady() {
+        if (lastSequence != null)
+            return;
+        try {
+            var last = paramChangeRepository.findTopByOrderBySequenceDesc();
+
+            lastSequence = (last == null) ? 0L : last.getSequence();
+        } catch (DataAccessException | TransactionException e) {
+            getLogger().warn("No se pudo iniciar el feed de cambios: {}", e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onParamChanged(ParamChangedEvent event) {
+        if (lastSequence == null) {
+            onApplicationReady();
+            return;
+        }
+
+        var page = PageRequest.of(0, ParamChangeLogService.MAX_LIMIT);
+        List<ParamChange> rows;
+
+        do {
+            rows = paramChangeRepository.findBySequenceGreaterThanOrderBySequenceAsc(lastSequence, page);
+            for (ParamChange row : rows) {
+                changes.tryEmitNext(row);
+                replayed.addLast(row.getSequence());
+                if (replayed.size() > replaySize)
+                    replayed.removeFirst();
+                lastSequence = row.getSequence();
+            }
+        } while (rows.size() == ParamChangeLogService.MAX_LIMIT);
+    }
+
+    @NotNull
+    @Override
+    public Logger getLogger() { return HasLogger.DefaultImpls.getLogger(this); }
+}
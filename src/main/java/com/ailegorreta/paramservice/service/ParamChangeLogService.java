@@ -0,0 +1,171 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamChangeLogService.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.commons.utils.HasLogger;
+import com.ailegorreta.paramservice.domain.*;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.validation.constraints.NotNull;
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes the append-only change log (param_changes) and serves the delta-sync queries: "give me all parameter
+ * changes after sequence N".
+ *
+ * The rows are written by a BEFORE_COMMIT listener, so they are inside the transaction of the mutation (a change
+ * is in the log if and only if the mutation was committed) but only at the very end of it.
+ *
+ * The seq column is taken from a Postgres sequence when the row is inserted, not when it is committed, so two
+ * concurrent mutations could commit out of order: a client that read since=N after seq N+2 was committed would
+ * never receive N+1. To avoid it the writers take a transaction-level advisory lock (LOG_LOCK_KEY) before the
+ * insert and keep it until they commit: the sequences are assigned in commit order and a visible seq implies that
+ * all the smaller ones are visible too (or were rolled back). The pending changes of the mutation are flushed
+ * before the lock is taken, so the lock only covers the insert of the log rows and the commit: the mutations
+ * (bulk imports and batches included) run concurrently and only their last statement is serialized.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Service
+public class ParamChangeLogService implements HasLogger {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+    public static final long LOG_LOCK_KEY = 0x5041524d4c4f47L;     // 'PARMLOG'
+
+    private final ParamChangeRepository paramChangeRepository;
+    private final ObjectWriter          payloadWriter;
+
+    public ParamChangeLogService(ParamChangeRepository paramChangeRepository, ObjectMapper mapper) {
+        this.paramChangeRepository = paramChangeRepository;
+        this.payloadWriter = mapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onParamChanged(ParamChangedEvent event) {
+        if (event.isRemote())
+            return;         // logged by the replica that made the change
+
+        Collection<?> values = (event.getValue() instanceof Collection<?> collection) ? collection
+                                                                                     : List.of(event.getValue());
+
+        paramChangeRepository.flush();        // the mutation statements are not executed while holding the lock
+        paramChangeRepository.lockLog(LOG_LOCK_KEY);
+        paramChangeRepository.saveAll(values.stream().map(value -> toParamChange(event, value)).toList());
+    }
+
+    /**
+     * Returns the changes with sequence greater than since, in sequence order.
+     *
+     * @param since last sequence already applied by the client (0 to read the log from the beginning)
+     * @param limit maximum number of changes to return, default DEFAULT_LIMIT and never more than MAX_LIMIT
+     */
+    public ParamChanges changesSince(Long since, Integer limit) {
+        Validate.isTrue(since != null && since >= 0, "La secuencia debe ser mayor o igual a cero.");
+
+        var size = (limit == null) ? DEFAULT_LIMIT : Math.min(Math.max(limit, 1), MAX_LIMIT);
+        // read one extra row to know if there are more changes without a count(*)
+        var rows = paramChangeRepository.findBySequenceGreaterThanOrderBySequenceAsc(since, PageRequest.of(0, size + 1));
+        var hasMore = rows.size() > size;
+        var changes = hasMore ? rows.subList(0, size) : rows;
+        var lastSequence = changes.isEmpty() ? since : changes.get(changes.size() - 1).getSequence();
+
+        return new ParamChanges(changes, lastSequence, hasMore);
+    }
+
+    private ParamChange toParamChange(ParamChangedEvent event, Object value) {
+        var paramChange = ParamChange.builder()
+                                     .type(event.getType())
+                                     .eventName(event.getEventName())
+                                     .deleted(event.isDeleted())
+                                     .user(event.getUser())
+                                     .changeDate(LocalDateTime.now())
+                                     .payload(toJson(payloadOf(value)))
+                                     .build();
+
+        if (value instanceof SystemDate systemDate) {
+            paramChange.setEntityId(systemDate.getId());
+            paramChange.setName(systemDate.getName() == null ? null : systemDate.getName().name());
+        } else if (value instanceof SystemRate systemRate) {
+            paramChange.setEntityId(systemRate.getId());
+            paramChange.setName(systemRate.getName());
+        } else if (value instanceof DocumentType documentType) {
+            paramChange.setEntityId(documentType.getId());
+            paramChange.setName(documentType.getName());
+        } else if (value instanceof Template template) {
+            paramChange.setEntityId(template.getId());
+            paramChange.setName(template.getNombre());
+        } else if (value instanceof Datasource datasource) {
+            paramChange.setEntityId(datasource.getId());
+            paramChange.setName(datasource.getNombre());
+        } else if (value instanceof TemplateEvent template) {
+            paramChange.setEntityId(template.getId());
+            paramChange.setName(template.getNombre());
+        } else if (value instanceof DatasourceEvent datasource) {
+            paramChange.setEntityId(datasource.getId());
+            paramChange.setName(datasource.getNombre());
+        }
+
+        return paramChange;
+    }
+
+    /**
+     * Templates and datasources are logged as their event projections without the code: serializing the entity
+     * would load the lazy campos and content inside the mutation and store their CLOBs in every row. The client
+     * reads the template or datasource by its id if it needs the code.
+     */
+    private static Object payloadOf(Object value) {
+        if (value instanceof Template template)
+            return TemplateEvent.summaryOf(template);
+        if (value instanceof Datasource datasource)
+            return DatasourceEvent.summaryOf(datasource);
+
+        return value;
+    }
+
+    private String toJson(Object value) {
+        try {
+            return payloadWriter.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            // the log row is still useful without the payload: the client can read the parameter by its id
+            getLogger().error("Could not serialize the change payload: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @NotNull
+    @Override
+    public Logger getLogger() { return HasLogger.DefaultImpls.getLogger(this); }
+}
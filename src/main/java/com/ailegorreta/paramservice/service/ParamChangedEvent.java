@@ -0,0 +1,82 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamChangedEvent.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.paramservice.domain.ParamType;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Spring application event published by the mutation services every time a parameter is added, updated or
+ * deleted. It is an in-process event (it is not the Kafka event sent by EventService).
+ *
+ * The listeners that keep in-memory structures (snapshot, calendar) use @TransactionalEventListener with
+ * fallbackExecution so they run after the commit when a transaction exists, or immediately if not.
+ *
+ * The remote events are the changes made by another replica (received from param-audit, see
+ * RemoteParamChangeListener): their value is the List<ParamKey> of the parameters that changed, so the listeners
+ * refresh only those. The list is empty when the event does not identify them (e.g., a bulk mutation), then the
+ * listeners reload the whole type.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ParamChangedEvent {
+    ParamType   type;
+    String      eventName;      // same name as the Kafka event, e.g., ANADE_VARIABLE_SISTEMA
+    String      user;
+    Object      value;          // the entity after the mutation (or before it for deletes)
+    boolean     deleted;        // true if the parameter (value) no longer exists
+    boolean     remote;         // true if the change was made (and logged) by another replica
+
+    /**
+     * The parameter was added or updated. For field mutations the value is a TemplateEvent or DatasourceEvent
+     * (the parent columns plus the field), so the listeners do not load the fields of the parent.
+     */
+    public static ParamChangedEvent saved(ParamType type, String eventName, String user, Object value) {
+        return new ParamChangedEvent(type, eventName, user, value, false, false);
+    }
+
+    public static ParamChangedEvent deleted(ParamType type, String eventName, String user, Object value) {
+        return new ParamChangedEvent(type, eventName, user, value, true, false);
+    }
+
+    public static ParamChangedEvent remote(ParamType type, String eventName, String user, List<ParamKey> keys,
+                                           boolean deleted) {
+        return new ParamChangedEvent(type, eventName, user, keys, deleted, true);
+    }
+
+    /**
+     * The keys of a remote event, empty if it does not identify the parameters that changed.
+     */
+    @SuppressWarnings("unchecked")
+    public List<ParamKey> getRemoteKeys() {
+        return (remote && value instanceof List<?> keys) ? (List<ParamKey>) keys : List.of();
+    }
+}
@@ -0,0 +1,291 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamSnapshot.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.paramservice.domain.*;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable, versioned copy of the whole parameter catalog: system dates, system rates, document types and the
+ * templates and datasources (with their fields and code).
+ *
+ * The maps are read-optimized and never modified after construction: the system dates are indexed in an
+ * EnumMap (a direct array index by DayType ordinal) and the string and UUID keys use Map.copyOf, that is a
+ * compact open-addressing table without nodes. Readers just dereference the current snapshot, so they never
+ * take a lock or touch JDBC. A new snapshot is created for every change, reusing the regions that did not change.
+ *
+ * The version is the sequence of the last param_changes row read before the regions were loaded, so the snapshot
+ * has at least all the changes up to that sequence and the versions of different replicas (and of the
+ * paramChanges delta-sync) are comparable.
+ *
+ * A snapshot restored from the disk (see ParamSnapshotFile) is degraded: it is the last one known good, its
+ * createdAt is the time it was built from the database and it is served until the database is available again.
+ * The templates and datasources are held so their queries can be answered in degraded mode (see
+ * TemplateQueryController); while the database is available those queries still go to Postgres.
+ *
+ * note: The entities stored here are shared by all readers and must be treated as read-only.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+public final class ParamSnapshot {
+
+    private final long version;
+    private final Instant createdAt;
+    private final boolean degraded;
+
+    private final List<SystemDate> systemDates;
+    private final Map<DayType, List<SystemDate>> systemDatesByName;
+    private final Map<UUID, SystemDate> systemDatesById;
+
+    private final List<SystemRate> systemRates;
+    private final Map<String, List<SystemRate>> systemRatesByName;
+    private final Map<UUID, SystemRate> systemRatesById;
+
+    private final List<DocumentType> documentTypes;
+    private final Map<String, List<DocumentType>> documentTypesByName;
+    private final Map<UUID, DocumentType> documentTypesById;
+
+    private final List<Template> templates;
+    private final Map<String, List<Template>> templatesByName;
+    private final Map<UUID, Template> templatesById;
+
+    private final List<Datasource> datasources;
+    private final Map<String, List<Datasource>> datasourcesByName;
+    private final Map<UUID, Datasource> datasourcesById;
+
+    private ParamSnapshot(long version,
+                          Instant createdAt,
+                          boolean degraded,
+                          List<SystemDate> systemDates,
+                          List<SystemRate> systemRates,
+                          List<DocumentType> documentTypes,
+                          List<Template> templates,
+                          List<Datasource> datasources) {
+        this.version = version;
+        this.createdAt = createdAt;
+        this.degraded = degraded;
+        this.systemDates = List.copyOf(systemDates);
+        this.systemDatesByName = Collections.unmodifiableMap(
+                                    this.systemDates.stream()
+                                        .collect(Collectors.groupingBy(SystemDate::getName,
+                                                                       () -> new EnumMap<>(DayType.class),
+                                                                       Collectors.toUnmodifiableList())));
+        this.systemDatesById = indexById(this.systemDates, SystemDate::getId);
+        this.systemRates = List.copyOf(systemRates);
+        this.systemRatesByName = indexByName(this.systemRates, SystemRate::getName);
+        this.systemRatesById = indexById(this.systemRates, SystemRate::getId);
+        this.documentTypes = List.copyOf(documentTypes);
+        this.documentTypesByName = indexByName(this.documentTypes, DocumentType::getName);
+        this.documentTypesById = indexById(this.documentTypes, DocumentType::getId);
+        this.templates = List.copyOf(templates);
+        this.templatesByName = indexByName(this.templates, Template::getNombre);
+        this.templatesById = indexById(this.templates, Template::getId);
+        this.datasources = List.copyOf(datasources);
+        this.datasourcesByName = indexByName(this.datasources, Datasource::getNombre);
+        this.datasourcesById = indexById(this.datasources, Datasource::getId);
+    }
+
+    public static final long NOT_LOADED = -1L;
+
+    /**
+     * The empty snapshot (version NOT_LOADED) used before the first load from the database.
+     */
+    public static ParamSnapshot empty() {
+        return new ParamSnapshot(NOT_LOADED, Instant.now(), false, List.of(), List.of(), List.of(), List.of(),
+                                 List.of());
+    }
+
+    public static ParamSnapshot of(long version,
+                                   List<SystemDate> systemDates,
+                                   List<SystemRate> systemRates,
+                                   List<DocumentType> documentTypes,
+                                   List<Template> templates,
+                                   List<Datasource> datasources) {
+        return new ParamSnapshot(version, Instant.now(), false, systemDates, systemRates, documentTypes, templates,
+                                 datasources);
+    }
+
+    /**
+     * The degraded snapshot read from the disk, built from the database at createdAt.
+     */
+    public static ParamSnapshot restored(long version,
+                                         Instant createdAt,
+                                         List<SystemDate> systemDates,
+                                         List<SystemRate> systemRates,
+                                         List<DocumentType> documentTypes,
+                                         List<Template> templates,
+                                         List<Datasource> datasources) {
+        return new ParamSnapshot(version, createdAt, true, systemDates, systemRates, documentTypes, templates,
+                                 datasources);
+    }
+
+    public ParamSnapshot withSystemDates(long version, List<SystemDate> systemDates) {
+        return new ParamSnapshot(version, Instant.now(), false, systemDates, this.systemRates, this.documentTypes,
+                                 this.templates, this.datasources);
+    }
+
+    public ParamSnapshot withSystemRates(long version, List<SystemRate> systemRates) {
+        return new ParamSnapshot(version, Instant.now(), false, this.systemDates, systemRates, this.documentTypes,
+                                 this.templates, this.datasources);
+    }
+
+    public ParamSnapshot withDocumentTypes(long version, List<DocumentType> documentTypes) {
+        return new ParamSnapshot(version, Instant.now(), false, this.systemDates, this.systemRates, documentTypes,
+                                 this.templates, this.datasources);
+    }
+
+    public ParamSnapshot withTemplates(long version, List<Template> templates) {
+        return new ParamSnapshot(version, Instant.now(), false, this.systemDates, this.systemRates,
+                                 this.documentTypes, templates, this.datasources);
+    }
+
+    public ParamSnapshot withDatasources(long version, List<Datasource> datasources) {
+        return new ParamSnapshot(version, Instant.now(), false, this.systemDates, this.systemRates,
+                                 this.documentTypes, this.templates, datasources);
+    }
+
+    /**
+     * Replaces the templates of the ids with the changed ones, the ids that are not in changed were deleted.
+     */
+    public ParamSnapshot withTemplates(long version, Set<UUID> ids, List<Template> changed) {
+        return withTemplates(version, replace(templates, Template::getId, ids, changed));
+    }
+
+    public ParamSnapshot withDatasources(long version, Set<UUID> ids, List<Datasource> changed) {
+        return withDatasources(version, replace(datasources, Datasource::getId, ids, changed));
+    }
+
+    public long getVersion() { return version; }
+
+    public boolean isLoaded() { return version != NOT_LOADED; }
+
+    public Instant getCreatedAt() { return createdAt; }
+
+    public boolean isDegraded() { return degraded; }
+
+    /* System dates */
+    public List<SystemDate> getSystemDates() { return systemDates; }
+
+    public List<SystemDate> getSystemDates(DayType name) {
+        return (name == null) ? systemDates : systemDatesByName.getOrDefault(name, List.of());
+    }
+
+    public SystemDate getSystemDate(DayType name) { return first(getSystemDates(name)); }
+
+    public SystemDate getSystemDate(UUID id) { return (id == null) ? null : systemDatesById.get(id); }
+
+    /**
+     * One system date per name in the same order (the first one for FESTIVO), null if there is none.
+     */
+    public List<SystemDate> getSystemDatesByNames(List<DayType> names) { return lookup(names, this::getSystemDate); }
+
+    /* System rates */
+    public List<SystemRate> getSystemRates() { return systemRates; }
+
+    public List<SystemRate> getSystemRates(String name) {
+        return (name == null) ? systemRates : systemRatesByName.getOrDefault(name, List.of());
+    }
+
+    public SystemRate getSystemRate(String name) { return first(getSystemRates(name)); }
+
+    public SystemRate getSystemRate(UUID id) { return (id == null) ? null : systemRatesById.get(id); }
+
+    public List<SystemRate> getSystemRatesByNames(List<String> names) { return lookup(names, this::getSystemRate); }
+
+    /* Document types */
+    public List<DocumentType> getDocumentTypes() { return documentTypes; }
+
+    public List<DocumentType> getDocumentTypes(String name) {
+        return (name == null) ? documentTypes : documentTypesByName.getOrDefault(name, List.of());
+    }
+
+    public DocumentType getDocumentType(String name) { return first(getDocumentTypes(name)); }
+
+    public DocumentType getDocumentType(UUID id) { return (id == null) ? null : documentTypesById.get(id); }
+
+    public List<DocumentType> getDocumentTypesByNames(List<String> names) {
+        return lookup(names, this::getDocumentType);
+    }
+
+    /* Templates and datasources */
+    public List<Template> getTemplates() { return templates; }
+
+    public List<Template> getTemplates(String nombre) {
+        return (nombre == null) ? templates : templatesByName.getOrDefault(nombre, List.of());
+    }
+
+    public Template getTemplate(UUID id) { return (id == null) ? null : templatesById.get(id); }
+
+    public List<Datasource> getDatasources() { return datasources; }
+
+    public List<Datasource> getDatasources(String nombre) {
+        return (nombre == null) ? datasources : datasourcesByName.getOrDefault(nombre, List.of());
+    }
+
+    public Datasource getDatasource(UUID id) { return (id == null) ? null : datasourcesById.get(id); }
+
+    private static <T> Map<String, List<T>> indexByName(List<T> rows, Function<T, String> name) {
+        return Map.copyOf(rows.stream()
+                              .filter(row -> name.apply(row) != null)
+                              .collect(Collectors.groupingBy(name, Collectors.toUnmodifiableList())));
+    }
+
+    private static <T> Map<UUID, T> indexById(List<T> rows, Function<T, UUID> id) {
+        return Map.copyOf(rows.stream()
+                              .collect(Collectors.toMap(id, Function.identity(), (first, second) -> first)));
+    }
+
+    private static <T> List<T> replace(List<T> rows, Function<T, UUID> id, Set<UUID> ids, List<T> changed) {
+        var result = new ArrayList<T>(rows.size() + changed.size());
+
+        rows.stream().filter(row -> !ids.contains(id.apply(row))).forEach(result::add);
+        result.addAll(changed);
+
+        return result;
+    }
+
+    /**
+     * Multi-get: one element per key in the same order, null for the keys not found (Stream.toList keeps nulls).
+     */
+    private static <K, T> List<T> lookup(List<K> keys, Function<K, T> byKey) {
+        return (keys == null) ? List.of() : keys.stream().map(byKey).toList();
+    }
+
+    private static <T> T first(List<T> rows) {
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    @Override
+    public String toString() {
+        return "ParamSnapshot{version=" + version + (degraded ? ", degraded" : "") +
+               ", systemDates=" + systemDates.size() +
+               ", systemRates=" + systemRates.size() + ", documentTypes=" + documentTypes.size() +
+               ", templates=" + templates.size() + ", datasources=" + datasources.size() + '}';
+    }
+}
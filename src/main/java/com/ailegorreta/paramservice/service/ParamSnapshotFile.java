@@ -0,0 +1,371 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamSnapshotFile.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.commons.utils.HasLogger;
+import com.ailegorreta.paramservice.config.ServiceConfig;
+import com.ailegorreta.paramservice.domain.*;
+import jakarta.validation.constraints.NotNull;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Last known good ParamSnapshot stored in the local disk (param-service.snapshot.file), so the service can answer
+ * the parameter queries when Postgres is not available at start-up.
+ *
+ * The file is written after every rebuild of the snapshot in a compact binary format: a header (magic, format,
+ * version and creation time), the system dates, rates and document types, the templates and datasources with their
+ * fields and code (fixed size fields, strings as UTF-8 with their length, -1 for null) and a CRC32 of all of it.
+ * It is written to a temporary file and then moved, so a crash never leaves a half-written snapshot. It is read
+ * memory-mapped. The files of format 1 (before the templates and datasources were stored) are still read.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Component
+public class ParamSnapshotFile implements HasLogger {
+
+    private static final int MAGIC = 0x50534e50;        // PSNP
+    private static final int FORMAT = 2;
+
+    private final Path file;
+
+    public ParamSnapshotFile(ServiceConfig serviceConfig) {
+        this.file = Path.of(serviceConfig.getSnapshotFile());
+    }
+
+    public Path getFile() { return file; }
+
+    public synchronized void save(ParamSnapshot snapshot) throws IOException {
+        var bytes = new ByteArrayOutputStream(8192);
+        var out = new DataOutputStream(bytes);
+
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        out.writeLong(snapshot.getVersion());
+        out.writeLong(snapshot.getCreatedAt().toEpochMilli());
+        out.writeInt(snapshot.getSystemDates().size());
+        for (SystemDate systemDate : snapshot.getSystemDates()) {
+            writeUuid(out, systemDate.getId());
+            writeString(out, (systemDate.getName() == null) ? null : systemDate.getName().name());
+            out.writeLong((systemDate.getDay() == null) ? Long.MIN_VALUE : systemDate.getDay().toEpochDay());
+            writeLong(out, systemDate.getVersion());
+        }
+        out.writeInt(snapshot.getSystemRates().size());
+        for (SystemRate systemRate : snapshot.getSystemRates()) {
+            writeUuid(out, systemRate.getId());
+            writeString(out, systemRate.getName());
+            writeDecimal(out, systemRate.getRate());
+            writeLong(out, systemRate.getVersion());
+        }
+        out.writeInt(snapshot.getDocumentTypes().size());
+        for (DocumentType documentType : snapshot.getDocumentTypes()) {
+            writeUuid(out, documentType.getId());
+            writeString(out, documentType.getName());
+            writeString(out, documentType.getExpiration());
+            writeLong(out, documentType.getVersion());
+        }
+        out.writeInt(snapshot.getTemplates().size());
+        for (Template template : snapshot.getTemplates()) {
+            writeUuid(out, template.getId());
+            writeString(out, template.getNombre());
+            writeString(out, template.getFileRepo());
+            writeString(out, (template.getDestino() == null) ? null : template.getDestino().name());
+            writeString(out, template.getJson());
+            writeString(out, template.getBlockly());
+            writeDate(out, template.getFechaCreacion());
+            writeDate(out, template.getFechaModificacion());
+            writeString(out, template.getAutor());
+            writeBoolean(out, template.getActivo());
+            writeLong(out, template.getVersion());
+            out.writeInt(template.getCampos().size());
+            for (TemplateField field : template.getCampos()) {
+                writeUuid(out, field.getId());
+                writeString(out, field.getNombre());
+                writeString(out, (field.getTipo() == null) ? null : field.getTipo().name());
+                writeString(out, field.getValorDefault());
+            }
+        }
+        out.writeInt(snapshot.getDatasources().size());
+        for (Datasource datasource : snapshot.getDatasources()) {
+            writeUuid(out, datasource.getId());
+            writeString(out, datasource.getNombre());
+            writeString(out, datasource.getJson());
+            writeString(out, datasource.getBlockly());
+            writeString(out, datasource.getConfig());
+            writeString(out, datasource.getConfigBlockly());
+            writeString(out, datasource.getMapping());
+            writeDate(out, datasource.getFechaCreacion());
+            writeDate(out, datasource.getFechaModificacion());
+            writeString(out, datasource.getAutor());
+            writeBoolean(out, datasource.getActivo());
+            writeLong(out, datasource.getVersion());
+            out.writeInt(datasource.getCampos().size());
+            for (DatasourceField field : datasource.getCampos()) {
+                writeUuid(out, field.getId());
+                writeString(out, field.getNombre());
+                writeString(out, (field.getTipo() == null) ? null : field.getTipo().name());
+                writeString(out, field.getValidaciones());
+            }
+        }
+        var crc = new CRC32();
+
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+
+        var directory = file.toAbsolutePath().getParent();
+
+        Files.createDirectories(directory);
+
+        var temp = Files.createTempFile(directory, file.getFileName() + ".", ".tmp");
+        // ^ unique name: the replicas of one node share the directory (see k8s/deployment.yml)
+
+        Files.write(temp, bytes.toByteArray());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        getLogger().debug("Parameter snapshot stored in {} ({} bytes)", file, bytes.size());
+    }
+
+    /**
+     * The snapshot stored, empty if there is no file. An IOException is thrown if the file can not be read or is
+     * corrupted.
+     */
+    public synchronized Optional<ParamSnapshot> load() throws IOException {
+        if (!Files.exists(file))
+            return Optional.empty();
+
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var size = channel.size();
+
+            if (size < 40)
+                throw new IOException("Archivo de snapshot incompleto: " + file);
+
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            var crc = new CRC32();
+
+            crc.update(in.slice(0, (int) size - 4));
+            if (in.getInt((int) size - 4) != (int) crc.getValue() || in.getInt() != MAGIC)
+                throw new IOException("Archivo de snapshot inválido: " + file);
+
+            var format = in.getInt();
+
+            if (format < 1 || format > FORMAT)
+                throw new IOException("Formato de snapshot desconocido " + format + ": " + file);
+
+            var version = in.getLong();
+            var createdAt = Instant.ofEpochMilli(in.getLong());
+            var systemDates = new ArrayList<SystemDate>();
+
+            for (int i = in.getInt(); i > 0; i--) {
+                var id = readUuid(in);
+                var name = readString(in);
+                var day = in.getLong();
+
+                systemDates.add(new SystemDate(id, (name == null) ? null : DayType.valueOf(name),
+                                               (day == Long.MIN_VALUE) ? null : LocalDate.ofEpochDay(day),
+                                               readLong(in)));
+            }
+            var systemRates = new ArrayList<SystemRate>();
+
+            for (int i = in.getInt(); i > 0; i--)
+                systemRates.add(new SystemRate(readUuid(in), readString(in), readDecimal(in), readLong(in)));
+
+            List<DocumentType> documentTypes = new ArrayList<>();
+
+            for (int i = in.getInt(); i > 0; i--)
+                documentTypes.add(new DocumentType(readUuid(in), readString(in), readString(in), readLong(in)));
+
+            var templates = new ArrayList<Template>();
+            var datasources = new ArrayList<Datasource>();
+
+            if (format >= 2) {
+                for (int i = in.getInt(); i > 0; i--)
+                    templates.add(readTemplate(in));
+                for (int i = in.getInt(); i > 0; i--)
+                    datasources.add(readDatasource(in));
+            }
+
+            return Optional.of(ParamSnapshot.restored(version, createdAt, systemDates, systemRates, documentTypes,
+                                                      templates, datasources));
+        } catch (RuntimeException e) {      // e.g., BufferUnderflowException or an unknown DayType
+            throw new IOException("Archivo de snapshot inválido: " + file, e);
+        }
+    }
+
+    private static Template readTemplate(ByteBuffer in) {
+        var id = readUuid(in);
+        var nombre = readString(in);
+        var fileRepo = readString(in);
+        var destino = readString(in);
+        var template = new Template(id, nombre, fileRepo,
+                                    (destino == null) ? null : Template.DestinoType.valueOf(destino),
+                                    readString(in), readString(in), readDate(in), readDate(in), readString(in),
+                                    readBoolean(in), null);
+
+        template.setVersion(readLong(in));
+        for (int i = in.getInt(); i > 0; i--) {
+            var fieldId = readUuid(in);
+            var fieldNombre = readString(in);
+            var tipo = readString(in);
+
+            template.getCampos().add(new TemplateField(fieldId, template, fieldNombre,
+                                                       (tipo == null) ? null : TemplateField.FieldType.valueOf(tipo),
+                                                       readString(in)));
+        }
+
+        return template;
+    }
+
+    private static Datasource readDatasource(ByteBuffer in) {
+        var datasource = new Datasource(readUuid(in), readString(in), readString(in), readString(in), readString(in),
+                                        readString(in), readString(in), readDate(in), readDate(in), readString(in),
+                                        readBoolean(in), null);
+
+        datasource.setVersion(readLong(in));
+        for (int i = in.getInt(); i > 0; i--) {
+            var fieldId = readUuid(in);
+            var fieldNombre = readString(in);
+            var tipo = readString(in);
+            var fieldType = (tipo == null) ? null : DatasourceField.FieldType.valueOf(tipo);
+
+            datasource.getCampos().add(new DatasourceField(fieldId, datasource, fieldNombre, fieldType,
+                                                           readString(in)));
+        }
+
+        return datasource;
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeBoolean(uuid != null);
+        if (uuid != null) {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    private static UUID readUuid(ByteBuffer in) {
+        return (in.get() == 0) ? null : new UUID(in.getLong(), in.getLong());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        var length = in.getInt();
+
+        if (length < 0)
+            return null;
+
+        var bytes = new byte[length];
+
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        var unscaled = value.unscaledValue().toByteArray();
+
+        out.writeInt(unscaled.length);
+        out.write(unscaled);
+        out.writeInt(value.scale());
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer in) {
+        var length = in.getInt();
+
+        if (length < 0)
+            return null;
+
+        var unscaled = new byte[length];
+
+        in.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), in.getInt());
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeLong(value);
+    }
+
+    private static Long readLong(ByteBuffer in) {
+        return (in.get() == 0) ? null : in.getLong();
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate value) throws IOException {
+        out.writeLong((value == null) ? Long.MIN_VALUE : value.toEpochDay());
+    }
+
+    private static LocalDate readDate(ByteBuffer in) {
+        var day = in.getLong();
+
+        return (day == Long.MIN_VALUE) ? null : LocalDate.ofEpochDay(day);
+    }
+
+    private static void writeBoolean(DataOutputStream out, Boolean value) throws IOException {
+        out.writeByte((value == null) ? -1 : (value ? 1 : 0));
+    }
+
+    private static Boolean readBoolean(ByteBuffer in) {
+        var value = in.get();
+
+        return (value < 0) ? null : value == 1;
+    }
+
+    @NotNull
+    @Override
+    public Logger getLogger() { return HasLogger.DefaultImpls.getLogger(this); }
+}
@@ -0,0 +1,67 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamSnapshotHealthIndicator.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Health of the ParamSnapshot (component 'paramSnapshot', included in the readiness group):
+ *
+ * - UP when it was loaded from Postgres.
+ * - DEGRADED when it was restored from the disk, the pod is still ready (see management.endpoint.health.status)
+ *   because stale parameters are better than no answer, the age tells how stale they are.
+ * - DOWN when there is no snapshot at all (Postgres and the disk snapshot were not available).
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Component
+@RequiredArgsConstructor
+public class ParamSnapshotHealthIndicator implements HealthIndicator {
+
+    public static final Status DEGRADED = new Status("DEGRADED", "Parámetros servidos del snapshot en disco");
+
+    private final ParamSnapshotService paramSnapshotService;
+
+    @Override
+    public Health health() {
+        var snapshot = paramSnapshotService.current();
+
+        if (!snapshot.isLoaded())
+            return Health.down().withDetail("version", snapshot.getVersion()).build();
+
+        return Health.status(snapshot.isDegraded() ? DEGRADED : Status.UP)
+                     .withDetail("version", snapshot.getVersion())
+                     .withDetail("createdAt", snapshot.getCreatedAt().toString())
+                     .withDetail("age", Duration.between(snapshot.getCreatedAt(), Instant.now()).toString())
+                     .build();
+    }
+}
@@ -0,0 +1,314 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamSnapshotService.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.commons.utils.HasLogger;
+import com.ailegorreta.paramservice.domain.*;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.constraints.NotNull;
+import lombok.RequiredArgsConstructor;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Holds the current ParamSnapshot and rebuilds it after every mutation of system dates, system rates, document
+ * types, templates or datasources.
+ *
+ * Readers call current() that is a single volatile read. The rebuilds are serialized (they are rare) and
+ * only reload the region that changed, the new snapshot is published swapping one reference. The templates and
+ * datasources (with their code) are not reloaded whole: only the ones identified by the event are read by id and
+ * replaced (see idsOf). Its version is the last sequence of the change log (param_changes), read before the region,
+ * so it is the same in every replica that has seen the same changes.
+ *
+ * The snapshots are stored in the disk (ParamSnapshotFile): a full load at once, the rebuilds after the changes
+ * coalesced every param-service.snapshot.store-delay ms (see storeUnsaved). If Postgres is not available when the
+ * snapshot must be loaded (e.g., at start-up) the last one stored is restored in degraded mode: the queries are
+ * answered with it (the response says so, see SnapshotVersionInterceptor), the readiness reports its age (see
+ * ParamSnapshotHealthIndicator) and it is reloaded from Postgres every param-service.snapshot.retry-delay ms,
+ * applying first the pending Flyway migrations, until it succeeds.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Service
+@RequiredArgsConstructor
+public class ParamSnapshotService implements HasLogger {
+
+    private final SystemDateRepository systemDateRepository;
+    private final SystemRateRepository systemRateRepository;
+    private final DocumentTypeRepository documentTypeRepository;
+    private final TemplateRepository templateRepository;
+    private final DatasourceRepository datasourceRepository;
+    private final ParamChangeRepository paramChangeRepository;
+    private final ParamSnapshotFile paramSnapshotFile;
+    private final ObjectProvider<Flyway> flyway;
+
+    private final AtomicReference<ParamSnapshot> current = new AtomicReference<>(ParamSnapshot.empty());
+    private final AtomicReference<ParamSnapshot> unsaved = new AtomicReference<>();   // see storeUnsaved
+    private volatile boolean loaded;     // a load was tried, afterwards only recover() goes to the database
+
+    /**
+     * The current snapshot. If it has not been loaded yet it is loaded the first time.
+     */
+    public ParamSnapshot current() {
+        var snapshot = current.get();
+
+        return (!snapshot.isLoaded() && !loaded) ? load() : snapshot;
+    }
+
+    /**
+     * Loads the snapshot from the database or, if it is not available, restores the one stored in the disk.
+     */
+    public synchronized ParamSnapshot load() {
+        loaded = true;
+        try {
+            return rebuild();
+        } catch (DataAccessException | TransactionException e) {
+            getLogger().error("No se pudo leer la base de datos para los parámetros: {}", e.getMessage());
+            return restore();
+        }
+    }
+
+    /**
+     * Reloads all regions from the database.
+     */
+    public synchronized ParamSnapshot rebuild() {
+        var snapshot = ParamSnapshot.of(paramChangeRepository.findLastSequence(),
+                                        systemDateRepository.findAll(),
+                                        systemRateRepository.findAll(),
+                                        documentTypeRepository.findAll(),
+                                        templates(templateRepository.findAllWithContent()),
+                                        datasources(datasourceRepository.findAllWithContent()));
+
+        current.set(snapshot);
+        getLogger().debug("Parameter snapshot rebuilt: {}", snapshot);
+        unsaved.set(null);
+        store(snapshot);
+
+        return snapshot;
+    }
+
+    /**
+     * Reloads just the region of the changed parameter type.
+     */
+    public synchronized ParamSnapshot rebuild(ParamChangedEvent event) {
+        var previous = current.get();
+
+        if (!previous.isLoaded() || previous.isDegraded())
+            return load();
+
+        var version = paramChangeRepository.findLastSequence();
+        var snapshot = switch (event.getType()) {
+            case SYSTEM_DATE -> previous.withSystemDates(version, systemDateRepository.findAll());
+            case SYSTEM_RATE -> previous.withSystemRates(version, systemRateRepository.findAll());
+            case DOCUMENT_TYPE -> previous.withDocumentTypes(version, documentTypeRepository.findAll());
+            case TEMPLATE -> withTemplates(previous, version, idsOf(event));
+            case DATASOURCE -> withDatasources(previous, version, idsOf(event));
+        };
+
+        current.set(snapshot);
+        getLogger().debug("Parameter snapshot rebuilt after {}: {}", event.getEventName(), snapshot);
+        unsaved.set(snapshot);
+
+        return snapshot;
+    }
+
+    /**
+     * Writes the last snapshot rebuilt after a change, if it was not written yet. A burst of changes is written
+     * once, the file is the last known good and a few seconds behind is enough.
+     */
+    @Scheduled(fixedDelayString = "${param-service.snapshot.store-delay:5000}")
+    @PreDestroy
+    public void storeUnsaved() {
+        var snapshot = unsaved.getAndSet(null);
+
+        if (snapshot != null)
+            store(snapshot);
+    }
+
+    private ParamSnapshot withTemplates(ParamSnapshot previous, long version, Set<UUID> ids) {
+        if (ids == null)
+            return previous.withTemplates(version, templates(templateRepository.findAllWithContent()));
+
+        return previous.withTemplates(version, ids, templates(templateRepository.findAllWithContentByIdIn(ids)));
+    }
+
+    private ParamSnapshot withDatasources(ParamSnapshot previous, long version, Set<UUID> ids) {
+        if (ids == null)
+            return previous.withDatasources(version, datasources(datasourceRepository.findAllWithContent()));
+
+        return previous.withDatasources(version, ids, datasources(datasourceRepository.findAllWithContentByIdIn(ids)));
+    }
+
+    /**
+     * The ids of the templates or datasources changed by the event: the entity (or its TemplateEvent or
+     * DatasourceEvent projection) of a local change, or the keys of a remote one. Null if the event does not
+     * identify them (e.g., the summary of a bulk mutation or import), then the whole region is reloaded.
+     */
+    static Set<UUID> idsOf(ParamChangedEvent event) {
+        if (event.isRemote()) {
+            var keys = event.getRemoteKeys();
+
+            if (keys.isEmpty() || keys.stream().anyMatch(key -> key.id() == null))
+                return null;
+
+            return keys.stream().map(ParamKey::id).collect(Collectors.toUnmodifiableSet());
+        }
+
+        UUID id = null;
+
+        if (event.getValue() instanceof Template template)
+            id = template.getId();
+        else if (event.getValue() instanceof TemplateEvent template)
+            id = template.getId();
+        else if (event.getValue() instanceof Datasource datasource)
+            id = datasource.getId();
+        else if (event.getValue() instanceof DatasourceEvent datasource)
+            id = datasource.getId();
+
+        return (id == null) ? null : Set.of(id);
+    }
+
+    /**
+     * While the snapshot is degraded (or could not be loaded at all) it is reloaded from the database.
+     */
+    @Scheduled(fixedDelayString = "${param-service.snapshot.retry-delay:30000}",
+               initialDelayString = "${param-service.snapshot.retry-delay:30000}")
+    public synchronized void recover() {
+        var snapshot = current.get();
+
+        if (snapshot.isLoaded() && !snapshot.isDegraded())
+            return;
+        try {
+            flyway.ifAvailable(Flyway::migrate);
+            rebuild();
+            getLogger().info("Parámetros recargados de la base de datos, se deja el modo degradado");
+        } catch (RuntimeException e) {
+            getLogger().warn("La base de datos sigue sin estar disponible: {}", e.getMessage());
+        }
+    }
+
+    private ParamSnapshot restore() {
+        try {
+            var restored = paramSnapshotFile.load();
+
+            if (restored.isEmpty()) {
+                getLogger().error("No existe el snapshot de parámetros {}", paramSnapshotFile.getFile());
+                return current.get();
+            }
+            current.set(restored.get());
+            getLogger().warn("Parameter snapshot restored from {} in degraded mode: {} created at {}",
+                             paramSnapshotFile.getFile(), restored.get(), restored.get().getCreatedAt());
+
+            return restored.get();
+        } catch (IOException e) {
+            getLogger().error("No se pudo leer el snapshot de parámetros: {}", e.getMessage());
+            return current.get();
+        }
+    }
+
+    /**
+     * The templates with their code and fields copied out of the persistence context: the snapshot is shared by
+     * all readers and outlives the Session that read them.
+     */
+    private static List<Template> templates(List<Template> templates) {
+        return templates.stream()
+                                 .map(template -> {
+                                     var copy = new Template(template.getId(), template.getNombre(),
+                                                             template.getFileRepo(), template.getDestino(),
+                                                             template.getJson(), template.getBlockly(),
+                                                             template.getFechaCreacion(),
+                                                             template.getFechaModificacion(), template.getAutor(),
+                                                             template.getActivo(), null);
+
+                                     copy.setVersion(template.getVersion());
+                                     template.getCampos().forEach(field -> copy.getCampos().add(
+                                             new TemplateField(field.getId(), copy, field.getNombre(),
+                                                               field.getTipo(), field.getValorDefault())));
+                                     return copy;
+                                 })
+                                 .toList();
+    }
+
+    private static List<Datasource> datasources(List<Datasource> datasources) {
+        return datasources.stream()
+                                   .map(datasource -> {
+                                       var copy = new Datasource(datasource.getId(), datasource.getNombre(),
+                                                                 datasource.getJson(), datasource.getBlockly(),
+                                                                 datasource.getConfig(),
+                                                                 datasource.getConfigBlockly(),
+                                                                 datasource.getMapping(),
+                                                                 datasource.getFechaCreacion(),
+                                                                 datasource.getFechaModificacion(),
+                                                                 datasource.getAutor(), datasource.getActivo(),
+                                                                 null);
+
+                                       copy.setVersion(datasource.getVersion());
+                                       datasource.getCampos().forEach(field -> copy.getCampos().add(
+                                               new DatasourceField(field.getId(), copy, field.getNombre(),
+                                                                   field.getTipo(), field.getValidaciones())));
+                                       return copy;
+                                   })
+                                   .toList();
+    }
+
+    private void store(ParamSnapshot snapshot) {
+        try {
+            paramSnapshotFile.save(snapshot);
+        } catch (IOException e) {
+            getLogger().warn("No se pudo guardar el snapshot de parámetros: {}", e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        load();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0)      // before the eviction of the GraphQL responses (ResponseCacheInterceptor)
+    public void onParamChanged(ParamChangedEvent event) {
+        rebuild(event);
+    }
+
+    @NotNull
+    @Override
+    public Logger getLogger() { return HasLogger.DefaultImpls.getLogger(this); }
+}
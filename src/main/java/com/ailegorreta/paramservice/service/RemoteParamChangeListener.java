@@ -0,0 +1,207 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RemoteParamChangeListener.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.commons.utils.HasLogger;
+import com.ailegorreta.paramservice.config.SecondLevelCacheConfig;
+import com.ailegorreta.paramservice.config.ServiceConfig;
+import com.ailegorreta.paramservice.domain.ParamType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.validation.constraints.NotNull;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keeps the caches of this replica consistent with the changes made by the other replicas.
+ *
+ * Every replica reads the param-audit topic (the events sent by EventOutboxRelay) with its own consumer group, so
+ * all of them receive every change. The group is named after param-service.instance-id (the pod name, see
+ * k8s/deployment.yml), so a restarted pod keeps its group instead of leaving one orphan group per start. For each
+ * parameter event of another replica:
+ *
+ * - The second-level cache region of templates or datasources is evicted (see SecondLevelCacheConfig).
+ * - A remote ParamChangedEvent is published with the keys (id and name) of the parameters in the event body, so
+ *   the snapshot, calendar and rate history refresh what changed. The change log is not written again.
+ *
+ * The events of this same replica are received too: they are skipped by the 'origen' of the event body (see
+ * EventService), the mutation already evicted its caches and published its ParamChangedEvent.
+ *
+ * It is disabled with param-service.cache.remote-invalidation.enabled=false (e.g., for the integration tests and
+ * when only one replica is deployed).
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Component
+@ConditionalOnProperty(prefix = "param-service.cache.remote-invalidation", name = "enabled", havingValue = "true",
+                       matchIfMissing = true)
+@RequiredArgsConstructor
+public class RemoteParamChangeListener implements HasLogger {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper mapper;
+    private final ServiceConfig serviceConfig;
+
+    @KafkaListener(id = "param-remote-invalidation",
+                   topics = "${param-service.cache.remote-invalidation.topic:param-audit}",
+                   groupId = "${spring.application.name}-${param-service.instance-id}",
+                   properties = {"auto.offset.reset=latest",
+                                 "key.deserializer=org.apache.kafka.common.serialization.StringDeserializer",
+                                 "value.deserializer=org.apache.kafka.common.serialization.StringDeserializer"})
+    public void onParamAudit(String message) {
+        JsonNode event;
+
+        try {
+            event = mapper.readTree(message);
+        } catch (JsonProcessingException e) {
+            getLogger().warn("Evento de param-audit no válido: {}", e.getMessage());
+            return;
+        }
+
+        var applicationName = text(event, "applicationName", "application_name");
+
+        if (applicationName != null && !applicationName.equals(serviceConfig.getAppName()))
+            return;
+
+        var eventName = text(event, "eventName", "event_name");
+        var type = typeOf(eventName);
+
+        if (type == null)
+            return;
+
+        var body = bodyOf(event);
+        var origen = (body != null) ? text(body, "origen", "origen") : null;
+
+        if (origen != null && origen.equals(serviceConfig.getInstanceId()))
+            return;                         // a change of this replica
+
+        var cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+
+        switch (type) {
+            case TEMPLATE -> cache.evictRegion(SecondLevelCacheConfig.TEMPLATES_REGION);
+            case DATASOURCE -> cache.evictRegion(SecondLevelCacheConfig.DATASOURCES_REGION);
+        }
+        eventPublisher.publishEvent(ParamChangedEvent.remote(type, eventName, text(event, "username", "user_name"),
+                                                             keysOf(body), isDeleted(eventName)));
+        getLogger().debug("Remote {} invalidated the {} caches", eventName, type);
+    }
+
+    /**
+     * The parameter type from the event names used by the mutation services, e.g., MODIFICA_VARIABLE_SISTEMA.
+     */
+    static ParamType typeOf(String eventName) {
+        if (eventName == null)
+            return null;
+        if (eventName.contains("DATASOURCE"))
+            return ParamType.DATASOURCE;
+        if (eventName.contains("TEMPLATE"))
+            return ParamType.TEMPLATE;
+        if (eventName.contains("FECHA"))
+            return ParamType.SYSTEM_DATE;
+        if (eventName.contains("VARIABLE"))
+            return ParamType.SYSTEM_RATE;
+        if (eventName.contains("TIPO_DOCUMENTO"))
+            return ParamType.DOCUMENT_TYPE;
+
+        return null;
+    }
+
+    /**
+     * The event body, an object or its JSON text. Null if it is missing or not valid.
+     */
+    private JsonNode bodyOf(JsonNode event) {
+        var body = event.hasNonNull("eventBody") ? event.get("eventBody") : event.get("event_body");
+
+        try {
+            return (body != null && body.isTextual()) ? mapper.readTree(body.asText()) : body;
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The keys of the parameters in the 'datos' of the event body: one object (e.g., a SystemRate or a
+     * TemplateEvent) or an array of them for the batch mutations. Empty if they have no id nor name (e.g., the
+     * summary of a bulk mutation).
+     */
+    static List<ParamKey> keysOf(JsonNode body) {
+        var datos = (body != null) ? body.get("datos") : null;
+
+        if (datos == null || datos.isNull())
+            return List.of();
+
+        Iterable<JsonNode> values = datos.isArray() ? datos : List.of(datos);
+        var keys = new ArrayList<ParamKey>();
+
+        for (JsonNode value : values) {
+            var id = text(value, "id", "id");
+            var name = text(value, "name", "nombre");
+
+            if (id == null && name == null)
+                return List.of();           // not a parameter: the listeners reload the type
+            keys.add(new ParamKey(toUUID(id), name));
+        }
+
+        return List.copyOf(keys);
+    }
+
+    /**
+     * The parameter itself was deleted, e.g., ELIMINA_TEMPLATE but not ELIMINA_TEMPLATE_FIELD (the template was
+     * updated).
+     */
+    static boolean isDeleted(String eventName) {
+        return (eventName.startsWith("BORRA_") || eventName.startsWith("ELIMINA_")) && !eventName.endsWith("_FIELD");
+    }
+
+    private static UUID toUUID(String id) {
+        try {
+            return (id != null) ? UUID.fromString(id) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String text(JsonNode event, String name, String snakeCaseName) {
+        var value = event.hasNonNull(name) ? event.get(name) : event.get(snakeCaseName);
+
+        return (value != null && !value.isNull()) ? value.asText() : null;
+    }
+
+    @NotNull
+    @Override
+    public Logger getLogger() { return HasLogger.DefaultImpls.getLogger(this); }
+}
@@ -24,17 +24,23 @@ package com.ailegorreta.paramservice.service;
 
 import com.ailegorreta.commons.utils.HasLogger;
 import com.ailegorreta.paramservice.domain.DayType;
+import com.ailegorreta.paramservice.domain.ParamType;
 import com.ailegorreta.paramservice.domain.SystemDate;
 import com.ailegorreta.paramservice.domain.SystemDateRepository;
 import com.ailegorreta.paramservice.gql.types.SystemDateInput;
 import com.ailegorreta.resourceserver.utils.UserContextHolder;
+import jakarta.transaction.Transactional;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang.Validate;
 import org.slf4j.Logger;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
-import java.util.UUID;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Mutation service for System Dates
@@ -44,28 +50,36 @@ import java.util.UUID;
  * @date August 2023
  */
 @Service
+@Transactional
 @RequiredArgsConstructor
 public class SystemDateService implements HasLogger {
     final SystemDateRepository systemDateRepository;
     final EventService          eventService;
+    final ApplicationEventPublisher eventPublisher;
 
     public SystemDate addSystemDate(SystemDateInput systemDateInput)  {
-        if (systemDateInput.getName() != DayType.FESTIVO) {
-            // validate uniqueness
-            var systemDate = systemDateRepository.findSystemDateByName(systemDateInput.getName());
+        var savedSystemDate = new SystemDate(UUID.randomUUID(), systemDateInput.getName(), systemDateInput.getDay(),
+                                             0L);
+        // validate uniqueness (except FESTIVO) and insert in one statement (partial unique index on the name)
+        var inserted = systemDateRepository.insertIfAbsent(savedSystemDate.getId(), savedSystemDate.getName().name(),
+                                                           savedSystemDate.getDay());
 
-            Validate.isTrue(systemDate == null,"Las fecha del sistema YA existe en el catálogo");
-        }
-        var systemDate = new SystemDate(null, systemDateInput.getName(), systemDateInput.getDay());
+        Validate.isTrue(inserted == 1,"Las fecha del sistema YA existe en el catálogo");
 
         eventService.sendEvent(UserContextHolder.getContext().getCorrelationId(), systemDateInput.getUserModify(),
-                "ANADE_FECHA_SISTEMA", systemDate);
-        getLogger().info("Add a new system date " + systemDate.getName());
+                "ANADE_FECHA_SISTEMA", savedSystemDate);
+        getLogger().info("Add a new system date " + savedSystemDate.getName());
+
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.SYSTEM_DATE, "ANADE_FECHA_SISTEMA",
+                                                            systemDateInput.getUserModify(), savedSystemDate));
 
-        return systemDateRepository.save(systemDate);
+        return savedSystemDate;
     }
 
     public SystemDate updateSystemDate(SystemDateInput systemDateInput)  {
+        if (systemDateInput.getVersion() != null)
+            return updateSystemDateIfVersion(systemDateInput);
+
         // Validate that the systemDate already exists
         var systemDate = systemDateRepository.findById(systemDateInput.getId());
 
@@ -78,7 +92,103 @@ public class SystemDateService implements HasLogger {
                 "MODIFICA_FECHA_SISTEMA", systemDate.get());
         getLogger().info("Update a new system date " + systemDate.get().getName());
 
-        return systemDateRepository.save(systemDate.get());
+        var savedSystemDate = systemDateRepository.save(systemDate.get());
+
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.SYSTEM_DATE, "MODIFICA_FECHA_SISTEMA",
+                                                            systemDateInput.getUserModify(), savedSystemDate));
+
+        return savedSystemDate;
+    }
+
+    /**
+     * Conditional update: one statement that validates the version and updates the date, without reading it first.
+     */
+    private SystemDate updateSystemDateIfVersion(SystemDateInput systemDateInput) {
+        var version = systemDateInput.getVersion();
+        var updated = systemDateRepository.updateIfVersion(systemDateInput.getId(), systemDateInput.getName(),
+                                                           systemDateInput.getDay(), version);
+
+        if (updated == 0)
+            throw new VersionConflictException(ParamType.SYSTEM_DATE, systemDateInput.getId(), version);
+
+        var savedSystemDate = new SystemDate(systemDateInput.getId(), systemDateInput.getName(),
+                                             systemDateInput.getDay(), version + 1);
+
+        eventService.sendEvent(UserContextHolder.getContext().getCorrelationId(), systemDateInput.getUserModify(),
+                "MODIFICA_FECHA_SISTEMA", savedSystemDate);
+        getLogger().info("Update a new system date " + savedSystemDate.getName() + " version:" + version);
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.SYSTEM_DATE, "MODIFICA_FECHA_SISTEMA",
+                                                            systemDateInput.getUserModify(), savedSystemDate));
+
+        return savedSystemDate;
+    }
+
+    /**
+     * Adds or updates all the dates in one transaction, with one JDBC batch and one event for the whole batch.
+     *
+     * A date with id is updated. A date without id updates the existing date with the same name (or, for FESTIVO,
+     * the same day) and otherwise it is added.
+     */
+    public List<SystemDate> upsertSystemDates(List<SystemDateInput> systemDateInputs) {
+        Validate.isTrue(!systemDateInputs.isEmpty(), "No se recibió ninguna fecha del sistema");
+
+        var ids = systemDateInputs.stream().map(SystemDateInput::getId).filter(Objects::nonNull).toList();
+        var byId = systemDateRepository.findAllById(ids)
+                                       .stream()
+                                       .collect(Collectors.toMap(SystemDate::getId, Function.identity()));
+
+        Validate.isTrue(byId.size() == new HashSet<>(ids).size(), "La fecha del sistema ya NO existe en el catálogo.");
+
+        var names = systemDateInputs.stream().map(SystemDateInput::getName).collect(Collectors.toSet());
+        var byName = new EnumMap<DayType, SystemDate>(DayType.class);
+        var holidays = new HashMap<LocalDate, SystemDate>();
+
+        systemDateRepository.findByNameIn(names).forEach(systemDate -> {
+            if (systemDate.getName() == DayType.FESTIVO)
+                holidays.put(systemDate.getDay(), systemDate);
+            else
+                byName.put(systemDate.getName(), systemDate);
+        });
+
+        var systemDates = new ArrayList<SystemDate>(systemDateInputs.size());
+        var toSave = Collections.newSetFromMap(new IdentityHashMap<SystemDate, Boolean>());
+        // ^ identity: the new dates have no id yet (and equals/hashCode are by id)
+
+        for (SystemDateInput input : systemDateInputs) {
+            SystemDate systemDate;
+
+            if (input.getId() != null)
+                systemDate = byId.get(input.getId());
+            else if (input.getName() == DayType.FESTIVO)
+                systemDate = holidays.get(input.getDay());
+            else
+                systemDate = byName.get(input.getName());
+
+            if (systemDate == null) {
+                // the UUID is generated by Hibernate before the insert, the id stays null to keep persist (not merge)
+                systemDate = new SystemDate(null, input.getName(), input.getDay());
+                if (input.getName() == DayType.FESTIVO)
+                    holidays.put(input.getDay(), systemDate);
+                else
+                    byName.put(input.getName(), systemDate);
+            } else {
+                systemDate.setName(input.getName());
+                systemDate.setDay(input.getDay());
+            }
+            systemDates.add(systemDate);
+            toSave.add(systemDate);
+        }
+
+        var user = systemDateInputs.get(0).getUserModify();
+        var savedSystemDates = systemDateRepository.saveAll(toSave);
+
+        eventService.sendEvent(UserContextHolder.getContext().getCorrelationId(), user,
+                "ACTUALIZA_FECHAS_SISTEMA", savedSystemDates);
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.SYSTEM_DATE, "ACTUALIZA_FECHAS_SISTEMA",
+                                                            user, savedSystemDates));
+        getLogger().info("Stored a batch of " + savedSystemDates.size() + " system dates");
+
+        return systemDates;
     }
 
     public SystemDate deleteSystemDate(UUID id, String user) {
@@ -88,6 +198,7 @@ public class SystemDateService implements HasLogger {
         Validate.isTrue(systemDate.isPresent(), "La fecha del sistema ya NO existe en el catálogo.");
 
         systemDateRepository.deleteById(id);
+        eventPublisher.publishEvent(ParamChangedEvent.deleted(ParamType.SYSTEM_DATE, "ELIMINA_FECHA_SISTEMA", user, systemDate.get()));
 
         eventService.sendEvent(UserContextHolder.getContext().getCorrelationId(),user,
                 "ELIMINA_FECHA_SISTEMA", systemDate.get());
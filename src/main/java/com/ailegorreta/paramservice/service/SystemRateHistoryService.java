@@ -0,0 +1,251 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  SystemRateHistoryService.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.commons.utils.HasLogger;
+import com.ailegorreta.paramservice.domain.*;
+import com.ailegorreta.paramservice.gql.types.SystemRateAsOfInput;
+import com.ailegorreta.paramservice.gql.types.SystemRateInput;
+import jakarta.validation.constraints.NotNull;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Effective-dated history of the system rates.
+ *
+ * SystemRateService writes the history in the same transaction as the rate. For the as-of queries an in-memory
+ * index keeps, per rate name, the effective dates (as epoch days) sorted in a long[] next to the history rows,
+ * so systemRateAsOf is a binary search. The index is immutable and replaced by name after every committed
+ * change.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Service
+@RequiredArgsConstructor
+public class SystemRateHistoryService implements HasLogger {
+
+    /* the same statement as SystemRateHistoryRepository.upsert, for the JDBC batches */
+    private static final String UPSERT = """
+                                         INSERT INTO sys_rate_history (name, rate, effective_date, author)
+                                         VALUES (?, ?, ?, ?)
+                                         ON CONFLICT (name, effective_date)
+                                         DO UPDATE SET rate = EXCLUDED.rate, author = EXCLUDED.author
+                                         """;
+
+    private final SystemRateHistoryRepository systemRateHistoryRepository;
+    private final ParamSnapshotService paramSnapshotService;
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Map<String, RateTimeline> timelines;
+
+    /**
+     * Writes the value of the rate effective since effectiveDate or, if null, since the system date HOY.
+     */
+    public void record(SystemRate systemRate, LocalDate effectiveDate, String user) {
+        systemRateHistoryRepository.upsert(systemRate.getName(), systemRate.getRate(),
+                                           (effectiveDate != null) ? effectiveDate : businessDate(), user);
+    }
+
+    /**
+     * The same as record for a batch of rates (systemRates.get(i) with systemRateInputs.get(i)), in one JDBC batch
+     * instead of one statement per rate. It uses the transaction (connection) of the caller.
+     */
+    public void record(List<SystemRate> systemRates, List<SystemRateInput> systemRateInputs) {
+        var today = systemRateInputs.stream().anyMatch(input -> input.getEffectiveDate() == null) ? businessDate()
+                                                                                                  : null;
+
+        jdbcTemplate.batchUpdate(UPSERT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                var effectiveDate = systemRateInputs.get(i).getEffectiveDate();
+
+                ps.setString(1, systemRates.get(i).getName());
+                ps.setBigDecimal(2, systemRates.get(i).getRate());
+                ps.setObject(3, (effectiveDate != null) ? effectiveDate : today);
+                ps.setString(4, systemRateInputs.get(i).getUserModify());
+            }
+
+            @Override
+            public int getBatchSize() { return systemRates.size(); }
+        });
+    }
+
+    /**
+     * The rate value that was effective on the day, null if the rate did not exist.
+     */
+    public SystemRateHistory asOf(String name, LocalDate day) {
+        if (name == null || day == null)
+            return null;
+
+        var timeline = timelines().get(name);
+
+        return (timeline != null) ? timeline.asOf(day) : null;
+    }
+
+    /**
+     * Batch version of asOf for the end-of-day jobs. The result has the same order as the requests, with null
+     * where the rate did not exist.
+     */
+    public List<SystemRateHistory> asOf(List<SystemRateAsOfInput> requests) {
+        var current = timelines();
+        var result = new ArrayList<SystemRateHistory>(requests.size());
+
+        for (SystemRateAsOfInput request : requests) {
+            var timeline = (request.getName() != null) ? current.get(request.getName()) : null;
+
+            result.add((timeline != null && request.getDay() != null) ? timeline.asOf(request.getDay()) : null);
+        }
+
+        return result;
+    }
+
+    /**
+     * Reloads the index for all rate names.
+     */
+    public synchronized Map<String, RateTimeline> rebuild() {
+        timelines = toTimelines(systemRateHistoryRepository.findAllByOrderByNameAscEffectiveDateAsc().stream()
+                                                           .collect(Collectors.groupingBy(SystemRateHistory::getName)));
+        getLogger().debug("System rate history index rebuilt for {} rates", timelines.size());
+
+        return timelines;
+    }
+
+    /**
+     * If Postgres is not available at start-up the system rate history index is built by the first query after it is.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            rebuild();
+        } catch (DataAccessException | TransactionException e) {
+            getLogger().warn("No se pudo cargar al iniciar: {}", e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0)      // before the eviction of the GraphQL responses (ResponseCacheInterceptor)
+    public synchronized void onParamChanged(ParamChangedEvent event) {
+        if (event.getType() != ParamType.SYSTEM_RATE || event.isDeleted())
+            return;         // the history of a deleted rate is still valid for the past
+        var names = namesOf(event);
+
+        if (timelines == null || names == null) {
+            rebuild();
+            return;
+        }
+
+        var updated = new HashMap<>(timelines);
+
+        for (String name : names)
+            updated.put(name, new RateTimeline(systemRateHistoryRepository.findByNameOrderByEffectiveDateAsc(name)));
+        timelines = Map.copyOf(updated);
+    }
+
+    /**
+     * The names of the rates changed: the SystemRates of a local event or the keys of a remote one (e.g., the echo
+     * of a change of this replica). Null if the event does not identify them, then the index is rebuilt.
+     */
+    private static Set<String> namesOf(ParamChangedEvent event) {
+        var names = new HashSet<String>();
+
+        if (event.isRemote()) {
+            for (ParamKey key : event.getRemoteKeys())
+                if (key.name() != null)
+                    names.add(key.name());
+        } else {
+            Collection<?> values = (event.getValue() instanceof Collection<?> collection) ? collection
+                                                                                         : List.of(event.getValue());
+
+            for (Object value : values)
+                if (value instanceof SystemRate systemRate && systemRate.getName() != null)
+                    names.add(systemRate.getName());
+        }
+
+        return names.isEmpty() ? null : names;
+    }
+
+    private Map<String, RateTimeline> timelines() {
+        var current = timelines;
+
+        return (current != null) ? current : rebuild();
+    }
+
+    private LocalDate businessDate() {
+        var today = paramSnapshotService.current().getSystemDate(DayType.HOY);
+
+        return (today != null && today.getDay() != null) ? today.getDay() : LocalDate.now();
+    }
+
+    private static Map<String, RateTimeline> toTimelines(Map<String, List<SystemRateHistory>> byName) {
+        var result = new HashMap<String, RateTimeline>();
+
+        byName.forEach((name, rows) -> result.put(name, new RateTimeline(rows)));
+
+        return Map.copyOf(result);
+    }
+
+    /**
+     * The values of one rate sorted by effective date.
+     */
+    public static final class RateTimeline {
+        private final long[]                effectiveDays;      // epoch days, ascending
+        private final SystemRateHistory[]   values;
+
+        RateTimeline(List<SystemRateHistory> rows) {
+            values = rows.stream()
+                         .sorted(Comparator.comparing(SystemRateHistory::getEffectiveDate))
+                         .toArray(SystemRateHistory[]::new);
+            effectiveDays = Arrays.stream(values).mapToLong(row -> row.getEffectiveDate().toEpochDay()).toArray();
+        }
+
+        public SystemRateHistory asOf(LocalDate day) {
+            int index = Arrays.binarySearch(effectiveDays, day.toEpochDay());
+
+            if (index < 0)
+                index = -index - 2;     // the previous effective date of the insertion point
+
+            return (index >= 0) ? values[index] : null;
+        }
+    }
+
+    @NotNull
+    @Override
+    public Logger getLogger() { return HasLogger.DefaultImpls.getLogger(this); }
+}
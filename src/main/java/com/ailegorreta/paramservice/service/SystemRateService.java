@@ -23,17 +23,23 @@
 package com.ailegorreta.paramservice.service;
 
 import com.ailegorreta.commons.utils.HasLogger;
+import com.ailegorreta.paramservice.domain.ParamType;
 import com.ailegorreta.paramservice.domain.SystemRate;
 import com.ailegorreta.paramservice.domain.SystemRateRepository;
 import com.ailegorreta.paramservice.gql.types.SystemRateInput;
 import com.ailegorreta.resourceserver.utils.UserContext;
+import jakarta.transaction.Transactional;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang.Validate;
 import org.slf4j.Logger;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Mutation service for System Rates
@@ -43,27 +49,39 @@ import java.util.UUID;
  * @date August 2023
  */
 @Service
+@Transactional
 @RequiredArgsConstructor
 public class SystemRateService implements HasLogger {
     final SystemRateRepository systemRateRepository;
+    final SystemRateHistoryService systemRateHistoryService;
     final EventService          eventService;
+    final ApplicationEventPublisher eventPublisher;
 
     public SystemRate addSystemRate(SystemRateInput systemRateInput)  {
-        // validate uniqueness
-        var systemRate = systemRateRepository.findSystemRateByName(systemRateInput.getName());
+        var savedSystemRate = new SystemRate(UUID.randomUUID(), systemRateInput.getName(), systemRateInput.getRate(),
+                                             0L);
+        // validate uniqueness and insert in one statement (unique index on the name)
+        var inserted = systemRateRepository.insertIfAbsent(savedSystemRate.getId(), savedSystemRate.getName(),
+                                                           savedSystemRate.getRate());
 
-        Validate.isTrue(systemRate == null,"Las tasa del sistema YA existe en el catálogo");
-
-        systemRate = new SystemRate(null, systemRateInput.getName(), systemRateInput.getRate());
+        Validate.isTrue(inserted == 1,"Las tasa del sistema YA existe en el catálogo");
 
         eventService.sendEvent(UserContext.getCorrelationId(),
-                systemRateInput.getUserModify(),"ANADE_VARIABLE_SISTEMA", systemRate);
-        getLogger().info("Add a new system variable " + systemRate.getName());
+                systemRateInput.getUserModify(),"ANADE_VARIABLE_SISTEMA", savedSystemRate);
+        getLogger().info("Add a new system variable " + savedSystemRate.getName());
+
+        systemRateHistoryService.record(savedSystemRate, systemRateInput.getEffectiveDate(),
+                                        systemRateInput.getUserModify());
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.SYSTEM_RATE, "ANADE_VARIABLE_SISTEMA",
+                                                            systemRateInput.getUserModify(), savedSystemRate));
 
-        return systemRateRepository.save(systemRate);
+        return savedSystemRate;
     }
 
     public SystemRate updateSystemRate(SystemRateInput systemRateInput)  {
+        if (systemRateInput.getVersion() != null)
+            return updateSystemRateIfVersion(systemRateInput);
+
         // Validate that the systemRate already exists
         var systemRate = systemRateRepository.findById(systemRateInput.getId());
 
@@ -76,7 +94,103 @@ public class SystemRateService implements HasLogger {
                 "MODIFICA_VARIABLE_SISTEMA", systemRate.get());
         getLogger().info("Update a new system variable " + systemRate.get().getName());
 
-        return systemRateRepository.save(systemRate.get());
+        var savedSystemRate = systemRateRepository.save(systemRate.get());
+
+        systemRateHistoryService.record(savedSystemRate, systemRateInput.getEffectiveDate(),
+                                        systemRateInput.getUserModify());
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.SYSTEM_RATE, "MODIFICA_VARIABLE_SISTEMA",
+                                                            systemRateInput.getUserModify(), savedSystemRate));
+
+        return savedSystemRate;
+    }
+
+    /**
+     * Conditional update: one statement that validates the version and updates the rate, without reading it first.
+     */
+    private SystemRate updateSystemRateIfVersion(SystemRateInput systemRateInput) {
+        var version = systemRateInput.getVersion();
+        var updated = systemRateRepository.updateIfVersion(systemRateInput.getId(), systemRateInput.getName(),
+                                                           systemRateInput.getRate(), version);
+
+        if (updated == 0)
+            throw new VersionConflictException(ParamType.SYSTEM_RATE, systemRateInput.getId(), version);
+
+        var savedSystemRate = new SystemRate(systemRateInput.getId(), systemRateInput.getName(),
+                                             systemRateInput.getRate(), version + 1);
+
+        eventService.sendEvent(UserContext.getCorrelationId(), systemRateInput.getUserModify(),
+                "MODIFICA_VARIABLE_SISTEMA", savedSystemRate);
+        getLogger().info("Update a new system variable " + savedSystemRate.getName() + " version:" + version);
+        systemRateHistoryService.record(savedSystemRate, systemRateInput.getEffectiveDate(),
+                                        systemRateInput.getUserModify());
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.SYSTEM_RATE, "MODIFICA_VARIABLE_SISTEMA",
+                                                            systemRateInput.getUserModify(), savedSystemRate));
+
+        return savedSystemRate;
+    }
+
+    /**
+     * Adds all the rates in one transaction: one query to validate the names, one JDBC batch for the inserts and
+     * one event for the whole batch. If any rate is not valid nothing is stored.
+     */
+    public List<SystemRate> addSystemRates(List<SystemRateInput> systemRateInputs) {
+        Validate.isTrue(!systemRateInputs.isEmpty(), "No se recibió ninguna tasa del sistema");
+
+        var names = systemRateInputs.stream().map(SystemRateInput::getName).collect(Collectors.toSet());
+
+        Validate.isTrue(names.size() == systemRateInputs.size(), "Las tasas del sistema tienen nombres repetidos");
+        Validate.isTrue(systemRateRepository.findByNameIn(names).isEmpty(),
+                        "Las tasa del sistema YA existe en el catálogo");
+
+        var systemRates = systemRateInputs.stream()
+                                          .map(input -> new SystemRate(null, input.getName(), input.getRate()))
+                                          .toList();
+        // ^ the UUIDs are generated by Hibernate before the insert, so the ids stay null to keep persist (not merge)
+        var savedSystemRates = systemRateRepository.saveAll(systemRates);
+
+        return recordBatch(systemRateInputs, savedSystemRates, "ANADE_VARIABLES_SISTEMA");
+    }
+
+    /**
+     * Updates all the rates in one transaction with one JDBC batch and one event for the whole batch. A rate whose
+     * input has a version is updated only if it still has that version (VersionConflictException otherwise), and
+     * the @Version of SystemRate checks it again in the update, so nothing is stored if any rate is stale.
+     */
+    public List<SystemRate> updateSystemRates(List<SystemRateInput> systemRateInputs) {
+        Validate.isTrue(!systemRateInputs.isEmpty(), "No se recibió ninguna tasa del sistema");
+
+        var ids = systemRateInputs.stream().map(SystemRateInput::getId).toList();
+        var systemRates = systemRateRepository.findAllById(ids)
+                                              .stream()
+                                              .collect(Collectors.toMap(SystemRate::getId, Function.identity()));
+
+        Validate.isTrue(systemRates.size() == systemRateInputs.size(),
+                        "La tasa en el sistema ya NO existe en el catálogo.");
+        systemRateInputs.forEach(input -> {
+            var systemRate = systemRates.get(input.getId());
+
+            if (input.getVersion() != null && !input.getVersion().equals(systemRate.getVersion()))
+                throw new VersionConflictException(ParamType.SYSTEM_RATE, input.getId(), input.getVersion());
+            systemRate.setName(input.getName());
+            systemRate.setRate(input.getRate());
+        });
+
+        var savedSystemRates = systemRateRepository.saveAll(ids.stream().map(systemRates::get).toList());
+
+        return recordBatch(systemRateInputs, savedSystemRates, "MODIFICA_VARIABLES_SISTEMA");
+    }
+
+    private List<SystemRate> recordBatch(List<SystemRateInput> systemRateInputs, List<SystemRate> savedSystemRates,
+                                         String eventName) {
+        var user = systemRateInputs.get(0).getUserModify();
+
+        systemRateHistoryService.record(savedSystemRates, systemRateInputs);
+        eventService.sendEvent(UserContext.getCorrelationId(), user, eventName, savedSystemRates);
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.SYSTEM_RATE, eventName, user,
+                                                            savedSystemRates));
+        getLogger().info("Stored a batch of " + savedSystemRates.size() + " system variables");
+
+        return savedSystemRates;
     }
 
     public SystemRate deleteSystemRate(UUID id, String user) {
@@ -86,6 +200,7 @@ public class SystemRateService implements HasLogger {
         Validate.isTrue(systemRate.isPresent(), "La tasa en el sistema ya NO existe en el catálogo.");
 
         systemRateRepository.deleteById(id);
+        eventPublisher.publishEvent(ParamChangedEvent.deleted(ParamType.SYSTEM_RATE, "BORRA_VARIABLE_SISTEMA", user, systemRate.get()));
 
         eventService.sendEvent(UserContext.getCorrelationId(),
                 user,"BORRA_VARIABLE_SISTEMA", systemRate.get());
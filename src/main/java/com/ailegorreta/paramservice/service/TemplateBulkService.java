@@ -0,0 +1,156 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  TemplateBulkService.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.commons.utils.HasLogger;
+import com.ailegorreta.paramservice.domain.ParamType;
+import com.ailegorreta.paramservice.domain.QDatasource;
+import com.ailegorreta.paramservice.domain.QTemplate;
+import com.ailegorreta.paramservice.gql.types.DatasourceFilterInput;
+import com.ailegorreta.paramservice.gql.types.TemplateFilterInput;
+import com.ailegorreta.resourceserver.utils.UserContext;
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.transaction.Transactional;
+import jakarta.validation.constraints.NotNull;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+
+/**
+ * Set-based mutations of templates and datasources: a group of rows selected by a filter is activated,
+ * deactivated or deleted with one UPDATE/DELETE statement, instead of loading every entity (and its fields).
+ *
+ * The deletes rely on the ON DELETE CASCADE foreign keys of the fields and content tables. One summary event
+ * (BulkChangeEvent) is sent for the whole group.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class TemplateBulkService implements HasLogger {
+    private static final QTemplate TEMPLATE = QTemplate.template;
+    private static final QDatasource DATASOURCE = QDatasource.datasource;
+
+    final JPAQueryFactory       queryFactory;
+    final EventService          eventService;
+    final ApplicationEventPublisher eventPublisher;
+
+    public long updateTemplatesActivo(TemplateFilterInput filter, boolean activo, String user) {
+        var count = queryFactory.update(TEMPLATE)
+                                .set(TEMPLATE.activo, activo)
+                                .set(TEMPLATE.fechaModificacion, LocalDate.now())
+                                .set(TEMPLATE.version, TEMPLATE.version.add(1))
+                                .where(predicate(filter))
+                                .execute();
+
+        return summarize(ParamType.TEMPLATE, activo ? "ACTIVA_TEMPLATES" : "DESACTIVA_TEMPLATES",
+                         user, filter, count, false);
+    }
+
+    public long deleteTemplates(TemplateFilterInput filter, String user) {
+        var count = queryFactory.delete(TEMPLATE)
+                                .where(predicate(filter))
+                                .execute();
+
+        return summarize(ParamType.TEMPLATE, "ELIMINA_TEMPLATES", user, filter, count, true);
+    }
+
+    public long updateDatasourcesActivo(DatasourceFilterInput filter, boolean activo, String user) {
+        var count = queryFactory.update(DATASOURCE)
+                                .set(DATASOURCE.activo, activo)
+                                .set(DATASOURCE.fechaModificacion, LocalDate.now())
+                                .set(DATASOURCE.version, DATASOURCE.version.add(1))
+                                .where(predicate(filter))
+                                .execute();
+
+        return summarize(ParamType.DATASOURCE, activo ? "ACTIVA_DATASOURCES" : "DESACTIVA_DATASOURCES",
+                         user, filter, count, false);
+    }
+
+    public long deleteDatasources(DatasourceFilterInput filter, String user) {
+        var count = queryFactory.delete(DATASOURCE)
+                                .where(predicate(filter))
+                                .execute();
+
+        return summarize(ParamType.DATASOURCE, "ELIMINA_DATASOURCES", user, filter, count, true);
+    }
+
+    private long summarize(ParamType type, String eventName, String user, Object filter, long count,
+                           boolean deleted) {
+        var summary = new BulkChangeEvent(type, filter, count);
+
+        eventService.sendEvent(UserContext.getCorrelationId(), user, eventName, summary);
+        eventPublisher.publishEvent(deleted ? ParamChangedEvent.deleted(type, eventName, user, summary)
+                                            : ParamChangedEvent.saved(type, eventName, user, summary));
+        getLogger().info(eventName + " " + count + " rows, filter:" + filter + " user:" + user);
+
+        return count;
+    }
+
+    private static Predicate predicate(TemplateFilterInput filter) {
+        var predicate = new BooleanBuilder();
+
+        if (filter.getNombre() != null)
+            predicate.and(TEMPLATE.nombre.startsWith(filter.getNombre()));
+        if (filter.getDestino() != null)
+            predicate.and(TEMPLATE.destino.eq(filter.getDestino()));
+        if (filter.getActivo() != null)
+            predicate.and(TEMPLATE.activo.eq(filter.getActivo()));
+        if (filter.getFechaCreacionFrom() != null)
+            predicate.and(TEMPLATE.fechaCreacion.goe(filter.getFechaCreacionFrom()));
+        if (filter.getFechaCreacionTo() != null)
+            predicate.and(TEMPLATE.fechaCreacion.loe(filter.getFechaCreacionTo()));
+        Validate.isTrue(predicate.hasValue(), "El filtro debe tener al menos un criterio.");
+
+        return predicate;
+    }
+
+    private static Predicate predicate(DatasourceFilterInput filter) {
+        var predicate = new BooleanBuilder();
+
+        if (filter.getNombre() != null)
+            predicate.and(DATASOURCE.nombre.startsWith(filter.getNombre()));
+        if (filter.getActivo() != null)
+            predicate.and(DATASOURCE.activo.eq(filter.getActivo()));
+        if (filter.getFechaCreacionFrom() != null)
+            predicate.and(DATASOURCE.fechaCreacion.goe(filter.getFechaCreacionFrom()));
+        if (filter.getFechaCreacionTo() != null)
+            predicate.and(DATASOURCE.fechaCreacion.loe(filter.getFechaCreacionTo()));
+        Validate.isTrue(predicate.hasValue(), "El filtro debe tener al menos un criterio.");
+
+        return predicate;
+    }
+
+    @NotNull
+    @Override
+    public Logger getLogger() { return HasLogger.DefaultImpls.getLogger(this); }
+}
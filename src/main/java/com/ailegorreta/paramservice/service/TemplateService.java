@@ -29,10 +29,12 @@ import com.ailegorreta.paramservice.gql.types.DatasourceInput;
 import com.ailegorreta.paramservice.gql.types.TemplateFieldInput;
 import com.ailegorreta.paramservice.gql.types.TemplateInput;
 import com.ailegorreta.resourceserver.utils.UserContext;
+import jakarta.transaction.Transactional;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang.Validate;
 import org.slf4j.Logger;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
@@ -46,6 +48,7 @@ import java.util.UUID;
  * @date August 2023
  */
 @Service
+@Transactional
 @RequiredArgsConstructor
 public class TemplateService implements HasLogger {
 
@@ -54,6 +57,7 @@ public class TemplateService implements HasLogger {
     final DatasourceRepository datasourceRepository;
     final DatasourceFieldRepository dataSourceFieldRepository;
     final EventService          eventService;
+    final ApplicationEventPublisher eventPublisher;
 
     public Template addTemplate(TemplateInput templateInput) {
         var template = Template.fromDTO(templateInput);
@@ -62,10 +66,18 @@ public class TemplateService implements HasLogger {
                 "ANADE_NUEVO_TEMPLATE", templateInput);
         getLogger().info("Add a new template " + templateInput.getNombre());
 
-        return templateRepository.save(template);
+        var savedTemplate = templateRepository.save(template);
+
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.TEMPLATE, "ANADE_NUEVO_TEMPLATE",
+                                                            templateInput.getUserModify(), savedTemplate));
+
+        return savedTemplate;
     }
 
     public Template updateTemplate(TemplateInput templateInput)  {
+        if (templateInput.getVersion() != null)
+            return updateTemplateIfVersion(templateInput);
+
         // Validate that the template already exists
         var template = templateRepository.findById(templateInput.getId());
 
@@ -80,10 +92,45 @@ public class TemplateService implements HasLogger {
         template.get().setFechaModificacion(LocalDate.now());
 
         eventService.sendEvent(UserContext.getCorrelationId(), templateInput.getUserModify(),
-                "MODIFICA_TEMPLATE", template.get());
+                "MODIFICA_TEMPLATE", TemplateEvent.of(template.get()));
         getLogger().info("Update an existing template " + template.get().getNombre());
 
-        return templateRepository.save(template.get());
+        var savedTemplate = templateRepository.save(template.get());
+
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.TEMPLATE, "MODIFICA_TEMPLATE",
+                                                            templateInput.getUserModify(), savedTemplate));
+
+        return savedTemplate;
+    }
+
+    /**
+     * Conditional update: the templates row is updated only if it has the version of the input (no read before)
+     * and then its code. The template returned has the values of the input, the columns that are not updated
+     * (fechaCreacion, autor) are not read and come as null.
+     */
+    private Template updateTemplateIfVersion(TemplateInput templateInput) {
+        var version = templateInput.getVersion();
+        var destino = Template.DestinoType.valueOfNull(templateInput.getDestino());
+        var updated = templateRepository.updateIfVersion(templateInput.getId(), templateInput.getNombre(),
+                                                         templateInput.getFileRepo(), destino,
+                                                         templateInput.getActivo(), LocalDate.now(), version);
+
+        if (updated == 0)
+            throw new VersionConflictException(ParamType.TEMPLATE, templateInput.getId(), version);
+        templateRepository.upsertContent(templateInput.getId(), templateInput.getJson(), templateInput.getBlockly());
+
+        var savedTemplate = new Template(templateInput.getId(), templateInput.getNombre(), templateInput.getFileRepo(),
+                                         destino, templateInput.getJson(), templateInput.getBlockly(), null,
+                                         LocalDate.now(), null, templateInput.getActivo(), null);
+
+        savedTemplate.setVersion(version + 1);
+        eventService.sendEvent(UserContext.getCorrelationId(), templateInput.getUserModify(),
+                "MODIFICA_TEMPLATE", TemplateEvent.of(savedTemplate));
+        getLogger().info("Update an existing template " + savedTemplate.getNombre() + " version:" + version);
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.TEMPLATE, "MODIFICA_TEMPLATE",
+                                                            templateInput.getUserModify(), savedTemplate));
+
+        return savedTemplate;
     }
 
     public TemplateField addTemplateField(UUID idTemplate, TemplateFieldInput templateFieldInput)  {
@@ -95,68 +142,75 @@ public class TemplateService implements HasLogger {
         template.get().setFechaModificacion(LocalDate.now());
 
         var templateField = TemplateField.fromDTO(templateFieldInput, template.get());
-
-        template.get().getCampos().add(templateField);
-        templateField.setTemplate(template.get());
+        // ^ the field is saved by itself, template.campos is not loaded just to add it
 
         templateFieldRepository.save(templateField);
-        templateRepository.save(template.get());
+
+        var templateEvent = TemplateEvent.of(template.get(), templateField);
 
         eventService.sendEvent(UserContext.getCorrelationId(), templateFieldInput.getUserModify(),
-                "ANADE_TEMPLATE_FIELD", template.get());
+                "ANADE_TEMPLATE_FIELD", templateEvent);
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.TEMPLATE, "ANADE_TEMPLATE_FIELD",
+                                                            templateFieldInput.getUserModify(), templateEvent));
         getLogger().info("Add a field " + templateFieldInput.getNombre() + " to the template " + template.get().getNombre());
 
         return templateField;
     }
 
+    /**
+     * The field is read and updated by (template id, field id): only the template row and the field are read, the
+     * other fields are not loaded, so the cost does not depend on the number of fields. The field is updated
+     * through the managed entity (not with a bulk UPDATE) so only its own second-level cache entry is evicted.
+     */
     public TemplateField updateTemplateField(UUID idTemplate, TemplateFieldInput templateFieldInput)  {
-        // Validate that the datasource already exists
+        // Validate that the template already exists
         var template = templateRepository.findById(idTemplate);
 
         Validate.isTrue(template.isPresent(), "El template ya NO existe en el catálogo.");
 
-        TemplateField templateField = null;
-
-        for (TemplateField ds : template.get().getCampos())
-            if (ds.getId().equals(templateFieldInput.getId())) templateField = ds;
+        var templateField = templateFieldRepository.findByIdAndTemplateId(templateFieldInput.getId(), idTemplate);
 
         Validate.isTrue(templateField != null, "El campo del template NO existe en le catálogo");
 
-        template.get().setFechaModificacion(LocalDate.now());
         templateField.setNombre(templateFieldInput.getNombre());
         templateField.setTipo(TemplateField.FieldType.valueOf(templateFieldInput.getTipo()));
         templateField.setValorDefault(templateFieldInput.getValorDefault());
+        template.get().setFechaModificacion(LocalDate.now());   // both are flushed at commit
+
+        var templateEvent = TemplateEvent.of(template.get(), templateField);
 
         eventService.sendEvent(UserContext.getCorrelationId(), templateFieldInput.getUserModify(),
-                "ACTUALIZA_TEMPLATE_FIELD", template.get());
+                "ACTUALIZA_TEMPLATE_FIELD", templateEvent);
         getLogger().info("Update a field " + templateFieldInput.getNombre() + " to the template " + template.get().getNombre());
-
-        templateRepository.save(template.get());
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.TEMPLATE, "ACTUALIZA_TEMPLATE_FIELD",
+                                                            templateFieldInput.getUserModify(), templateEvent));
 
         return templateField;
     }
 
+    /**
+     * The field is read and deleted by (template id, field id), the other fields of the template are not loaded.
+     */
     public TemplateField deleteTemplateField(UUID idTemplate, UUID fieldId, String user)  {
-        // Validate that the datasource already exists
+        // Validate that the template already exists
         var template = templateRepository.findById(idTemplate);
 
         Validate.isTrue(template.isPresent(), "El template ya NO existe en el catálogo.");
 
-        TemplateField templateField = null;
-
-        for (TemplateField ds : template.get().getCampos())
-            if (ds.getId().equals(fieldId)) templateField = ds;
+        var templateField = templateFieldRepository.findByIdAndTemplateId(fieldId, idTemplate);
 
         Validate.isTrue(templateField != null, "El campo del template NO existe en le catálogo");
 
+        templateFieldRepository.delete(templateField);
         template.get().setFechaModificacion(LocalDate.now());
-        template.get().getCampos().remove(templateField);
+
+        var templateEvent = TemplateEvent.of(template.get(), templateField);
 
         eventService.sendEvent(UserContext.getCorrelationId(), user,
-                "ELIMINA_TEMPLATE_FIELD", template.get());
+                "ELIMINA_TEMPLATE_FIELD", templateEvent);
         getLogger().info("Delete a field " + templateField.getNombre() + " to the template " + template.get().getNombre());
-
-        templateRepository.save(template.get());
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.TEMPLATE, "ELIMINA_TEMPLATE_FIELD",
+                                                            user, templateEvent));
 
         return templateField;
     }
@@ -167,10 +221,11 @@ public class TemplateService implements HasLogger {
 
         Validate.isTrue(template.isPresent(), "El template ya NO existe en el catálogo. No se actualizó nada.");
 
-        templateRepository.deleteById(id);  // TODO check if delete fields and mapping
+        templateRepository.deleteById(id);
+        eventPublisher.publishEvent(ParamChangedEvent.deleted(ParamType.TEMPLATE, "ELIMINA_TEMPLATE", user, template.get()));
 
         eventService.sendEvent(UserContext.getCorrelationId(),user,
-                "ELIMINA_TEMPLATE", template.get());
+                "ELIMINA_TEMPLATE", TemplateEvent.of(template.get()));
         getLogger().info("Delete a template" + template.get().getNombre() + " user:" + user);
 
         return template.get();
@@ -183,10 +238,18 @@ public class TemplateService implements HasLogger {
                 "ANADE_NUEVO_DATASOURCE", datasourceInput);
         getLogger().info("Add a new datasource " + datasourceInput.getNombre());
 
-        return datasourceRepository.save(datasource);
+        var savedDatasource = datasourceRepository.save(datasource);
+
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.DATASOURCE, "ANADE_NUEVO_DATASOURCE",
+                                                            datasourceInput.getUserModify(), savedDatasource));
+
+        return savedDatasource;
     }
 
     public Datasource updateDatasource(DatasourceInput datasourceInput)  {
+        if (datasourceInput.getVersion() != null)
+            return updateDatasourceIfVersion(datasourceInput);
+
         // Validate that the datasource already exists
         var datasource = datasourceRepository.findById(datasourceInput.getId());
 
@@ -202,10 +265,47 @@ public class TemplateService implements HasLogger {
         datasource.get().setFechaModificacion(LocalDate.now());
 
         eventService.sendEvent(UserContext.getCorrelationId(), datasourceInput.getUserModify(),
-                "MODIFICA_DATASOURCE", datasource.get());
+                "MODIFICA_DATASOURCE", DatasourceEvent.of(datasource.get()));
         getLogger().info("Update an existing datasource " + datasource.get().getNombre());
 
-        return datasourceRepository.save(datasource.get());
+        var savedDatasource = datasourceRepository.save(datasource.get());
+
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.DATASOURCE, "MODIFICA_DATASOURCE",
+                                                            datasourceInput.getUserModify(), savedDatasource));
+
+        return savedDatasource;
+    }
+
+    /**
+     * Conditional update: the data_sources row is updated only if it has the version of the input (no read before)
+     * and then its code. The datasource returned has the values of the input, the columns that are not updated
+     * (fechaCreacion, autor) are not read and come as null.
+     */
+    private Datasource updateDatasourceIfVersion(DatasourceInput datasourceInput) {
+        var version = datasourceInput.getVersion();
+        var updated = datasourceRepository.updateIfVersion(datasourceInput.getId(), datasourceInput.getNombre(),
+                                                           datasourceInput.getActivo(), LocalDate.now(), version);
+
+        if (updated == 0)
+            throw new VersionConflictException(ParamType.DATASOURCE, datasourceInput.getId(), version);
+        datasourceRepository.upsertContent(datasourceInput.getId(), datasourceInput.getJson(),
+                                           datasourceInput.getBlockly(), datasourceInput.getConfig(),
+                                           datasourceInput.getConfigBlockly(), datasourceInput.getMapping());
+
+        var savedDatasource = new Datasource(datasourceInput.getId(), datasourceInput.getNombre(),
+                                             datasourceInput.getJson(), datasourceInput.getBlockly(),
+                                             datasourceInput.getConfig(), datasourceInput.getConfigBlockly(),
+                                             datasourceInput.getMapping(), null, LocalDate.now(), null,
+                                             datasourceInput.getActivo(), null);
+
+        savedDatasource.setVersion(version + 1);
+        eventService.sendEvent(UserContext.getCorrelationId(), datasourceInput.getUserModify(),
+                "MODIFICA_DATASOURCE", DatasourceEvent.of(savedDatasource));
+        getLogger().info("Update an existing datasource " + savedDatasource.getNombre() + " version:" + version);
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.DATASOURCE, "MODIFICA_DATASOURCE",
+                                                            datasourceInput.getUserModify(), savedDatasource));
+
+        return savedDatasource;
     }
 
     public DatasourceField addDatasourceField(UUID idDatasource, DatasourceFieldInput datasourceFieldInput)  {
@@ -217,69 +317,76 @@ public class TemplateService implements HasLogger {
         datasource.get().setFechaModificacion(LocalDate.now());
 
         var datasourceField = DatasourceField.fromDTO(datasourceFieldInput, datasource.get());
-
-
-        datasource.get().getCampos().add(datasourceField);
-        datasourceField.setDatasource(datasource.get());
+        // ^ the field is saved by itself, datasource.campos is not loaded just to add it
 
         dataSourceFieldRepository.save(datasourceField);
-        datasourceRepository.save(datasource.get());
+
+        var datasourceEvent = DatasourceEvent.of(datasource.get(), datasourceField);
 
         eventService.sendEvent(UserContext.getCorrelationId(), datasourceFieldInput.getUserModify(),
-                "ANADE_DATASOURCE_FIELD", datasource.get());
+                "ANADE_DATASOURCE_FIELD", datasourceEvent);
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.DATASOURCE, "ANADE_DATASOURCE_FIELD",
+                                                            datasourceFieldInput.getUserModify(), datasourceEvent));
         getLogger().info("Add a field " + datasourceFieldInput.getNombre() + " to the datasource " + datasource.get().getNombre());
 
         return datasourceField;
     }
 
+    /**
+     * The field is read and updated by (datasource id, field id): only the datasource row and the field are read,
+     * the other fields are not loaded, so the cost does not depend on the number of fields. The field is updated
+     * through the managed entity (not with a bulk UPDATE) so only its own second-level cache entry is evicted.
+     */
     public DatasourceField updateDatasourceField(UUID idDatasource, DatasourceFieldInput datasourceFieldInput)  {
         // Validate that the datasource already exists
         var datasource = datasourceRepository.findById(idDatasource);
 
         Validate.isTrue(datasource.isPresent(), "El datasource ya NO existe en el catálogo.");
 
-        DatasourceField datasourceField = null;
-
-        for (DatasourceField ds : datasource.get().getCampos())
-            if (ds.getId().equals(datasourceFieldInput.getId())) datasourceField = ds;
+        var datasourceField = dataSourceFieldRepository.findByIdAndDatasourceId(datasourceFieldInput.getId(),
+                                                                                idDatasource);
 
         Validate.isTrue(datasourceField != null, "El campo del data source NO existe en le catálogo");
 
-        datasource.get().setFechaModificacion(LocalDate.now());
         datasourceField.setNombre(datasourceFieldInput.getNombre());
         datasourceField.setTipo(DatasourceField.FieldType.valueOf(datasourceFieldInput.getTipo()));
         datasourceField.setValidaciones(datasourceFieldInput.getValidaciones());
+        datasource.get().setFechaModificacion(LocalDate.now());   // both are flushed at commit
+
+        var datasourceEvent = DatasourceEvent.of(datasource.get(), datasourceField);
 
         eventService.sendEvent(UserContext.getCorrelationId(), datasourceFieldInput.getUserModify(),
-                "ACTUALIZA_DATASOURCE_FIELD", datasource.get());
+                "ACTUALIZA_DATASOURCE_FIELD", datasourceEvent);
         getLogger().info("Update a field " + datasourceFieldInput.getNombre() + " to the datasource " + datasource.get().getNombre());
-
-        datasourceRepository.save(datasource.get());
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.DATASOURCE, "ACTUALIZA_DATASOURCE_FIELD",
+                                                            datasourceFieldInput.getUserModify(), datasourceEvent));
 
         return datasourceField;
     }
 
+    /**
+     * The field is read and deleted by (datasource id, field id), the other fields of the datasource are not loaded.
+     */
     public DatasourceField deleteDatasourceField(UUID idDatasource, UUID fieldId, String user)  {
         // Validate that the datasource already exists
         var datasource = datasourceRepository.findById(idDatasource);
 
         Validate.isTrue(datasource.isPresent(), "El datasource ya NO existe en el catálogo.");
 
-        DatasourceField datasourceField = null;
-
-        for (DatasourceField ds : datasource.get().getCampos())
-            if (ds.getId().equals(fieldId)) datasourceField = ds;
+        var datasourceField = dataSourceFieldRepository.findByIdAndDatasourceId(fieldId, idDatasource);
 
         Validate.isTrue(datasourceField != null, "El campo del data source NO existe en le catálogo");
 
+        dataSourceFieldRepository.delete(datasourceField);
         datasource.get().setFechaModificacion(LocalDate.now());
-        datasource.get().getCampos().remove(datasourceField);
+
+        var datasourceEvent = DatasourceEvent.of(datasource.get(), datasourceField);
 
         eventService.sendEvent(UserContext.getCorrelationId(), user,
-                "ELIMINA_DATASOURCE_FIELD", datasource.get());
+                "ELIMINA_DATASOURCE_FIELD", datasourceEvent);
         getLogger().info("Delete a field " + datasourceField.getNombre() + " to the datasource " + datasource.get().getNombre());
-
-        datasourceRepository.save(datasource.get());
+        eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.DATASOURCE, "ELIMINA_DATASOURCE_FIELD",
+                                                            user, datasourceEvent));
 
         return datasourceField;
     }
@@ -290,10 +397,11 @@ public class TemplateService implements HasLogger {
 
         Validate.isTrue(datasource.isPresent(), "El datasource ya NO existe en el catálogo. No se actualizó nada.");
 
-        datasourceRepository.deleteById(id);  // TODO check if delete fields and mapping
+        datasourceRepository.deleteById(id);
+        eventPublisher.publishEvent(ParamChangedEvent.deleted(ParamType.DATASOURCE, "ELIMINA_DATASOURCE", user, datasource.get()));
 
         eventService.sendEvent(UserContext.getCorrelationId(),user,
-                "ELIMINA_DATASOURCE", datasource.get());
+                "ELIMINA_DATASOURCE", DatasourceEvent.of(datasource.get()));
         getLogger().info("Delete a datasource" + datasource.get().getNombre() + " user:" + user);
 
         return datasource.get();
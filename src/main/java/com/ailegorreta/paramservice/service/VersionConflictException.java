@@ -0,0 +1,53 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  VersionConflictException.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.paramservice.domain.ParamType;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * A conditional update did not find the row with the version read by the client: it was changed (or deleted) by
+ * another user. It is returned to the client as a VERSION_CONFLICT GraphQL error (see ParamExceptionHandler).
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Getter
+public class VersionConflictException extends RuntimeException {
+    public static final String MESSAGE = "El registro fue modificado por otro usuario, se debe leer de nuevo " +
+                                         "antes de actualizarlo.";
+
+    private final ParamType type;
+    private final UUID      id;
+    private final Long      expectedVersion;
+
+    public VersionConflictException(ParamType type, UUID id, Long expectedVersion) {
+        super(MESSAGE);
+        this.type = type;
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+    }
+}
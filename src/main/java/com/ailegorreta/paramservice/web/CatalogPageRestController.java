@@ -0,0 +1,83 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CatalogPageRestController.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.web;
+
+import com.ailegorreta.paramservice.domain.Datasource;
+import com.ailegorreta.paramservice.domain.Template;
+import com.ailegorreta.paramservice.service.CatalogPageService;
+import com.ailegorreta.paramservice.service.KeysetCursor;
+import com.ailegorreta.paramservice.service.KeysetPage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Keyset mode of the template and data_source REST resources. The Spring Data REST collections page with an
+ * offset (?page=n&size=m) that gets slower with the page number; these ones start after a cursor, e.g.:
+ *
+ *      GET /param/api/keyset/template?size=100
+ *      GET /param/api/keyset/template?size=100&after=<page_info.end_cursor of the previous page>
+ *
+ * The rows do not include the campos, they are read with /param/api/template/{id}/campos. An 'after' that is not a
+ * cursor returned by these resources is a 400 (Bad Request).
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@RestController
+@RequestMapping("/param/api/keyset")
+@RequiredArgsConstructor
+public class CatalogPageRestController {
+
+    private final CatalogPageService catalogPageService;
+
+    @GetMapping("/template")
+    public KeysetPage<Template> templates(@RequestParam(name = "nombre", required = false) String nombre,
+                                          @RequestParam(name = "size", required = false) Integer size,
+                                          @RequestParam(name = "after", required = false) String after) {
+        return catalogPageService.templates(nombre, size, validCursor(after));
+    }
+
+    @GetMapping("/data_source")
+    public KeysetPage<Datasource> datasources(@RequestParam(name = "nombre", required = false) String nombre,
+                                              @RequestParam(name = "size", required = false) Integer size,
+                                              @RequestParam(name = "after", required = false) String after) {
+        return catalogPageService.datasources(nombre, size, validCursor(after));
+    }
+
+    private static String validCursor(String after) {
+        if (after != null) {
+            try {
+                KeysetCursor.decode(after);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+            }
+        }
+        return after;
+    }
+}
@@ -0,0 +1,99 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CatalogTransferRestController.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.web;
+
+import com.ailegorreta.paramservice.service.CatalogTransferService;
+import com.ailegorreta.paramservice.service.ImportResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * NDJSON (one JSON document per line) export and import of the templates and datasources with their fields, e.g.:
+ *
+ *      GET  /param/api/export/templates                  > templates.ndjson
+ *      POST /param/api/import/templates?user=admin       < templates.ndjson
+ *
+ * Neither the response nor the request body is held in memory, see CatalogTransferService. An export holds a
+ * database connection until the client reads the whole response, when param-service.transfer.max-exports exports
+ * are running another one is answered with 503 (Service Unavailable) and a Retry-After header.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@RestController
+@RequestMapping("/param/api")
+@RequiredArgsConstructor
+public class CatalogTransferRestController {
+
+    private static final String RETRY_AFTER_SECONDS = "30";
+
+    private final CatalogTransferService catalogTransferService;
+
+    @GetMapping("/export/templates")
+    public ResponseEntity<StreamingResponseBody> exportTemplates() {
+        return export(catalogTransferService::exportTemplates);
+    }
+
+    @GetMapping("/export/datasources")
+    public ResponseEntity<StreamingResponseBody> exportDatasources() {
+        return export(catalogTransferService::exportDatasources);
+    }
+
+    @PostMapping(value = "/import/templates", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ImportResult importTemplates(@RequestParam(name = "user") String user,
+                                        InputStream body) throws IOException {
+        return catalogTransferService.importTemplates(body, user);
+    }
+
+    @PostMapping(value = "/import/datasources", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ImportResult importDatasources(@RequestParam(name = "user") String user,
+                                          InputStream body) throws IOException {
+        return catalogTransferService.importDatasources(body, user);
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(StreamingResponseBody export) {
+        if (!catalogTransferService.tryStartExport())
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                 .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                                 .build();
+
+        return ResponseEntity.ok()
+                             .contentType(MediaType.APPLICATION_NDJSON)
+                             .body(out -> {
+                                 try {
+                                     export.writeTo(out);
+                                 } finally {
+                                     catalogTransferService.endExport();
+                                 }
+                             });
+    }
+}
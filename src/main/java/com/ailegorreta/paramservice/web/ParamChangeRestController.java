@@ -0,0 +1,99 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamChangeRestController.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.web;
+
+import com.ailegorreta.paramservice.config.ServiceConfig;
+import com.ailegorreta.paramservice.domain.ParamChange;
+import com.ailegorreta.paramservice.domain.ParamType;
+import com.ailegorreta.paramservice.service.ParamChangeFeed;
+import com.ailegorreta.paramservice.service.ParamChangeLogService;
+import com.ailegorreta.paramservice.service.ParamChanges;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * REST version of the delta-sync API, next to the Spring Data REST repositories (/param/api). It is for the
+ * clients that do not use GraphQL, e.g.:
+ *
+ *      GET /param/api/changes?since=1520&limit=200
+ *
+ * returns only the parameter changes with sequence greater than 1520.
+ *
+ * The clients that can not use the GraphQL subscription (WebSocket) receive the changes as Server-Sent Events:
+ *
+ *      GET /param/api/changes/stream?types=SYSTEM_DATE&types=SYSTEM_RATE
+ *
+ * every event has as id the change sequence, so when the connection is lost the client (e.g., EventSource)
+ * reconnects with the Last-Event-ID header and receives the changes it missed, see ParamChangeFeed. The stream is
+ * asynchronous, the connections do not hold a servlet thread.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@RestController
+@RequestMapping("/param/api")
+@RequiredArgsConstructor
+public class ParamChangeRestController {
+
+    private final ParamChangeLogService paramChangeLogService;
+    private final ParamChangeFeed paramChangeFeed;
+    private final ServiceConfig serviceConfig;
+
+    @GetMapping("/changes")
+    public ParamChanges changes(@RequestParam(name = "since", defaultValue = "0") Long since,
+                                @RequestParam(name = "limit", required = false) Integer limit) {
+        return paramChangeLogService.changesSince(since, limit);
+    }
+
+    /**
+     * @param lastEventId sequence of the last change received, sent by the client when it reconnects
+     * @param since       sequence to start from for the first connection, without it only the new changes are sent
+     */
+    @GetMapping(path = "/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ParamChange>> stream(
+                                        @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId,
+                                        @RequestParam(name = "since", required = false) Long since,
+                                        @RequestParam(name = "types", required = false) List<ParamType> types,
+                                        @RequestParam(name = "names", required = false) List<String> names) {
+        var after = (lastEventId != null) ? lastEventId : since;
+        var changes = (after == null) ? paramChangeFeed.changes(types, names)
+                                      : paramChangeFeed.changesAfter(after, types, names);
+        var heartbeat = Flux.interval(serviceConfig.getSubscriptionHeartbeat())
+                            .map(tick -> ServerSentEvent.<ParamChange>builder().comment("heartbeat").build());
+
+        return changes.map(change -> ServerSentEvent.builder(change)
+                                                    .id(change.getSequence().toString())
+                                                    .build())
+                      .mergeWith(heartbeat);
+    }
+}
@@ -0,0 +1,164 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  RepositoryWriteHandler.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.web;
+
+import com.ailegorreta.commons.utils.HasLogger;
+import com.ailegorreta.paramservice.domain.*;
+import com.ailegorreta.paramservice.service.*;
+import com.ailegorreta.resourceserver.utils.UserContext;
+import jakarta.validation.constraints.NotNull;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.rest.core.annotation.*;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * The writes through the Spring Data REST repositories (/param/api/template, data_source, template_field and
+ * data_source_field) do not go through the mutation services, so the events of the mutation services are sent
+ * here: the audit event (EventService, with the same event names) and the ParamChangedEvent that logs the change
+ * (ParamChangeLogService) and, after the commit, evicts the GraphQL responses of its type in this replica
+ * (ResponseCacheInterceptor). The other replicas are notified by param-audit as for any other change.
+ *
+ * Spring Data REST commits the write before the after handlers are called; the events are stored in their own
+ * transaction, so the audit event and the change log row are written together.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@Component
+@RepositoryEventHandler
+@RequiredArgsConstructor
+public class RepositoryWriteHandler implements HasLogger {
+
+    private final EventService              eventService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate       transactionTemplate;
+
+    @HandleAfterCreate
+    public void onTemplateCreate(Template template) {
+        saved(ParamType.TEMPLATE, "ANADE_NUEVO_TEMPLATE", TemplateEvent.of(template));
+    }
+
+    @HandleAfterSave
+    @HandleAfterLinkSave
+    @HandleAfterLinkDelete
+    public void onTemplateSave(Template template) {
+        saved(ParamType.TEMPLATE, "MODIFICA_TEMPLATE", TemplateEvent.of(template));
+    }
+
+    @HandleAfterDelete
+    public void onTemplateDelete(Template template) {
+        deleted(ParamType.TEMPLATE, "ELIMINA_TEMPLATE", TemplateEvent.of(template));
+    }
+
+    @HandleAfterCreate
+    public void onTemplateFieldCreate(TemplateField templateField) {
+        saved(ParamType.TEMPLATE, "ANADE_TEMPLATE_FIELD",
+              TemplateEvent.of(templateField.getTemplate(), templateField));
+    }
+
+    @HandleAfterSave
+    @HandleAfterLinkSave
+    @HandleAfterLinkDelete
+    public void onTemplateFieldSave(TemplateField templateField) {
+        saved(ParamType.TEMPLATE, "ACTUALIZA_TEMPLATE_FIELD",
+              TemplateEvent.of(templateField.getTemplate(), templateField));
+    }
+
+    @HandleAfterDelete
+    public void onTemplateFieldDelete(TemplateField templateField) {
+        saved(ParamType.TEMPLATE, "ELIMINA_TEMPLATE_FIELD",
+              TemplateEvent.of(templateField.getTemplate(), templateField));
+    }
+
+    @HandleAfterCreate
+    public void onDatasourceCreate(Datasource datasource) {
+        saved(ParamType.DATASOURCE, "ANADE_NUEVO_DATASOURCE", DatasourceEvent.of(datasource));
+    }
+
+    @HandleAfterSave
+    @HandleAfterLinkSave
+    @HandleAfterLinkDelete
+    public void onDatasourceSave(Datasource datasource) {
+        saved(ParamType.DATASOURCE, "MODIFICA_DATASOURCE", DatasourceEvent.of(datasource));
+    }
+
+    @HandleAfterDelete
+    public void onDatasourceDelete(Datasource datasource) {
+        deleted(ParamType.DATASOURCE, "ELIMINA_DATASOURCE", DatasourceEvent.of(datasource));
+    }
+
+    @HandleAfterCreate
+    public void onDatasourceFieldCreate(DatasourceField datasourceField) {
+        saved(ParamType.DATASOURCE, "ANADE_DATASOURCE_FIELD",
+              DatasourceEvent.of(datasourceField.getDatasource(), datasourceField));
+    }
+
+    @HandleAfterSave
+    @HandleAfterLinkSave
+    @HandleAfterLinkDelete
+    public void onDatasourceFieldSave(DatasourceField datasourceField) {
+        saved(ParamType.DATASOURCE, "ACTUALIZA_DATASOURCE_FIELD",
+              DatasourceEvent.of(datasourceField.getDatasource(), datasourceField));
+    }
+
+    @HandleAfterDelete
+    public void onDatasourceFieldDelete(DatasourceField datasourceField) {
+        saved(ParamType.DATASOURCE, "ELIMINA_DATASOURCE_FIELD",
+              DatasourceEvent.of(datasourceField.getDatasource(), datasourceField));
+    }
+
+    private void saved(ParamType type, String eventName, Object value) {
+        var user = user();
+
+        send(user, eventName, value, ParamChangedEvent.saved(type, eventName, user, value));
+    }
+
+    private void deleted(ParamType type, String eventName, Object value) {
+        var user = user();
+
+        send(user, eventName, value, ParamChangedEvent.deleted(type, eventName, user, value));
+    }
+
+    private void send(String user, String eventName, Object value, ParamChangedEvent paramChangedEvent) {
+        transactionTemplate.executeWithoutResult(status -> {
+            eventService.sendEvent(UserContext.getCorrelationId(), user, eventName, value);
+            eventPublisher.publishEvent(paramChangedEvent);
+        });
+        getLogger().info("Spring Data REST write " + eventName + " user:" + user);
+    }
+
+    private static String user() {
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        return (authentication == null) ? "NA" : authentication.getName();
+    }
+
+    @NotNull
+    @Override
+    public Logger getLogger() { return HasLogger.DefaultImpls.getLogger(this); }
+}
@@ -33,6 +33,7 @@ import org.springframework.context.annotation.Bean
 import org.springframework.context.annotation.ComponentScan
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder
+import org.springframework.scheduling.annotation.EnableScheduling
 
 /**
  * System parameters server repository.
@@ -62,6 +63,7 @@ import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder
 @SpringBootApplication
 @ComponentScan(basePackages = ["com.ailegorreta.paramservice", "com.ailegorreta.resourceserver"])
 				// ^ this package must be included in order to instantiate de UserContext
+@EnableScheduling       // runs the EventOutboxRelay
 class ParamServiceApplication {
     companion object {
         @JvmStatic
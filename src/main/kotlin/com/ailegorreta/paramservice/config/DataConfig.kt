@@ -22,10 +22,14 @@
  */
 package com.ailegorreta.paramservice.config
 
+import com.ailegorreta.commons.utils.HasLogger
 import com.ailegorreta.paramservice.domain.Datasource
 import com.ailegorreta.paramservice.domain.DatasourceField
 import com.ailegorreta.paramservice.domain.Template
 import com.ailegorreta.paramservice.domain.TemplateField
+import com.querydsl.jpa.impl.JPAQueryFactory
+import jakarta.persistence.EntityManager
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy
 import org.springframework.context.annotation.Bean
 import org.springframework.context.annotation.Configuration
 import org.springframework.core.task.AsyncTaskExecutor
@@ -33,6 +37,7 @@ import org.springframework.data.domain.AuditorAware
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing
 import org.springframework.data.rest.core.config.RepositoryRestConfiguration
 import org.springframework.data.rest.webmvc.config.RepositoryRestConfigurer
+import org.springframework.jdbc.CannotGetJdbcConnectionException
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor
@@ -40,9 +45,13 @@ import org.springframework.security.core.Authentication
 import org.springframework.security.core.context.SecurityContext
 import org.springframework.security.core.context.SecurityContextHolder
 import org.springframework.web.servlet.config.annotation.CorsRegistry
+import java.sql.SQLException
+import java.sql.SQLNonTransientConnectionException
+import java.sql.SQLTransientConnectionException
 import java.util.*
 import java.util.concurrent.Callable
 import java.util.concurrent.Future
+import javax.cache.CacheManager
 import javax.sql.DataSource
 
 /**
@@ -65,7 +74,7 @@ import javax.sql.DataSource
 @Configuration
 @EnableJpaAuditing
 // ^ this package must be included in order to instantiate de UserContext
-class DataConfig {
+class DataConfig: HasLogger {
 
     @Bean
     fun auditorAware(): AuditorAware<String>? {
@@ -100,8 +109,8 @@ class DataConfig {
      * executor for background bootstrapping
      */
     @Bean
-    fun entityManagerFactory(dataSource: DataSource, delayedTaskExecutor: AsyncTaskExecutor):
-            LocalContainerEntityManagerFactoryBean? {
+    fun entityManagerFactory(dataSource: DataSource, delayedTaskExecutor: AsyncTaskExecutor,
+                             l2CacheManager: CacheManager): LocalContainerEntityManagerFactoryBean? {
                 val factory = LocalContainerEntityManagerFactoryBean()
 
                 factory.setPackagesToScan("com.ailegorreta.paramservice.domain")
@@ -112,11 +121,48 @@ class DataConfig {
                 val properties: MutableMap<String, Any> = HashMap()
 
                 properties["hibernate.hbm2ddl.auto"] = "none"
+                // declared so the EntityManagerFactory starts without JDBC metadata when Postgres is down
+                properties["hibernate.dialect"] = "org.hibernate.dialect.PostgreSQLDialect"
+                properties["hibernate.jdbc.batch_size"] = 50            // batch mutations (e.g. addSystemRates)
+                properties["hibernate.order_inserts"] = true
+                properties["hibernate.order_updates"] = true
+                // second-level cache of templates and datasources, see SecondLevelCacheConfig
+                properties["hibernate.cache.use_second_level_cache"] = true
+                properties["hibernate.cache.region.factory_class"] = "jcache"
+                properties["hibernate.javax.cache.cache_manager"] = l2CacheManager
+                properties["hibernate.javax.cache.missing_cache_strategy"] = "fail"
+                // a field saved or deleted by itself (e.g., addTemplateField) evicts the cached campos of its parent
+                properties["hibernate.cache.auto_evict_collection_cache"] = true
+                properties["hibernate.generate_statistics"] = true     // per region hit ratios
+                properties["hibernate.session.events.log"] = false
                 factory.setJpaPropertyMap(properties)
 
                 return factory
     }
 
+    /**
+     * If Postgres is not available at start-up the migrations are skipped and the start-up goes on: the parameters
+     * are served from the disk snapshot and ParamSnapshotService.recover applies the migrations when Postgres is
+     * back. Any other failure (e.g., a migration that fails or a checksum mismatch) stops the start-up as usual.
+     */
+    @Bean
+    fun flywayMigrationStrategy() = FlywayMigrationStrategy { flyway ->
+        try {
+            flyway.migrate()
+        } catch (e: RuntimeException) {      // FlywayException or the pool initialization failure
+            if (!isConnectionFailure(e))
+                throw e
+            logger.error("Postgres no está disponible, no se aplicaron las migraciones de Flyway: ${e.message}")
+        }
+    }
+
+    /**
+     * QueryDSL factory for the queries that the repositories cannot do, e.g., the column projections driven by the
+     * GraphQL selection set. The EntityManager is the shared (transactional) one.
+     */
+    @Bean
+    fun jpaQueryFactory(entityManager: EntityManager) = JPAQueryFactory(entityManager)
+
     /**
      * This configuration is for Spring Data REST. The example so we include in the API response the ID entities
      * because by default they are not included. Many other configuration are possible, like the Jackson ObjectMapper
@@ -136,4 +182,28 @@ class DataConfig {
             }
         }
     }
-}
\ No newline at end of file
+
+    companion object {
+        /**
+         * True if the exception (or one of its causes) is a failure to connect to the database: the connection
+         * SQLStates (class 08, and 57P for a server that is shutting down or starting up) or Spring's
+         * CannotGetJdbcConnectionException. An SQLException of a migration statement is not.
+         */
+        @JvmStatic
+        fun isConnectionFailure(e: Throwable): Boolean {
+            var cause: Throwable? = e
+
+            while (cause != null) {
+                if (cause is CannotGetJdbcConnectionException ||
+                    cause is SQLTransientConnectionException || cause is SQLNonTransientConnectionException)
+                    return true
+                if (cause is SQLException && cause.sqlState != null &&
+                    (cause.sqlState.startsWith("08") || cause.sqlState.startsWith("57P")))
+                    return true
+                cause = if (cause.cause === cause) null else cause.cause
+            }
+
+            return false
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  SecondLevelCacheConfig.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.config
+
+import com.github.benmanes.caffeine.cache.Weigher
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider
+import io.micrometer.core.instrument.FunctionCounter
+import io.micrometer.core.instrument.Gauge
+import io.micrometer.core.instrument.binder.MeterBinder
+import jakarta.persistence.EntityManagerFactory
+import org.hibernate.SessionFactory
+import org.hibernate.cache.spi.entry.CacheEntry
+import org.hibernate.cache.spi.entry.CollectionCacheEntry
+import org.hibernate.stat.CacheRegionStatistics
+import org.springframework.context.annotation.Bean
+import org.springframework.context.annotation.Configuration
+import java.net.URI
+import java.util.*
+import javax.cache.CacheManager
+import javax.cache.Caching
+import javax.cache.configuration.FactoryBuilder
+
+/**
+ * Hibernate second-level cache for the Template and Datasource aggregates (the entity, its content and its campos
+ * collection and fields). Each aggregate has one region:
+ *
+ *  - param.templates:   Template, TemplateContent, TemplateField and Template.campos
+ *  - param.datasources: Datasource, DatasourceContent, DatasourceField and Datasource.campos
+ *
+ * The provider is Caffeine (JCache) and each region is bounded by an approximate size in bytes
+ * (param-service.cache.l2-max-size) instead of a number of entries, because a content entry with the blockly code
+ * can be a thousand times bigger than a field entry. The regions use NONSTRICT_READ_WRITE: the local entries are
+ * invalidated by Hibernate after the commit and the other replicas invalidate theirs when they receive the
+ * param-audit event (see RemoteParamChangeListener).
+ *
+ * The hits, misses and puts of each region are published in Micrometer as param.l2.gets, param.l2.puts and
+ * param.l2.hit.ratio with the tag region, e.g. /actuator/metrics/param.l2.hit.ratio?tag=region:param.templates
+ *
+ * @author rlh
+ * @project : param-service
+ * @date August 2023
+ *
+ */
+@Configuration
+class SecondLevelCacheConfig {
+
+    companion object {
+        const val TEMPLATES_REGION = "param.templates"
+        const val DATASOURCES_REGION = "param.datasources"
+        val REGIONS = listOf(TEMPLATES_REGION, DATASOURCES_REGION)
+    }
+
+    /**
+     * One cache manager per application context, the integration tests start more than one in the same JVM.
+     */
+    @Bean(destroyMethod = "close")
+    fun l2CacheManager(serviceConfig: ServiceConfig): CacheManager {
+        val provider = Caching.getCachingProvider(CaffeineCachingProvider::class.java.name)
+        val cacheManager = provider.getCacheManager(URI.create("param-service-l2-" + UUID.randomUUID()),
+                                                    provider.defaultClassLoader)
+
+        REGIONS.forEach { region ->
+            val configuration = CaffeineConfiguration<Any, Any>()
+
+            configuration.isStoreByValue = false            // Hibernate entries are already disassembled copies
+            configuration.isStatisticsEnabled = true
+            configuration.maximumWeight = OptionalLong.of(serviceConfig.cacheL2MaxSize!!.toBytes())
+            configuration.setWeigherFactory(Optional.of(FactoryBuilder.factoryOf(EntryWeigher::class.java)))
+            configuration.expireAfterWrite = OptionalLong.of(serviceConfig.cacheExpireAfterWrite!!.toNanos())
+            cacheManager.createCache(region, configuration)
+        }
+
+        return cacheManager
+    }
+
+    @Bean
+    fun l2CacheMetrics(entityManagerFactory: EntityManagerFactory) = MeterBinder { registry ->
+        REGIONS.forEach { region ->
+            // the statistics are read when the meters are published, after the (deferred) JPA bootstrap
+            val statistics = { regionStatistics(entityManagerFactory, region) }
+
+            FunctionCounter.builder("param.l2.gets", statistics) { it()?.hitCount?.toDouble() ?: 0.0 }
+                           .tags("region", region, "result", "hit")
+                           .register(registry)
+            FunctionCounter.builder("param.l2.gets", statistics) { it()?.missCount?.toDouble() ?: 0.0 }
+                           .tags("region", region, "result", "miss")
+                           .register(registry)
+            FunctionCounter.builder("param.l2.puts", statistics) { it()?.putCount?.toDouble() ?: 0.0 }
+                           .tag("region", region)
+                           .register(registry)
+            Gauge.builder("param.l2.hit.ratio", statistics) { hitRatio(it()) }
+                 .tag("region", region)
+                 .register(registry)
+        }
+    }
+
+    private fun regionStatistics(entityManagerFactory: EntityManagerFactory, region: String): CacheRegionStatistics? =
+        entityManagerFactory.unwrap(SessionFactory::class.java).statistics.getDomainDataRegionStatistics(region)
+
+    private fun hitRatio(statistics: CacheRegionStatistics?): Double {
+        val gets = (statistics?.hitCount ?: 0L) + (statistics?.missCount ?: 0L)
+
+        return if (gets == 0L) 0.0 else statistics!!.hitCount.toDouble() / gets
+    }
+
+    /**
+     * Approximate size in bytes of a cache entry: the strings of the disassembled state (json and blockly codes)
+     * dominate, the rest of the columns and the collection ids are counted with a fixed size.
+     */
+    class EntryWeigher : Weigher<Any, Any> {
+        override fun weigh(key: Any, value: Any): Int =
+            (ENTRY_SIZE + sizeOf(value)).coerceAtMost(Int.MAX_VALUE.toLong()).toInt()
+
+        private fun sizeOf(value: Any?): Long = when (value) {
+            null -> 0L
+            is String -> STRING_SIZE + 2L * value.length
+            is CacheEntry -> value.disassembledState.sumOf { sizeOf(it) }
+            is CollectionCacheEntry -> value.state.size * VALUE_SIZE
+            is Array<*> -> value.sumOf { sizeOf(it) }
+            else -> VALUE_SIZE
+        }
+
+        companion object {
+            private const val ENTRY_SIZE = 64L
+            private const val STRING_SIZE = 40L
+            private const val VALUE_SIZE = 24L
+        }
+    }
+}
@@ -25,6 +25,8 @@ package com.ailegorreta.paramservice.config
 import org.springframework.beans.factory.annotation.Value
 import org.springframework.context.annotation.Configuration
 import org.springframework.stereotype.Component
+import org.springframework.util.unit.DataSize
+import java.time.Duration
 
 /**
  * Service configuration stored in the properties .yml file.
@@ -41,6 +43,51 @@ class ServiceConfig {
     @Value("\${spring.application.name}")
     val appName: String? = null
 
+    @Value("\${param-service.instance-id:\${HOSTNAME:param-service}}")
+    val instanceId: String? = null          // this replica, the pod name in Kubernetes (see RemoteParamChangeListener)
+
     @Value("\${param-service.testing}")
     val testing: String? = null
-}
\ No newline at end of file
+
+    @Value("\${param-service.cache.expire-after-write:10m}")
+    val cacheExpireAfterWrite: Duration? = null  // safety net of the Hibernate second-level cache regions
+
+    @Value("\${param-service.cache.l2-max-size:64MB}")
+    val cacheL2MaxSize: DataSize? = null   // approximate size of each Hibernate second-level cache region
+
+    @Value("\${param-service.graphql.response-cache.max-size:32MB}")
+    val responseCacheMaxSize: DataSize? = null  // approximate size of the cached GraphQL query responses
+
+    @Value("\${param-service.graphql.response-cache.expire-after-write:10m}")
+    val responseCacheExpireAfterWrite: Duration? = null
+
+    @Value("\${param-service.graphql.persisted-queries.max-size:5000}")
+    val persistedQueriesMaxSize: Long? = null  // documents registered by hash (automatic persisted queries)
+
+    @Value("\${param-service.graphql.document-cache.max-size:1000}")
+    val documentCacheMaxSize: Long? = null     // parsed and validated documents
+
+    @Value("\${param-service.subscriptions.buffer-size:256}")
+    val subscriptionBufferSize: Int? = null   // changes buffered per subscriber before it is disconnected
+
+    @Value("\${param-service.subscriptions.replay-size:1000}")
+    val subscriptionReplaySize: Int? = null   // last changes kept to resume the SSE streams (Last-Event-ID)
+
+    @Value("\${param-service.subscriptions.heartbeat:15s}")
+    val subscriptionHeartbeat: Duration? = null   // SSE comment sent to keep idle connections open
+
+    @Value("\${param-service.snapshot.file:\${java.io.tmpdir}/param-service/param-snapshot.bin}")
+    val snapshotFile: String? = null        // last known good parameter snapshot, served when Postgres is down
+
+    @Value("\${param-service.outbox.batch-size:100}")
+    val outboxBatchSize: Int? = null        // events locked, sent and deleted per outbox relay transaction
+
+    @Value("\${param-service.transfer.batch-size:100}")
+    val transferBatchSize: Int? = null      // templates/datasources inserted per transaction by the NDJSON import
+
+    @Value("\${param-service.transfer.fetch-size:500}")
+    val transferFetchSize: Int? = null      // rows fetched per round trip by the NDJSON export cursor
+
+    @Value("\${param-service.transfer.max-exports:2}")
+    val transferMaxExports: Int? = null     // concurrent NDJSON exports, each one holds a pooled connection
+}
@@ -24,19 +24,35 @@ package com.ailegorreta.paramservice.domain
 
 import org.springframework.data.jpa.repository.JpaRepository
 import org.springframework.data.rest.core.annotation.RepositoryRestResource
+import org.springframework.data.rest.core.annotation.RestResource
 import java.util.*
 
 /**
  * Repositories for the following tables. TemplateFields and DatasourceFields. These repositories do not need to
  * be in Java because we do not use Querydsl filters.
  *
+ * The findBy...IdIn methods are used by the GraphQL batch loaders (one IN query for all the parents of a
+ * response) and are not exported as Spring Data REST searches.
+ *
  * @project param-service
  * @author rlh
  * @date August 2023
  */
 
 @RepositoryRestResource(path = "template_field", collectionResourceRel = "campos", itemResourceRel = "campo")
-interface TemplateFieldRepository : JpaRepository<TemplateField, UUID>
+interface TemplateFieldRepository : JpaRepository<TemplateField, UUID> {
+    @RestResource(exported = false)
+    fun findByTemplateIdIn(ids: Collection<UUID>): List<TemplateField>
+
+    @RestResource(exported = false)
+    fun findByIdAndTemplateId(id: UUID, templateId: UUID): TemplateField?
+}
 
 @RepositoryRestResource(path = "data_source_field", collectionResourceRel = "campos", itemResourceRel = "campo")
-interface DatasourceFieldRepository : JpaRepository<DatasourceField, UUID>
\ No newline at end of file
+interface DatasourceFieldRepository : JpaRepository<DatasourceField, UUID> {
+    @RestResource(exported = false)
+    fun findByDatasourceIdIn(ids: Collection<UUID>): List<DatasourceField>
+
+    @RestResource(exported = false)
+    fun findByIdAndDatasourceId(id: UUID, datasourceId: UUID): DatasourceField?
+}
@@ -40,7 +40,8 @@ data class DatasourceInput constructor (val id: UUID?,
                                         val config: String?,
                                         val configBlockly: String?,
                                         val mapping: String?,
-                                        val userModify: String)
+                                        val userModify: String,
+                                        val version: Long? = null)   // optional, update only if it has this version
 
 data class DatasourceFieldInput constructor(val id: UUID?,
                                             val nombre: String,
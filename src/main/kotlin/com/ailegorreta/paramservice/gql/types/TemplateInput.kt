@@ -39,7 +39,8 @@ data class TemplateInput constructor (val id: UUID?,
                                       val blockly: String?,
                                       val autor: String,
                                       val activo: Boolean,
-                                      val userModify: String)
+                                      val userModify: String,
+                                      val version: Long? = null)     // optional, update only if it has this version
 
 data class TemplateFieldInput constructor(val id: UUID?,
                                           val nombre: String,
@@ -0,0 +1,83 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CatalogRecords.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service
+
+import com.ailegorreta.paramservice.domain.DatasourceField
+import com.ailegorreta.paramservice.domain.Template
+import com.ailegorreta.paramservice.domain.TemplateField
+import java.time.LocalDate
+import java.util.*
+
+/**
+ * Lines of the NDJSON export/import of templates and datasources (see CatalogTransferService): one template or
+ * datasource per line, with its fields.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+data class TemplateRecord constructor(val id: UUID?,
+                                      val nombre: String,
+                                      val fileRepo: String?,
+                                      val destino: Template.DestinoType?,
+                                      val json: String?,
+                                      val blockly: String?,
+                                      val fechaCreacion: LocalDate?,
+                                      val fechaModificacion: LocalDate?,
+                                      val autor: String?,
+                                      val activo: Boolean?,
+                                      val campos: List<TemplateFieldRecord> = emptyList())
+
+data class TemplateFieldRecord constructor(val id: UUID?,
+                                           val nombre: String,
+                                           val tipo: TemplateField.FieldType,
+                                           val valorDefault: String?)
+
+data class DatasourceRecord constructor(val id: UUID?,
+                                        val nombre: String,
+                                        val json: String?,
+                                        val blockly: String?,
+                                        val config: String?,
+                                        val configBlockly: String?,
+                                        val mapping: String?,
+                                        val fechaCreacion: LocalDate?,
+                                        val fechaModificacion: LocalDate?,
+                                        val autor: String?,
+                                        val activo: Boolean?,
+                                        val campos: List<DatasourceFieldRecord> = emptyList())
+
+data class DatasourceFieldRecord constructor(val id: UUID?,
+                                             val nombre: String,
+                                             val tipo: DatasourceField.FieldType,
+                                             val validaciones: String?)
+
+/**
+ * Result of an import. A record is matched by its exported id:
+ * - skipped: its id is already stored, as the id of a row or as the source id of a row imported before (or it is
+ *   repeated in the file).
+ * - rejected: another template/datasource with a different id already has its name (the names are unique), it is
+ *   not imported and its name is returned so it can be renamed or updated by hand.
+ */
+data class ImportResult constructor(val imported: Long,
+                                    val skipped: Long,
+                                    val rejected: List<String> = emptyList())
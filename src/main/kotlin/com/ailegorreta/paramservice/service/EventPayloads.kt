@@ -0,0 +1,152 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  EventPayloads.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service
+
+import com.ailegorreta.paramservice.domain.Datasource
+import com.ailegorreta.paramservice.domain.DatasourceField
+import com.ailegorreta.paramservice.domain.ParamType
+import com.ailegorreta.paramservice.domain.Template
+import com.ailegorreta.paramservice.domain.TemplateField
+import com.fasterxml.jackson.annotation.JsonInclude
+import java.time.LocalDate
+import java.util.*
+
+/**
+ * Event projections for the Template and Datasource audit events.
+ *
+ * The entities are not sent as is: serializing them walks the lazy 'campos' collection (and the content side
+ * table) inside the mutation transaction. The projections copy only the columns that the event needs and, for the
+ * field mutations, the one field that changed. The template/datasource code is only included in the events of the
+ * template/datasource itself.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+data class TemplateEvent constructor(val id: UUID?,
+                                     val nombre: String?,
+                                     val fileRepo: String?,
+                                     val destino: Template.DestinoType?,
+                                     val json: String?,
+                                     val blockly: String?,
+                                     val fechaCreacion: LocalDate?,
+                                     val fechaModificacion: LocalDate?,
+                                     val autor: String?,
+                                     val activo: Boolean?,
+                                     val campo: TemplateFieldEvent?) {
+    companion object {
+        @JvmStatic
+        fun of(template: Template) = TemplateEvent(template.id, template.nombre, template.fileRepo,
+                                                   template.destino, template.json, template.blockly,
+                                                   template.fechaCreacion, template.fechaModificacion,
+                                                   template.autor, template.activo, null)
+
+        /**
+         * The columns without the code (json, blockly), e.g., for the change log rows.
+         */
+        @JvmStatic
+        fun summaryOf(template: Template) = TemplateEvent(template.id, template.nombre, template.fileRepo,
+                                                          template.destino, null, null, template.fechaCreacion,
+                                                          template.fechaModificacion, template.autor,
+                                                          template.activo, null)
+
+        @JvmStatic
+        fun of(template: Template, field: TemplateField) = TemplateEvent(template.id, template.nombre,
+                                                                         template.fileRepo, template.destino,
+                                                                         null, null,
+                                                                         template.fechaCreacion,
+                                                                         template.fechaModificacion,
+                                                                         template.autor, template.activo,
+                                                                         TemplateFieldEvent.of(field))
+    }
+}
+
+data class TemplateFieldEvent constructor(val id: UUID?,
+                                          val nombre: String?,
+                                          val tipo: TemplateField.FieldType?,
+                                          val valorDefault: String?) {
+    companion object {
+        @JvmStatic
+        fun of(field: TemplateField) = TemplateFieldEvent(field.id, field.nombre, field.tipo, field.valorDefault)
+    }
+}
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+data class DatasourceEvent constructor(val id: UUID?,
+                                       val nombre: String?,
+                                       val json: String?,
+                                       val blockly: String?,
+                                       val config: String?,
+                                       val configBlockly: String?,
+                                       val mapping: String?,
+                                       val fechaCreacion: LocalDate?,
+                                       val fechaModificacion: LocalDate?,
+                                       val autor: String?,
+                                       val activo: Boolean?,
+                                       val campo: DatasourceFieldEvent?) {
+    companion object {
+        @JvmStatic
+        fun of(datasource: Datasource) = DatasourceEvent(datasource.id, datasource.nombre, datasource.json,
+                                                         datasource.blockly, datasource.config,
+                                                         datasource.configBlockly, datasource.mapping,
+                                                         datasource.fechaCreacion, datasource.fechaModificacion,
+                                                         datasource.autor, datasource.activo, null)
+
+        /**
+         * The columns without the code (json, blockly, config, mapping), e.g., for the change log rows.
+         */
+        @JvmStatic
+        fun summaryOf(datasource: Datasource) = DatasourceEvent(datasource.id, datasource.nombre,
+                                                                null, null, null, null, null,
+                                                                datasource.fechaCreacion,
+                                                                datasource.fechaModificacion,
+                                                                datasource.autor, datasource.activo, null)
+
+        @JvmStatic
+        fun of(datasource: Datasource, field: DatasourceField) = DatasourceEvent(datasource.id, datasource.nombre,
+                                                                                 null, null, null, null, null,
+                                                                                 datasource.fechaCreacion,
+                                                                                 datasource.fechaModificacion,
+                                                                                 datasource.autor,
+                                                                                 datasource.activo,
+                                                                                 DatasourceFieldEvent.of(field))
+    }
+}
+
+data class DatasourceFieldEvent constructor(val id: UUID?,
+                                            val nombre: String?,
+                                            val tipo: DatasourceField.FieldType?,
+                                            val validaciones: String?) {
+    companion object {
+        @JvmStatic
+        fun of(field: DatasourceField) = DatasourceFieldEvent(field.id, field.nombre, field.tipo, field.validaciones)
+    }
+}
+
+/**
+ * Summary of a bulk mutation (see TemplateBulkService): one event for all the rows that matched the filter.
+ */
+data class BulkChangeEvent constructor(val type: ParamType,
+                                       val filter: Any,
+                                       val count: Long)
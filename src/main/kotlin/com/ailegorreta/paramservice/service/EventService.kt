@@ -22,57 +22,88 @@
  */
 package com.ailegorreta.paramservice.service
 
-import com.ailegorreta.commons.event.*
+import com.ailegorreta.commons.event.EventType
 import com.ailegorreta.commons.utils.HasLogger
 import com.ailegorreta.paramservice.config.ServiceConfig
+import com.ailegorreta.paramservice.domain.EventOutbox
+import com.ailegorreta.paramservice.domain.EventOutboxRepository
 import com.ailegorreta.resourceserver.utils.UserContext
-import com.fasterxml.jackson.databind.JsonNode
 import com.fasterxml.jackson.databind.ObjectMapper
-import org.springframework.cloud.stream.function.StreamBridge
+import com.fasterxml.jackson.databind.ObjectWriter
+import com.fasterxml.jackson.databind.SerializationFeature
+import jakarta.transaction.Transactional
 import org.springframework.stereotype.Service
+import java.io.StringWriter
 
 
 /**
  * EventService that sends events to the kafka machine.
  *
+ * The events are not sent inline: they are written to the event_outbox table in the transaction of the mutation
+ * and EventOutboxRelay sends them to Kafka in the background. So a slow broker does not stall the mutations and
+ * a rolled back mutation does not emit its event.
+ *
+ * The event body is written in one pass with a JsonGenerator, without the intermediate String and JsonNode tree.
+ * The Template and Datasource events are sent as projections (see EventPayloads.kt) so the lazy 'campos' are not
+ * initialized in the event path.
+ *
  *  @author rlh
  *  @project : param-service
  *  @date August 2023
  */
 @Service
-class EventService(private val streamBridge: StreamBridge,
+class EventService(private val eventOutboxRepository: EventOutboxRepository,
                    private val serviceConfig: ServiceConfig,
-                   private val mapper: ObjectMapper): HasLogger {
+                   mapper: ObjectMapper): HasLogger {
+
+    private val bodyWriter = mapper.writer().without(SerializationFeature.INDENT_OUTPUT)
 
     private val coreName = "param" // By default, in this microservice all events go to
     // go to the 'iam' event channel Is other channels needed
     // this attribute will not be a constant value
 
     /**
-     * Send the event directly to a Kafka microservice
+     * Stores the event in the outbox, it is sent to Kafka after the transaction commits
      */
+    @Transactional
     fun sendEvent(correlationId: String? = UserContext.getCorrelationId(),
                   userName: String,
                   eventName: String,
-                  value: Any): EventDTO {
-        val eventBody = mapper.readTree(mapper.writeValueAsString(value))
-        val parentNode = mapper.createObjectNode()
+                  value: Any): EventOutbox {
+        logger.debug("Send event $eventName")
+
+        return eventOutboxRepository.save(EventOutbox.of(correlationId ?: "NA",
+                                                         EventType.DB_STORE,
+                                                         userName,
+                                                         eventName,
+                                                         serviceConfig.appName!!,
+                                                         coreName,
+                                                         eventBody(bodyWriter, value, serviceConfig.instanceId)))
+    }
 
-        // Add the permit where notification will be sent
-        parentNode.put("notificaFacultad", "NOTIFICA_PARAM")
-        parentNode.set<JsonNode>("datos", eventBody!!)
-        logger.debug("Send event $value")
+    companion object {
+        private const val NOTIFICA_FACULTAD = "NOTIFICA_PARAM"  // the permit where notification will be sent
 
-        var event = EventDTO(correlationId = correlationId ?: "NA",
-            eventType = EventType.DB_STORE,
-            username = userName,
-            eventName = eventName,
-            applicationName = serviceConfig.appName!!,
-            coreName = coreName,
-            eventBody = parentNode)
+        /**
+         * Writes {"notificaFacultad": .., "origen": instance, "datos": value} straight to the output text. The
+         * origen is the replica that made the change, RemoteParamChangeListener skips its own events.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun eventBody(writer: ObjectWriter, value: Any, origen: String? = null): String {
+            val out = StringWriter(256)
 
-        streamBridge.send("producer-out-0", event)
+            writer.createGenerator(out).use { generator ->
+                generator.writeStartObject()
+                generator.writeStringField("notificaFacultad", NOTIFICA_FACULTAD)
+                if (origen != null)
+                    generator.writeStringField("origen", origen)
+                generator.writeFieldName("datos")
+                writer.writeValue(generator, value)
+                generator.writeEndObject()
+            }
 
-        return event
+            return out.toString()
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,14 @@
+-- Append-only change log. Every mutation of a parameter writes one row inside the same transaction, so the
+-- sequence (seq) is the version the clients use to ask for the changes they are missing (delta-sync).
+CREATE TABLE IF NOT EXISTS param_changes (
+    seq bigserial,
+    param_type varchar(20) NOT NULL,
+    entity_id UUID,
+    name varchar(100),
+    event_name varchar(40) NOT NULL,
+    deleted boolean NOT NULL,
+    author varchar(40),
+    change_date timestamp NOT NULL,
+    payload text,
+    PRIMARY KEY(seq)
+);
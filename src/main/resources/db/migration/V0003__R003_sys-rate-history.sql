@@ -0,0 +1,16 @@
+-- Effective-dated history of the system rates. sys_rates keeps the current value, this table keeps every value
+-- with the date since it is effective, so the reprocessing jobs can read the rate as of a past date.
+CREATE TABLE IF NOT EXISTS sys_rate_history (
+    id UUID DEFAULT uuid_generate_v4(),
+    name varchar(100) NOT NULL,
+    rate numeric NOT NULL,
+    effective_date date NOT NULL,
+    author varchar(40),
+    PRIMARY KEY(id),
+    UNIQUE (name, effective_date)
+);
+
+-- The current rates are effective since today: their previous values are unknown
+INSERT INTO sys_rate_history (name, rate, effective_date, author)
+    SELECT name, rate, CURRENT_DATE, 'MIGRATION' FROM sys_rates
+    ON CONFLICT DO NOTHING;
@@ -0,0 +1,32 @@
+-- The large columns (json, blockly, config and mapping code) are moved out of the templates and data_sources rows
+-- to side tables with the same primary key. Listings and filters now read only the small rows, the contents are
+-- read lazily when they are used.
+CREATE TABLE IF NOT EXISTS template_contents (
+    id_template UUID NOT NULL,
+    json_code varchar(1024),
+    blockly_blocks varchar(5120),
+    PRIMARY KEY(id_template),
+    FOREIGN KEY (id_template) REFERENCES templates(id) ON DELETE CASCADE
+);
+
+INSERT INTO template_contents (id_template, json_code, blockly_blocks)
+    SELECT id, json_code, blockly_blocks FROM templates;
+
+ALTER TABLE templates DROP COLUMN json_code, DROP COLUMN blockly_blocks;
+
+CREATE TABLE IF NOT EXISTS data_source_contents (
+    id_data_source UUID NOT NULL,
+    json_code varchar(3072),
+    blockly_block varchar(20480),
+    config_code varchar(2048),
+    config_blockly_block varchar(5120),
+    mapping varchar(1024),
+    PRIMARY KEY(id_data_source),
+    FOREIGN KEY (id_data_source) REFERENCES data_sources(id) ON DELETE CASCADE
+);
+
+INSERT INTO data_source_contents (id_data_source, json_code, blockly_block, config_code, config_blockly_block, mapping)
+    SELECT id, json_code, blockly_block, config_code, config_blockly_block, mapping FROM data_sources;
+
+ALTER TABLE data_sources DROP COLUMN json_code, DROP COLUMN blockly_block, DROP COLUMN config_code,
+                         DROP COLUMN config_blockly_block, DROP COLUMN mapping;
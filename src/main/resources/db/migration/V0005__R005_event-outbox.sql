@@ -0,0 +1,14 @@
+-- Transactional outbox: EventService writes the audit events here in the same transaction as the parameter change,
+-- and EventOutboxRelay sends them to Kafka in batches. A rolled back mutation never emits its event.
+CREATE TABLE IF NOT EXISTS event_outbox (
+    id bigserial,
+    correlation_id varchar(100),
+    event_type varchar(20) NOT NULL,
+    username varchar(40),
+    event_name varchar(60) NOT NULL,
+    application_name varchar(60),
+    core_name varchar(20),
+    event_body text NOT NULL,
+    creation_date timestamp NOT NULL,
+    PRIMARY KEY(id)
+);
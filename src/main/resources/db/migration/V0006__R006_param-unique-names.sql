@@ -0,0 +1,29 @@
+-- The rate names and the system dates (except FESTIVO, one row per holiday) are unique. Until now it was only
+-- checked by the services with a read before the insert, so concurrent inserts could duplicate them.
+
+-- Keep one row of any duplicate that already exists. The discarded rows are copied first to
+-- sys_rates_discarded/sys_dates_discarded, to be reviewed (and dropped) by hand.
+CREATE TABLE IF NOT EXISTS sys_rates_discarded AS
+    SELECT a.*, CURRENT_TIMESTAMP AS discarded_at FROM sys_rates a
+    WHERE EXISTS (SELECT 1 FROM sys_rates b WHERE a.name = b.name AND a.ctid > b.ctid);
+
+CREATE TABLE IF NOT EXISTS sys_dates_discarded AS
+    SELECT a.*, CURRENT_TIMESTAMP AS discarded_at FROM sys_dates a
+    WHERE a.name <> 'FESTIVO' AND
+          EXISTS (SELECT 1 FROM sys_dates b WHERE a.name = b.name AND a.ctid > b.ctid);
+
+DO $$
+BEGIN
+    RAISE NOTICE 'Duplicated rows copied to sys_rates_discarded: %, to sys_dates_discarded: %',
+                 (SELECT count(*) FROM sys_rates_discarded), (SELECT count(*) FROM sys_dates_discarded);
+END $$;
+
+DELETE FROM sys_rates a USING sys_rates b
+    WHERE a.name = b.name AND a.ctid > b.ctid;
+
+DELETE FROM sys_dates a USING sys_dates b
+    WHERE a.name = b.name AND a.name <> 'FESTIVO' AND a.ctid > b.ctid;
+
+CREATE UNIQUE INDEX IF NOT EXISTS sys_rates_name_uk ON sys_rates (name);
+
+CREATE UNIQUE INDEX IF NOT EXISTS sys_dates_name_uk ON sys_dates (name) WHERE name <> 'FESTIVO';
@@ -0,0 +1,11 @@
+-- Optimistic locking: every update increments the version of the row and the conditional updates are only
+-- applied if the version did not change since the client read it.
+ALTER TABLE sys_dates ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
+
+ALTER TABLE sys_rates ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
+
+ALTER TABLE document_types ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
+
+ALTER TABLE templates ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
+
+ALTER TABLE data_sources ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
@@ -0,0 +1,6 @@
+-- Keyset pagination of templates and datasources: the pages are read in (modification_date, id) descending order
+-- starting after the cursor of the previous page, so every page is an index range scan of 'first' rows no matter
+-- how deep it is.
+CREATE INDEX IF NOT EXISTS templates_modification_id_idx ON templates (modification_date DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS data_sources_modification_id_idx ON data_sources (modification_date DESC, id DESC);
@@ -0,0 +1,19 @@
+-- The document type names are unique. Until now it was only checked by DocumentTypeService with a read before
+-- the insert, so concurrent inserts could duplicate them.
+
+-- Keep one row of any duplicate that already exists. The discarded rows are copied first to
+-- document_types_discarded, to be reviewed (and dropped) by hand.
+CREATE TABLE IF NOT EXISTS document_types_discarded AS
+    SELECT a.*, CURRENT_TIMESTAMP AS discarded_at FROM document_types a
+    WHERE EXISTS (SELECT 1 FROM document_types b WHERE a.name = b.name AND a.ctid > b.ctid);
+
+DO $$
+BEGIN
+    RAISE NOTICE 'Duplicated rows copied to document_types_discarded: %',
+                 (SELECT count(*) FROM document_types_discarded);
+END $$;
+
+DELETE FROM document_types a USING document_types b
+    WHERE a.name = b.name AND a.ctid > b.ctid;
+
+CREATE UNIQUE INDEX IF NOT EXISTS document_types_name_uk ON document_types (name);
@@ -0,0 +1,6 @@
+-- Id of the template/datasource in the environment it was imported from (NDJSON import, see
+-- CatalogTransferService). The imported rows get new ids, the exported one is kept here so importing the same file
+-- again skips the rows that were already imported.
+ALTER TABLE templates ADD COLUMN IF NOT EXISTS source_id UUID;
+
+ALTER TABLE data_sources ADD COLUMN IF NOT EXISTS source_id UUID;
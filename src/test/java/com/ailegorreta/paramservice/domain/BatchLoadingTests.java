@@ -0,0 +1,189 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  BatchLoadingTests.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.domain;
+
+import com.ailegorreta.paramservice.EnableTestContainers;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.graphql.tester.AutoConfigureGraphQlTester;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.graphql.test.tester.GraphQlTester;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the GraphQL batch loaders (FieldBatchController) remove the N+1 SELECTs: the number of
+ * statements of a templates query with campos and their back-reference must not grow with the number of
+ * templates returned.
+ *
+ * The statements (and collection loads) are counted with the Hibernate statistics.
+ *
+ * @project param-service
+ * @autho: rlh
+ * @date: August 2023
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnableTestContainers
+@ActiveProfiles("integration-tests")
+@DirtiesContext
+@AutoConfigureGraphQlTester
+public class BatchLoadingTests {
+
+    @MockBean
+    private StreamBridge streamBridge;
+    @MockBean
+    private JwtDecoder jwtDecoder;
+
+    @Autowired
+    private GraphQlTester graphQlTester;
+    @Autowired
+    private TemplateRepository templateRepository;
+    @Autowired
+    private TemplateFieldRepository templateFieldRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    void statementsDoNotGrowWithTheResult() {
+        addTemplates("BATCH-SMALL", 2);
+        addTemplates("BATCH-LARGE", 20);
+
+        assertThat(countStatements("BATCH-LARGE", 20)).isEqualTo(countStatements("BATCH-SMALL", 2));
+    }
+
+    /**
+     * Updating one field goes directly to template_fields: the fields of the template are not loaded and the
+     * other templates stay in the second-level cache.
+     */
+    @Test
+    void updateFieldDoesNotLoadTheFields() {
+        addTemplates("BATCH-FIELD", 1);
+        addTemplates("BATCH-OTHER", 1);
+
+        var template = templateRepository.findTemplateByNombre("BATCH-FIELD");
+        var otherId = templateRepository.findTemplateByNombre("BATCH-OTHER").getId();
+
+        templateRepository.findById(otherId);       // cached
+        var fieldId = templateFieldRepository.findByTemplateIdIn(List.of(template.getId())).get(0).getId();
+        String mutationTemplateField = """
+                    mutation updTemplateField($id: ID!, $fieldId: ID) {
+                      updateTemplateField(id: $id, templateFieldInput: { id: $fieldId nombre: "renombrado"
+                                                                         tipo: Entero userModify: "TEST" }) {
+                           id
+                           nombre
+                      }
+                    }
+                """;
+
+        statistics.clear();
+        graphQlTester.document(mutationTemplateField)
+                     .variable("id", template.getId())
+                     .variable("fieldId", fieldId)
+                     .execute()
+                     .path("data.updateTemplateField.nombre")
+                     .entity(String.class)
+                     .isEqualTo("renombrado");
+
+        assertThat(statistics.getCollectionLoadCount()).isZero();
+        assertThat(entityManagerFactory.getCache().contains(Template.class, otherId)).isTrue();
+        assertThat(templateFieldRepository.findById(fieldId)).get()
+                                                             .extracting(TemplateField::getNombre)
+                                                             .isEqualTo("renombrado");
+    }
+
+    private long countStatements(String nombre, int expected) {
+        String queryTemplates = """
+                    query getTemplates($nombre: String) {
+                      templates(nombre: $nombre) {
+                           nombre
+                           campos {
+                              nombre
+                              template {
+                                  nombre
+                              }
+                           }
+                      }
+                    }
+                """;
+
+        statistics.clear();
+        graphQlTester.document(queryTemplates)
+                     .variable("nombre", nombre)
+                     .execute()
+                     .path("data.templates[*].campos[*].template.nombre")
+                     .entityList(String.class)
+                     .hasSize(expected * 3);
+
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void addTemplates(String nombre, int count) {
+        var templates = new ArrayList<Template>();
+
+        for (int i = 0; i < count; i++) {
+            var template = Template.builder()
+                                   .nombre(nombre)
+                                   .fileRepo("/test")
+                                   .destino(Template.DestinoType.Email)
+                                   .json("")
+                                   .blockly("")
+                                   .fechaCreacion(LocalDate.now())
+                                   .fechaModificacion(LocalDate.now())
+                                   .autor("TEST")
+                                   .activo(true)
+                                   .build();
+
+            for (int j = 0; j < 3; j++)
+                template.getCampos().add(TemplateField.builder()
+                                                      .template(template)
+                                                      .nombre("campo" + j)
+                                                      .tipo(TemplateField.FieldType.Texto)
+                                                      .build());
+            templates.add(template);
+        }
+        templateRepository.saveAll(templates);
+    }
+}
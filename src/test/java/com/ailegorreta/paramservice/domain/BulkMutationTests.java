@@ -0,0 +1,151 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  BulkMutationTests.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.domain;
+
+import com.ailegorreta.paramservice.EnableTestContainers;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.graphql.tester.AutoConfigureGraphQlTester;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.graphql.test.tester.GraphQlTester;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the bulk mutations by filter update and delete the templates with one statement, without
+ * loading the entities.
+ *
+ * @project param-service
+ * @autho: rlh
+ * @date: August 2023
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnableTestContainers
+@ActiveProfiles("integration-tests")
+@DirtiesContext
+@AutoConfigureGraphQlTester
+public class BulkMutationTests {
+
+    @MockBean
+    private StreamBridge streamBridge;
+    @MockBean
+    private JwtDecoder jwtDecoder;
+
+    @Autowired
+    private GraphQlTester graphQlTester;
+    @Autowired
+    private TemplateRepository templateRepository;
+    @Autowired
+    private TemplateFieldRepository templateFieldRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    /**
+     * Bulk mutations: one statement for all the templates of the filter, the fields are deleted by the
+     * ON DELETE CASCADE foreign key (they are never loaded).
+     */
+    @Test
+    void bulkMutationsByFilter() {
+        addTemplates("BULK-TEMPLATE", 5);
+
+        var ids = templateRepository.findAll().stream()
+                                    .filter(template -> template.getNombre().equals("BULK-TEMPLATE"))
+                                    .map(Template::getId)
+                                    .toList();
+        String mutationDeactivate = """
+                    mutation deactivate {
+                      updateTemplatesActivo(filter: { nombre: "BULK-" activo: true }, activo: false, user: "TEST")
+                    }
+                """;
+        String mutationDelete = """
+                    mutation delete {
+                      deleteTemplates(filter: { nombre: "BULK-" activo: false }, user: "TEST")
+                    }
+                """;
+
+        statistics.clear();
+        graphQlTester.document(mutationDeactivate)
+                     .execute()
+                     .path("data.updateTemplatesActivo")
+                     .entity(Integer.class)
+                     .isEqualTo(5);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        graphQlTester.document(mutationDelete)
+                     .execute()
+                     .path("data.deleteTemplates")
+                     .entity(Integer.class)
+                     .isEqualTo(5);
+
+        assertThat(templateRepository.findAllById(ids)).isEmpty();
+        assertThat(templateFieldRepository.findByTemplateIdIn(ids)).isEmpty();
+    }
+
+    private void addTemplates(String nombre, int count) {
+        var templates = new ArrayList<Template>();
+
+        for (int i = 0; i < count; i++) {
+            var template = Template.builder()
+                                   .nombre(nombre)
+                                   .fileRepo("/test")
+                                   .destino(Template.DestinoType.Email)
+                                   .json("")
+                                   .blockly("")
+                                   .fechaCreacion(LocalDate.now())
+                                   .fechaModificacion(LocalDate.now())
+                                   .autor("TEST")
+                                   .activo(true)
+                                   .build();
+
+            for (int j = 0; j < 3; j++)
+                template.getCampos().add(TemplateField.builder()
+                                                      .template(template)
+                                                      .nombre("campo" + j)
+                                                      .tipo(TemplateField.FieldType.Texto)
+                                                      .build());
+            templates.add(template);
+        }
+        templateRepository.saveAll(templates);
+    }
+}
@@ -0,0 +1,166 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  CatalogTransferTests.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.domain;
+
+import com.ailegorreta.paramservice.EnableTestContainers;
+import com.ailegorreta.paramservice.service.CatalogTransferService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the streamed export and import of the templates catalog (CatalogTransferService): the export does
+ * not load entities and the import skips or rejects the rows that already exist.
+ *
+ * @project param-service
+ * @autho: rlh
+ * @date: August 2023
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnableTestContainers
+@ActiveProfiles("integration-tests")
+@DirtiesContext
+public class CatalogTransferTests {
+
+    @MockBean
+    private StreamBridge streamBridge;
+    @MockBean
+    private JwtDecoder jwtDecoder;
+
+    @Autowired
+    private TemplateRepository templateRepository;
+    @Autowired
+    private TemplateFieldRepository templateFieldRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private CatalogTransferService catalogTransferService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    void exportImportRoundTrip() throws IOException {
+        addTemplates("TRANSFER-TEMPLATE", 1);
+
+        var out = new ByteArrayOutputStream();
+
+        statistics.clear();
+        catalogTransferService.exportTemplates(out);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+
+        var line = out.toString(StandardCharsets.UTF_8).lines()
+                      .filter(json -> json.contains("\"nombre\":\"TRANSFER-TEMPLATE\""))
+                      .findFirst()
+                      .orElseThrow();
+        var bytes = line.getBytes(StandardCharsets.UTF_8);
+        var result = catalogTransferService.importTemplates(new ByteArrayInputStream(bytes), "TEST");
+
+        assertThat(result.getImported()).isZero();          // the id already exists
+        assertThat(result.getSkipped()).isEqualTo(1);
+
+        var ids = templateRepository.findAll().stream()
+                                    .filter(template -> template.getNombre().equals("TRANSFER-TEMPLATE"))
+                                    .map(Template::getId)
+                                    .toList();
+
+        templateRepository.deleteAllById(ids);
+        result = catalogTransferService.importTemplates(new ByteArrayInputStream(bytes), "TEST");
+        assertThat(result.getImported()).isEqualTo(1);
+
+        var imported = templateRepository.findAll().stream()
+                                         .filter(template -> template.getNombre().equals("TRANSFER-TEMPLATE"))
+                                         .map(Template::getId)
+                                         .toList();
+
+        assertThat(imported).hasSize(1).doesNotContainAnyElementsOf(ids);
+        assertThat(templateFieldRepository.findByTemplateIdIn(imported)).hasSize(3);
+
+        // re-importing the same file: the exported id is kept as the source id of the imported row
+        result = catalogTransferService.importTemplates(new ByteArrayInputStream(bytes), "TEST");
+        assertThat(result.getImported()).isZero();
+        assertThat(result.getSkipped()).isEqualTo(1);
+        assertThat(result.getRejected()).isEmpty();
+
+        // another id with the same name is reported
+        var other = line.replace(ids.get(0).toString(), UUID.randomUUID().toString()).getBytes(StandardCharsets.UTF_8);
+
+        result = catalogTransferService.importTemplates(new ByteArrayInputStream(other), "TEST");
+        assertThat(result.getImported()).isZero();
+        assertThat(result.getSkipped()).isZero();
+        assertThat(result.getRejected()).containsExactly("TRANSFER-TEMPLATE");
+    }
+
+    private void addTemplates(String nombre, int count) {
+        var templates = new ArrayList<Template>();
+
+        for (int i = 0; i < count; i++) {
+            var template = Template.builder()
+                                   .nombre(nombre)
+                                   .fileRepo("/test")
+                                   .destino(Template.DestinoType.Email)
+                                   .json("")
+                                   .blockly("")
+                                   .fechaCreacion(LocalDate.now())
+                                   .fechaModificacion(LocalDate.now())
+                                   .autor("TEST")
+                                   .activo(true)
+                                   .build();
+
+            for (int j = 0; j < 3; j++)
+                template.getCampos().add(TemplateField.builder()
+                                                      .template(template)
+                                                      .nombre("campo" + j)
+                                                      .tipo(TemplateField.FieldType.Texto)
+                                                      .build());
+            templates.add(template);
+        }
+        templateRepository.saveAll(templates);
+    }
+}
@@ -37,7 +37,10 @@ import org.springframework.kafka.test.context.EmbeddedKafka;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -100,6 +103,10 @@ public class GraphQLTests {
     private GraphQlTester graphQlTester;
     @Autowired
     private DocumentTypeRepository documentTypeRepository;
+    @Autowired
+    private SystemRateHistoryRepository systemRateHistoryRepository;
+    @Autowired
+    private SystemRateRepository systemRateRepository;
 
     /**
      * Validates database initialization. Just the GraphQL that utilizes cache-service
@@ -255,4 +262,383 @@ public class GraphQLTests {
         assertThat(mutatedDocumentType.getExpiration()).isEqualTo("2m");
     }
 
-}
\ No newline at end of file
+    /**
+     * Delta-sync: after a mutation the change must be in the change log with a sequence greater than
+     * the last sequence the client had.
+     */
+    @Test
+    void paramChangesSince() {
+        String queryParamChanges = """
+                    query getParamChanges($since: Long!) {
+                      paramChanges(since: $since, limit: 1000) {
+                           lastSequence
+                           hasMore
+                      }
+                    }
+                """;
+        Long lastSequence = graphQlTester.document(queryParamChanges)
+                                         .variable("since", 0L)
+                                         .execute()
+                                         .path("data.paramChanges.lastSequence")
+                                         .entity(Long.class)
+                                         .get();
+        String mutationSystemRate = """
+                    mutation addSysRate {
+                      addSystemRate(systemRateInput: { name: "MXN-JPY" rate: 8.25 userModify: "TEST"} ) {
+                            id
+                        }
+                    }
+                """;
+        graphQlTester.document(mutationSystemRate).execute().path("data.addSystemRate.id").hasValue();
+
+        String queryChanges = """
+                    query getParamChanges($since: Long!) {
+                      paramChanges(since: $since) {
+                           changes {
+                               sequence
+                               type
+                               name
+                               eventName
+                               deleted
+                           }
+                           lastSequence
+                       }
+                    }
+                """;
+        List<ParamChange> changes = graphQlTester.document(queryChanges)
+                                                 .variable("since", lastSequence)
+                                                 .execute()
+                                                 .path("data.paramChanges.changes[*]")
+                                                 .entityList(ParamChange.class)
+                                                 .get();
+
+        assertThat(changes).hasSize(1);
+        assertThat(changes.get(0).getSequence()).isGreaterThan(lastSequence);
+        assertThat(changes.get(0).getType()).isEqualTo(ParamType.SYSTEM_RATE);
+        assertThat(changes.get(0).getName()).isEqualTo("MXN-JPY");
+        assertThat(changes.get(0).getDeleted()).isFalse();
+    }
+
+    /**
+     * Subscribes to the system rate changes: the document type added first is filtered out and the new rate is
+     * pushed after the commit.
+     */
+    @Test
+    void parameterChangedSubscription() {
+        String subscription = """
+                    subscription onRates {
+                      parameterChanged(types: [SYSTEM_RATE]) {
+                           sequence
+                           type
+                           name
+                      }
+                    }
+                """;
+        String mutationDocumentType = """
+                    mutation addDocType {
+                      addDocumentType(documentTypeInput: { name: "SUBSCRIPTION-TEST" expiration: "1y"
+                                                           userModify: "TEST"} ) {
+                            id
+                        }
+                    }
+                """;
+        String mutationSystemRate = """
+                    mutation addSysRate {
+                      addSystemRate(systemRateInput: { name: "MXN-CHF" rate: 22.10 userModify: "TEST"} ) {
+                            id
+                        }
+                    }
+                """;
+        Flux<ParamChange> changes = graphQlTester.document(subscription)
+                                                 .executeSubscription()
+                                                 .toFlux("parameterChanged", ParamChange.class);
+
+        StepVerifier.create(changes.take(1))
+                    .then(() -> {
+                        graphQlTester.document(mutationDocumentType).execute().path("data.addDocumentType.id").hasValue();
+                        graphQlTester.document(mutationSystemRate).execute().path("data.addSystemRate.id").hasValue();
+                    })
+                    .assertNext(change -> {
+                        assertThat(change.getType()).isEqualTo(ParamType.SYSTEM_RATE);
+                        assertThat(change.getName()).isEqualTo("MXN-CHF");
+                    })
+                    .expectComplete()
+                    .verify(Duration.ofSeconds(10));
+    }
+
+    /**
+     * Updates a rate with two effective dates and reads them back with the as-of queries (single and batch)
+     */
+    @Test
+    void systemRateAsOf() {
+        String mutationSystemRate = """
+                    mutation addSysRate {
+                      addSystemRate(systemRateInput: { name: "UDI" rate: 7.80 effectiveDate: "2023-08-01" userModify: "TEST"} ) {
+                            id
+                        }
+                    }
+                """;
+        String id = graphQlTester.document(mutationSystemRate)
+                                 .execute()
+                                 .path("data.addSystemRate.id")
+                                 .entity(String.class)
+                                 .get();
+        String updateSystemRate = """
+                    mutation updSysRate {
+                      updateSystemRate(systemRateInput: { id:
+               """ + "\"" + id + "\"" + """
+                       name: "UDI" rate: 7.85 effectiveDate: "2023-08-15" userModify: "TEST"} ) {
+                            id
+                        }
+                    }
+                """;
+        graphQlTester.document(updateSystemRate).execute().path("data.updateSystemRate.id").hasValue();
+
+        String querySystemRateAsOf = """
+                    query getSysRateAsOf {
+                      systemRateAsOf(name: "UDI", day: "2023-08-10") {
+                           name
+                           rate
+                           effectiveDate
+                      }
+                    }
+                """;
+        SystemRateHistory systemRate = graphQlTester.document(querySystemRateAsOf)
+                                                    .execute()
+                                                    .path("data.systemRateAsOf")
+                                                    .entity(SystemRateHistory.class)
+                                                    .get();
+
+        assertThat(systemRate.getRate()).isEqualByComparingTo("7.80");
+
+        String querySystemRatesAsOf = """
+                    query getSysRatesAsOf {
+                      systemRatesAsOf(requests: [{ name: "UDI", day: "2023-08-15" },
+                                                 { name: "UDI", day: "2023-07-31" },
+                                                 { name: "UDI", day: "2023-08-20" }]) {
+                           rate
+                      }
+                    }
+                """;
+        List<SystemRateHistory> systemRates = graphQlTester.document(querySystemRatesAsOf)
+                                                           .execute()
+                                                           .path("data.systemRatesAsOf")
+                                                           .entityList(SystemRateHistory.class)
+                                                           .get();
+
+        assertThat(systemRates).hasSize(3);
+        assertThat(systemRates.get(0).getRate()).isEqualByComparingTo("7.85");
+        assertThat(systemRates.get(1)).isNull();
+        assertThat(systemRates.get(2).getRate()).isEqualByComparingTo("7.85");
+    }
+
+    /**
+     * Multi-get queries: one element per name in the request order, null for the names that do not exist.
+     */
+    @Test
+    void multiGetByNames() {
+        String query = """
+                    query getByNames {
+                      systemRatesByNames(names: ["MXN-YEN", "NO-EXISTE", "TIIF"]) {
+                           name
+                      }
+                      systemDatesByTypes(names: [HOY, FESTIVO]) {
+                           name
+                      }
+                      documentTypesByNames(names: ["NO-EXISTE", "Licencia"]) {
+                           name
+                      }
+                    }
+                """;
+        var response = graphQlTester.document(query).execute();
+        List<SystemRate> systemRates = response.path("data.systemRatesByNames")
+                                               .entityList(SystemRate.class)
+                                               .get();
+
+        assertThat(systemRates).hasSize(3);
+        assertThat(systemRates.get(0).getName()).isEqualTo("MXN-YEN");
+        assertThat(systemRates.get(1)).isNull();
+        assertThat(systemRates.get(2).getName()).isEqualTo("TIIF");
+
+        List<SystemDate> systemDates = response.path("data.systemDatesByTypes")
+                                               .entityList(SystemDate.class)
+                                               .get();
+
+        assertThat(systemDates).extracting(SystemDate::getName).containsExactly(DayType.HOY, DayType.FESTIVO);
+
+        List<DocumentType> documentTypes = response.path("data.documentTypesByNames")
+                                                   .entityList(DocumentType.class)
+                                                   .get();
+
+        assertThat(documentTypes).hasSize(2);
+        assertThat(documentTypes.get(0)).isNull();
+        assertThat(documentTypes.get(1).getName()).isEqualTo("Licencia");
+    }
+
+    /**
+     * Month-end batch: several rates and dates stored in one mutation (one transaction, one event).
+     */
+    @Test
+    void batchMutations() {
+        String mutationSystemRates = """
+                    mutation addSysRates {
+                      addSystemRates(systemRateInputs: [{ name: "BATCH-1" rate: 1.5 userModify: "TEST"},
+                                                        { name: "BATCH-2" rate: 2.5 userModify: "TEST"}] ) {
+                            id
+                            name
+                            rate
+                        }
+                    }
+                """;
+        List<SystemRate> systemRates = graphQlTester.document(mutationSystemRates)
+                                                    .execute()
+                                                    .path("data.addSystemRates")
+                                                    .entityList(SystemRate.class)
+                                                    .get();
+
+        assertThat(systemRates).extracting(SystemRate::getName).containsExactly("BATCH-1", "BATCH-2");
+        assertThat(systemRates).allMatch(systemRate -> systemRate.getId() != null);
+        // the history of the batch is written with one JDBC batch
+        assertThat(systemRateHistoryRepository.findByNameOrderByEffectiveDateAsc("BATCH-2"))
+                  .singleElement()
+                  .satisfies(history -> assertThat(history.getRate()).isEqualByComparingTo("2.5"));
+
+        String mutationSystemDates = """
+                    mutation upsSysDates {
+                      upsertSystemDates(systemDateInputs: [{ name: FESTIVO day: "2023-12-25" userModify: "TEST" },
+                                                           { name: FESTIVO day: "2023-12-25" userModify: "TEST" }] ) {
+                            id
+                            name
+                            day
+                        }
+                    }
+                """;
+        List<SystemDate> systemDates = graphQlTester.document(mutationSystemDates)
+                                                    .execute()
+                                                    .path("data.upsertSystemDates")
+                                                    .entityList(SystemDate.class)
+                                                    .get();
+
+        assertThat(systemDates).hasSize(2);
+        assertThat(systemDates.get(0).getId()).isNotNull().isEqualTo(systemDates.get(1).getId());
+    }
+
+    /**
+     * The rate name is validated by the unique index with the insert itself: the second insert must fail.
+     */
+    @Test
+    void addDuplicateSystemRate() {
+        String mutationSystemRate = """
+                    mutation addSysRate {
+                      addSystemRate(systemRateInput: { name: "DUPLICADA" rate: 1.0 userModify: "TEST"} ) {
+                            id
+                        }
+                    }
+                """;
+
+        graphQlTester.document(mutationSystemRate).execute().path("data.addSystemRate.id").hasValue();
+        graphQlTester.document(mutationSystemRate)
+                     .execute()
+                     .errors()
+                     .satisfy(errors -> assertThat(errors).isNotEmpty());
+    }
+
+    /**
+     * The document type name is validated by the unique index with the insert itself: the second insert must fail.
+     */
+    @Test
+    void addDuplicateDocumentType() {
+        String mutationDocumentType = """
+                    mutation addDocType {
+                      addDocumentType(documentTypeInput: { name: "DUPLICADO" expiration: "1y" userModify: "TEST"} ) {
+                            id
+                        }
+                    }
+                """;
+
+        graphQlTester.document(mutationDocumentType).execute().path("data.addDocumentType.id").hasValue();
+        graphQlTester.document(mutationDocumentType)
+                     .execute()
+                     .errors()
+                     .satisfy(errors -> assertThat(errors).isNotEmpty());
+    }
+
+    /**
+     * Conditional update: the first update with the version read succeeds, the second one with the same (now
+     * stale) version must return a VERSION_CONFLICT error.
+     */
+    @Test
+    void updateDocumentTypeIfVersion() {
+        DocumentType documentType = documentTypeRepository.findDocumentTypeByName("Contrato");
+
+        assertThat(documentType).isNotNull();
+
+        String mutationDocumentType = """
+                    mutation updDocType {
+                      updateDocumentType(documentTypeInput: { id:
+               """ + "\"" + documentType.getId() + "\"" + """
+                    name: "Contrato" expiration: "12m" userModify: "TEST" version:
+               """ + documentType.getVersion() + """
+                    } ) {
+                            id
+                            expiration
+                            version
+                        }
+                    }
+                """;
+
+        graphQlTester.document(mutationDocumentType)
+                     .execute()
+                     .path("data.updateDocumentType.version")
+                     .entity(Long.class)
+                     .isEqualTo(documentType.getVersion() + 1);
+        graphQlTester.document(mutationDocumentType)
+                     .execute()
+                     .errors()
+                     .satisfy(errors -> assertThat(errors).anyMatch(error ->
+                                             "VERSION_CONFLICT".equals(error.getExtensions().get("code"))));
+    }
+
+    /**
+     * Batch conditional update: a stale version in any row of updateSystemRates must return a VERSION_CONFLICT
+     * error and store none of the rates.
+     */
+    @Test
+    void updateSystemRatesIfVersion() {
+        String mutationAdd = """
+                    mutation addSysRates {
+                      addSystemRates(systemRateInputs: [{ name: "VERSION-1" rate: 1.0 userModify: "TEST"},
+                                                        { name: "VERSION-2" rate: 2.0 userModify: "TEST"}] ) {
+                            id
+                            name
+                            rate
+                            version
+                        }
+                    }
+                """;
+        List<SystemRate> systemRates = graphQlTester.document(mutationAdd)
+                                                    .execute()
+                                                    .path("data.addSystemRates")
+                                                    .entityList(SystemRate.class)
+                                                    .get();
+        String mutationUpdate = """
+                    mutation updSysRates {
+                      updateSystemRates(systemRateInputs: [{ id: "%s" name: "VERSION-1" rate: 1.5 userModify: "TEST"
+                                                             version: %d },
+                                                           { id: "%s" name: "VERSION-2" rate: 2.5 userModify: "TEST"
+                                                             version: %d }] ) {
+                            id
+                        }
+                    }
+                """.formatted(systemRates.get(0).getId(), systemRates.get(0).getVersion(),
+                              systemRates.get(1).getId(), systemRates.get(1).getVersion() + 1);
+
+        graphQlTester.document(mutationUpdate)
+                     .execute()
+                     .errors()
+                     .satisfy(errors -> assertThat(errors).anyMatch(error ->
+                                             "VERSION_CONFLICT".equals(error.getExtensions().get("code"))));
+        assertThat(systemRateRepository.findById(systemRates.get(0).getId()).orElseThrow().getRate())
+                  .isEqualByComparingTo("1.0");
+    }
+}
@@ -0,0 +1,135 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  KeysetPaginationTests.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.domain;
+
+import com.ailegorreta.paramservice.EnableTestContainers;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.graphql.tester.AutoConfigureGraphQlTester;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.graphql.test.tester.GraphQlTester;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the keyset (cursor) pagination of the templates connection: all the rows are returned once even
+ * when the modification date is the same.
+ *
+ * @project param-service
+ * @autho: rlh
+ * @date: August 2023
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnableTestContainers
+@ActiveProfiles("integration-tests")
+@DirtiesContext
+@AutoConfigureGraphQlTester
+public class KeysetPaginationTests {
+
+    @MockBean
+    private StreamBridge streamBridge;
+    @MockBean
+    private JwtDecoder jwtDecoder;
+
+    @Autowired
+    private GraphQlTester graphQlTester;
+    @Autowired
+    private TemplateRepository templateRepository;
+
+    @Test
+    void keysetPagination() {
+        addTemplates("KEYSET-TEMPLATE", 5);
+
+        String queryPage = """
+                    query getPage($after: String) {
+                      templatesConnection(nombre: "KEYSET-TEMPLATE", first: 2, after: $after) {
+                           edges {
+                              cursor
+                              node {
+                                  id
+                              }
+                           }
+                           pageInfo {
+                              hasNextPage
+                              endCursor
+                           }
+                      }
+                    }
+                """;
+        var ids = new ArrayList<String>();
+        String after = null;
+        boolean hasNextPage = true;
+        int pages = 0;
+
+        while (hasNextPage) {
+            var response = graphQlTester.document(queryPage)
+                                        .variable("after", after)
+                                        .execute();
+
+            ids.addAll(response.path("data.templatesConnection.edges[*].node.id").entityList(String.class).get());
+            hasNextPage = response.path("data.templatesConnection.pageInfo.hasNextPage").entity(Boolean.class).get();
+            after = response.path("data.templatesConnection.pageInfo.endCursor").entity(String.class).get();
+            pages++;
+        }
+
+        assertThat(pages).isEqualTo(3);          // all rows have the same modification date, the id breaks the tie
+        assertThat(ids).hasSize(5).doesNotHaveDuplicates();
+    }
+
+    private void addTemplates(String nombre, int count) {
+        var templates = new ArrayList<Template>();
+
+        for (int i = 0; i < count; i++) {
+            var template = Template.builder()
+                                   .nombre(nombre)
+                                   .fileRepo("/test")
+                                   .destino(Template.DestinoType.Email)
+                                   .json("")
+                                   .blockly("")
+                                   .fechaCreacion(LocalDate.now())
+                                   .fechaModificacion(LocalDate.now())
+                                   .autor("TEST")
+                                   .activo(true)
+                                   .build();
+
+            for (int j = 0; j < 3; j++)
+                template.getCampos().add(TemplateField.builder()
+                                                      .template(template)
+                                                      .nombre("campo" + j)
+                                                      .tipo(TemplateField.FieldType.Texto)
+                                                      .build());
+            templates.add(template);
+        }
+        templateRepository.saveAll(templates);
+    }
+}
@@ -0,0 +1,201 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamChangeLogTests.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.domain;
+
+import com.ailegorreta.paramservice.EnableTestContainers;
+import com.ailegorreta.paramservice.service.ParamChangeLogService;
+import com.ailegorreta.paramservice.service.ParamChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the change log sequences are assigned in commit order: while a mutation that already wrote its log
+ * row has not committed, a concurrent mutation waits before taking its sequence, so a client that reads
+ * paramChanges(since) in the meantime can never skip the first change. The log rows are written when the
+ * mutation commits, so a mutation that is still running does not block the others.
+ *
+ * @project param-service
+ * @autho: rlh
+ * @date: August 2023
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnableTestContainers
+@ActiveProfiles("integration-tests")
+@DirtiesContext
+public class ParamChangeLogTests {
+
+    @MockBean
+    private StreamBridge streamBridge;
+    @MockBean
+    private JwtDecoder jwtDecoder;
+
+    @Autowired
+    private ParamChangeLogService paramChangeLogService;
+    @Autowired
+    private ParamChangeRepository paramChangeRepository;
+    @Autowired
+    private TemplateRepository templateRepository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void sequencesInCommitOrder() throws Exception {
+        var last = paramChangeRepository.findTopByOrderBySequenceDesc();
+        var since = (last == null) ? 0L : last.getSequence();
+        var firstWritten = new CountDownLatch(1);
+        var commitFirst = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(2);
+
+        try {
+            var first = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                eventPublisher.publishEvent(change("LOG-FIRST"));
+                // runs after the log listener, before the commit
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void beforeCommit(boolean readOnly) {
+                        firstWritten.countDown();
+                        await(commitFirst);
+                    }
+                });
+            }));
+
+            assertThat(firstWritten.await(10, TimeUnit.SECONDS)).isTrue();
+
+            var second = executor.submit(() -> transactionTemplate.executeWithoutResult(status ->
+                                                   eventPublisher.publishEvent(change("LOG-SECOND"))));
+
+            Thread.sleep(500);
+            assertThat(second.isDone()).isFalse();          // waiting for the log lock
+            assertThat(paramChangeLogService.changesSince(since, 10).getChanges()).isEmpty();
+
+            commitFirst.countDown();
+            first.get(10, TimeUnit.SECONDS);
+            second.get(10, TimeUnit.SECONDS);
+        } finally {
+            commitFirst.countDown();
+            executor.shutdownNow();
+        }
+        var changes = paramChangeLogService.changesSince(since, 10).getChanges();
+
+        assertThat(changes).extracting(ParamChange::getName).containsExactly("LOG-FIRST", "LOG-SECOND");
+        assertThat(changes.get(0).getSequence()).isLessThan(changes.get(1).getSequence());
+    }
+
+    /**
+     * A mutation that has not reached its commit has not taken the log lock: the others commit meanwhile.
+     */
+    @Test
+    void runningMutationsDoNotBlockTheLog() throws Exception {
+        var published = new CountDownLatch(1);
+        var finishFirst = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(2);
+
+        try {
+            var first = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                eventPublisher.publishEvent(change("LOG-RUNNING"));
+                published.countDown();
+                await(finishFirst);
+            }));
+
+            assertThat(published.await(10, TimeUnit.SECONDS)).isTrue();
+            executor.submit(() -> transactionTemplate.executeWithoutResult(status ->
+                                      eventPublisher.publishEvent(change("LOG-COMMITTED"))))
+                    .get(10, TimeUnit.SECONDS);
+
+            finishFirst.countDown();
+            first.get(10, TimeUnit.SECONDS);
+        } finally {
+            finishFirst.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Templates are logged without their code and campos.
+     */
+    @Test
+    void templatePayloadWithoutCodeNorCampos() {
+        var template = Template.builder()
+                               .nombre("LOG-TEMPLATE")
+                               .fileRepo("/test")
+                               .destino(Template.DestinoType.Email)
+                               .json("{\"codigo\": true}")
+                               .blockly("<xml/>")
+                               .fechaCreacion(LocalDate.now())
+                               .fechaModificacion(LocalDate.now())
+                               .autor("TEST")
+                               .activo(true)
+                               .build();
+
+        template.getCampos().add(TemplateField.builder()
+                                              .template(template)
+                                              .nombre("campo")
+                                              .tipo(TemplateField.FieldType.Texto)
+                                              .build());
+        var id = templateRepository.save(template).getId();
+
+        transactionTemplate.executeWithoutResult(status ->
+                eventPublisher.publishEvent(ParamChangedEvent.saved(ParamType.TEMPLATE, "MODIFICA_TEMPLATE", "TEST",
+                                                                    templateRepository.findById(id).orElseThrow())));
+
+        var payload = paramChangeRepository.findTopByOrderBySequenceDesc().getPayload();
+
+        assertThat(payload).contains("LOG-TEMPLATE").doesNotContain("codigo", "xml", "campos");
+    }
+
+    private static ParamChangedEvent change(String name) {
+        return ParamChangedEvent.saved(ParamType.SYSTEM_RATE, "TEST", "TEST",
+                                       new SystemRate(UUID.randomUUID(), name, BigDecimal.ONE));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
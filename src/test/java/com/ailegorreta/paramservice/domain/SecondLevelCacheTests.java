@@ -0,0 +1,156 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  SecondLevelCacheTests.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.domain;
+
+import com.ailegorreta.paramservice.EnableTestContainers;
+import com.ailegorreta.paramservice.config.SecondLevelCacheConfig;
+import com.ailegorreta.paramservice.gql.types.TemplateFieldInput;
+import com.ailegorreta.paramservice.service.TemplateService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the Hibernate second-level cache of the templates and of their campos collection.
+ *
+ * @project param-service
+ * @autho: rlh
+ * @date: August 2023
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnableTestContainers
+@ActiveProfiles("integration-tests")
+@DirtiesContext
+public class SecondLevelCacheTests {
+
+    @MockBean
+    private StreamBridge streamBridge;
+    @MockBean
+    private JwtDecoder jwtDecoder;
+
+    @Autowired
+    private TemplateRepository templateRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private TemplateService templateService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    void secondLevelCache() {
+        addTemplates("L2-TEMPLATE", 1);
+
+        var id = templateRepository.findTemplateByNombre("L2-TEMPLATE").getId();
+
+        templateRepository.findById(id);
+        statistics.clear();
+        assertThat(templateRepository.findById(id)).isPresent();
+
+        assertThat(statistics.getDomainDataRegionStatistics(SecondLevelCacheConfig.TEMPLATES_REGION).getHitCount())
+                  .isPositive();
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    /**
+     * The campos cached in the second-level cache are evicted when a field is added or deleted by itself.
+     */
+    @Test
+    void secondLevelCacheEvictsTheCampos() {
+        addTemplates("L2-CAMPOS", 1);
+
+        var id = templateRepository.findTemplateByNombre("L2-CAMPOS").getId();
+
+        assertThat(campos(id)).hasSize(3);
+        assertThat(campos(id)).hasSize(3);          // from the cache
+
+        var field = templateService.addTemplateField(id, new TemplateFieldInput(null, "campo3", "Texto", null,
+                                                                                 "TEST"));
+
+        assertThat(campos(id)).hasSize(4).contains("campo3");
+
+        templateService.deleteTemplateField(id, field.getId(), "TEST");
+        assertThat(campos(id)).hasSize(3).doesNotContain("campo3");
+    }
+
+    private List<String> campos(UUID id) {
+        return transactionTemplate.execute(status -> templateRepository.findById(id).orElseThrow()
+                                                                       .getCampos().stream()
+                                                                       .map(TemplateField::getNombre)
+                                                                       .toList());
+    }
+
+    private void addTemplates(String nombre, int count) {
+        var templates = new ArrayList<Template>();
+
+        for (int i = 0; i < count; i++) {
+            var template = Template.builder()
+                                   .nombre(nombre)
+                                   .fileRepo("/test")
+                                   .destino(Template.DestinoType.Email)
+                                   .json("")
+                                   .blockly("")
+                                   .fechaCreacion(LocalDate.now())
+                                   .fechaModificacion(LocalDate.now())
+                                   .autor("TEST")
+                                   .activo(true)
+                                   .build();
+
+            for (int j = 0; j < 3; j++)
+                template.getCampos().add(TemplateField.builder()
+                                                      .template(template)
+                                                      .nombre("campo" + j)
+                                                      .tipo(TemplateField.FieldType.Texto)
+                                                      .build());
+            templates.add(template);
+        }
+        templateRepository.saveAll(templates);
+    }
+}
@@ -0,0 +1,117 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  PersistedQueryInterceptorTests.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.gql;
+
+import com.ailegorreta.paramservice.config.ServiceConfig;
+import graphql.ExecutionResultImpl;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.support.DefaultExecutionGraphQlResponse;
+import org.springframework.http.HttpHeaders;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the automatic persisted queries (PersistedQueryInterceptor): a hash is unknown until the client
+ * sends it with its document, after that the hash alone is executed with the registered document.
+ *
+ * @project param-service
+ * @autho: rlh
+ * @date: August 2023
+ */
+@ExtendWith(MockitoExtension.class)
+public class PersistedQueryInterceptorTests {
+
+    private static final String DOCUMENT = "query { templates { id nombre } }";
+
+    @Mock
+    private ServiceConfig serviceConfig;
+
+    private PersistedQueryInterceptor persistedQueryInterceptor;
+    private final List<String> executed = new ArrayList<>();
+    private final WebGraphQlInterceptor.Chain chain = request -> {
+        var executionInput = request.toExecutionInput();
+
+        executed.add(executionInput.getQuery());
+        return Mono.just(new WebGraphQlResponse(new DefaultExecutionGraphQlResponse(
+                            executionInput,
+                            ExecutionResultImpl.newExecutionResult().data(Map.of("templates", List.of())).build())));
+    };
+
+    @BeforeEach
+    void setUp() {
+        when(serviceConfig.getPersistedQueriesMaxSize()).thenReturn(100L);
+        persistedQueryInterceptor = new PersistedQueryInterceptor(serviceConfig, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void registersTheDocumentByHash() {
+        var hash = PersistedQueryInterceptor.sha256(DOCUMENT);
+
+        assertThat(errorOf(execute(PersistedQuerySupport.PERSISTED_QUERY_MARKER, hash)))
+                .isEqualTo(PersistedQueryInterceptor.PERSISTED_QUERY_NOT_FOUND);
+
+        execute(DOCUMENT, hash);
+        execute(PersistedQuerySupport.PERSISTED_QUERY_MARKER, hash);
+
+        assertThat(executed).containsExactly(DOCUMENT, DOCUMENT);
+    }
+
+    @Test
+    void rejectsAHashThatDoesNotMatch() {
+        var hash = PersistedQueryInterceptor.sha256("query { datasources { id } }");
+
+        assertThat(errorOf(execute(DOCUMENT, hash))).isEqualTo(PersistedQueryInterceptor.PERSISTED_QUERY_ID_INVALID);
+        assertThat(executed).isEmpty();
+    }
+
+    private WebGraphQlResponse execute(String document, String hash) {
+        var body = Map.<String, Object>of("query", document,
+                                          "extensions", Map.of("persistedQuery", Map.of("version", 1,
+                                                                                        "sha256Hash", hash)));
+        var request = new WebGraphQlRequest(URI.create("http://localhost/param/graphql"), new HttpHeaders(),
+                                            body, "1", Locale.getDefault());
+
+        return persistedQueryInterceptor.intercept(request, chain).block();
+    }
+
+    private static Object errorOf(WebGraphQlResponse response) {
+        return response.getErrors().get(0).getExtensions().get("classification");
+    }
+}
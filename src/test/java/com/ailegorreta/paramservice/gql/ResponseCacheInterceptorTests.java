@@ -0,0 +1,141 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ResponseCacheInterceptorTests.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.gql;
+
+import com.ailegorreta.paramservice.config.ServiceConfig;
+import com.ailegorreta.paramservice.domain.ParamType;
+import com.ailegorreta.paramservice.service.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.ExecutionResultImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.support.DefaultExecutionGraphQlResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the GraphQL ResponseCacheInterceptor: the chain (parsing, validation and execution) is called
+ * once per normalized query until a change of the type read evicts it.
+ *
+ * @project param-service
+ * @autho: rlh
+ * @date: August 2023
+ */
+@ExtendWith(MockitoExtension.class)
+public class ResponseCacheInterceptorTests {
+
+    @Mock
+    private ServiceConfig serviceConfig;
+
+    private ResponseCacheInterceptor responseCacheInterceptor;
+    private final AtomicInteger executions = new AtomicInteger();
+    private final WebGraphQlInterceptor.Chain chain = request -> {
+        executions.incrementAndGet();
+        return Mono.just(new WebGraphQlResponse(new DefaultExecutionGraphQlResponse(
+                            request.toExecutionInput(),
+                            ExecutionResultImpl.newExecutionResult().data(Map.of("templates", List.of())).build())));
+    };
+
+    @BeforeEach
+    void setUp() {
+        when(serviceConfig.getResponseCacheMaxSize()).thenReturn(DataSize.ofMegabytes(1));
+        when(serviceConfig.getResponseCacheExpireAfterWrite()).thenReturn(Duration.ofMinutes(10));
+        responseCacheInterceptor = new ResponseCacheInterceptor(serviceConfig, new ObjectMapper(),
+                                                                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void executesOnceUntilEvicted() {
+        execute("query { templates(nombre: \"A  B\") { id nombre } }");
+        execute("""
+                # same query
+                query {
+                    templates(nombre: "A  B") {
+                        id, nombre
+                    }
+                }
+                """);
+        assertThat(executions).hasValue(1);
+
+        execute("query { templates(nombre: \"A B\") { id nombre } }");      // the strings are not normalized
+        assertThat(executions).hasValue(2);
+
+        responseCacheInterceptor.evict(ParamType.DOCUMENT_TYPE);
+        execute("query { templates(nombre: \"A  B\") { id nombre } }");
+        assertThat(executions).hasValue(2);
+
+        responseCacheInterceptor.evict(ParamType.TEMPLATE);
+        execute("query { templates(nombre: \"A  B\") { id nombre } }");
+        assertThat(executions).hasValue(3);
+    }
+
+    @Test
+    void mutationsAreNotCached() {
+        execute("mutation { deleteTemplate(id: \"1\", user: \"TEST\") { id } }");
+        execute("mutation { deleteTemplate(id: \"1\", user: \"TEST\") { id } }");
+
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    void evictsAfterTheRebuilds() throws NoSuchMethodException {
+        var eviction = order(ResponseCacheInterceptor.class);
+
+        for (var rebuild : List.of(ParamSnapshotService.class, BusinessCalendarService.class,
+                                   SystemRateHistoryService.class))
+            assertThat(order(rebuild)).isLessThan(eviction);
+    }
+
+    private static int order(Class<?> listener) throws NoSuchMethodException {
+        var method = listener.getMethod("onParamChanged", ParamChangedEvent.class);
+
+        return AnnotationUtils.findAnnotation(method, Order.class).value();
+    }
+
+    private void execute(String document) {
+        var request = new WebGraphQlRequest(URI.create("http://localhost/param/graphql"), new HttpHeaders(),
+                                            Map.of("query", document), "1", Locale.getDefault());
+
+        responseCacheInterceptor.intercept(request, chain).block();
+    }
+}
@@ -0,0 +1,135 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  BusinessCalendarTests.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.paramservice.domain.*;
+import com.querydsl.core.types.Predicate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the BusinessCalendar bitsets and for the incremental updates done by BusinessCalendarService
+ * when a FESTIVO system date is added, moved or deleted.
+ *
+ * @project param-service
+ * @autho: rlh
+ * @date: August 2023
+ */
+@ExtendWith(MockitoExtension.class)
+public class BusinessCalendarTests {
+
+    private static final LocalDate REVOLUCION = LocalDate.of(2023, 11, 20);    // Monday
+    private static final LocalDate NAVIDAD = LocalDate.of(2023, 12, 25);       // Monday
+    private static final LocalDate ANO_NUEVO = LocalDate.of(2024, 1, 1);       // Monday
+
+    @Mock
+    private SystemDateRepository systemDateRepository;
+
+    @Test
+    void weekendsAndHolidays() {
+        var calendar = BusinessCalendar.of(List.of(REVOLUCION, NAVIDAD, ANO_NUEVO));
+
+        assertThat(calendar.isBusinessDay(LocalDate.of(2023, 11, 17))).isTrue();    // Friday
+        assertThat(calendar.isBusinessDay(LocalDate.of(2023, 11, 18))).isFalse();   // Saturday
+        assertThat(calendar.isBusinessDay(REVOLUCION)).isFalse();
+        assertThat(calendar.nextBusinessDay(LocalDate.of(2023, 11, 17))).isEqualTo(LocalDate.of(2023, 11, 21));
+        assertThat(calendar.previousBusinessDay(LocalDate.of(2023, 11, 21))).isEqualTo(LocalDate.of(2023, 11, 17));
+        assertThat(calendar.getHolidays()).isEqualTo(3);
+    }
+
+    @Test
+    void addBusinessDaysAcrossYears() {
+        var calendar = BusinessCalendar.of(List.of(NAVIDAD, ANO_NUEVO));
+
+        // Friday 22 + 3 business days: skips the weekend, the 25th, ..., Thursday 28
+        assertThat(calendar.addBusinessDays(LocalDate.of(2023, 12, 22), 3)).isEqualTo(LocalDate.of(2023, 12, 28));
+        // Friday 29 + 1 business day: skips the weekend and January 1st
+        assertThat(calendar.addBusinessDays(LocalDate.of(2023, 12, 29), 1)).isEqualTo(LocalDate.of(2024, 1, 2));
+        assertThat(calendar.addBusinessDays(LocalDate.of(2024, 1, 2), -1)).isEqualTo(LocalDate.of(2023, 12, 29));
+        assertThat(calendar.addBusinessDays(LocalDate.of(2023, 12, 23), 0)).isEqualTo(LocalDate.of(2023, 12, 23));
+        // a year without holidays uses the weekend template: 2025 has 261 weekdays
+        assertThat(calendar.businessDaysBetween(LocalDate.of(2024, 12, 31), LocalDate.of(2025, 12, 31))).isEqualTo(261);
+        assertThat(calendar.businessDaysBetween(LocalDate.of(2023, 12, 22), LocalDate.of(2024, 1, 2))).isEqualTo(5);
+        assertThat(calendar.businessDaysBetween(LocalDate.of(2024, 1, 2), LocalDate.of(2023, 12, 22))).isEqualTo(-5);
+    }
+
+    @Test
+    void holidayOnWeekendDoesNotChangeTheCalendar() {
+        var calendar = BusinessCalendar.of(List.of(LocalDate.of(2023, 9, 16)));        // Saturday
+
+        assertThat(calendar.getHolidays()).isZero();
+        assertThat(calendar.withoutHoliday(LocalDate.of(2023, 9, 16)).isBusinessDay(LocalDate.of(2023, 9, 16))).isFalse();
+    }
+
+    @Test
+    void addBusinessDaysIsBounded() {
+        var calendar = BusinessCalendar.of(List.of(NAVIDAD));
+
+        assertThat(calendar.addBusinessDays(NAVIDAD, BusinessCalendar.MAX_BUSINESS_DAYS)).isAfter(NAVIDAD);
+        assertThatThrownBy(() -> calendar.addBusinessDays(NAVIDAD, Integer.MAX_VALUE))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> calendar.addBusinessDays(NAVIDAD, -BusinessCalendar.MAX_BUSINESS_DAYS - 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> calendar.addBusinessDays(LocalDate.MAX.minusDays(10), 30))
+                .isInstanceOf(DateTimeException.class);
+        assertThatThrownBy(() -> calendar.addBusinessDays(LocalDate.MIN.plusDays(10), -30))
+                .isInstanceOf(DateTimeException.class);
+    }
+
+    @Test
+    void serviceUpdatesIncrementally() {
+        var navidad = new SystemDate(UUID.randomUUID(), DayType.FESTIVO, NAVIDAD);
+        var duplicated = new SystemDate(UUID.randomUUID(), DayType.FESTIVO, NAVIDAD);
+
+        when(systemDateRepository.findAll(any(Predicate.class))).thenReturn(List.of(navidad, duplicated));
+
+        var service = new BusinessCalendarService(systemDateRepository);
+
+        assertThat(service.calendar().isBusinessDay(NAVIDAD)).isFalse();
+        // the day is still a holiday while another FESTIVO row has it
+        service.onParamChanged(ParamChangedEvent.deleted(ParamType.SYSTEM_DATE, "ELIMINA_FECHA_SISTEMA", "TEST", duplicated));
+        assertThat(service.calendar().isBusinessDay(NAVIDAD)).isFalse();
+        // moving the holiday frees the previous day
+        navidad.setDay(REVOLUCION);
+        service.onParamChanged(ParamChangedEvent.saved(ParamType.SYSTEM_DATE, "MODIFICA_FECHA_SISTEMA", "TEST", navidad));
+        assertThat(service.calendar().isBusinessDay(NAVIDAD)).isTrue();
+        assertThat(service.calendar().isBusinessDay(REVOLUCION)).isFalse();
+        // a new FESTIVO row
+        service.onParamChanged(ParamChangedEvent.saved(ParamType.SYSTEM_DATE, "ANADE_FECHA_SISTEMA", "TEST",
+                                                       new SystemDate(UUID.randomUUID(), DayType.FESTIVO, ANO_NUEVO)));
+        assertThat(service.calendar().isBusinessDay(ANO_NUEVO)).isFalse();
+        assertThat(service.calendar().getHolidays()).isEqualTo(2);
+    }
+}
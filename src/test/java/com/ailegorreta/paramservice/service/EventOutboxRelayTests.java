@@ -0,0 +1,167 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  EventOutboxRelayTests.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.commons.event.EventType;
+import com.ailegorreta.paramservice.config.ServiceConfig;
+import com.ailegorreta.paramservice.domain.EventOutbox;
+import com.ailegorreta.paramservice.domain.EventOutboxRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the outbox relay: the events are deleted only after all the sends of the batch returned, a failed
+ * send rolls the batch back, the stored body is sent as JSON, and the lag, batch size and failure metrics.
+ *
+ * @project param-service
+ * @autho: rlh
+ * @date: August 2023
+ */
+@ExtendWith(MockitoExtension.class)
+public class EventOutboxRelayTests {
+
+    @Mock
+    private EventOutboxRepository eventOutboxRepository;
+    @Mock
+    private StreamBridge streamBridge;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private ServiceConfig serviceConfig;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private EventOutboxRelay eventOutboxRelay;
+
+    @BeforeEach
+    void setUp() {
+        when(serviceConfig.getOutboxBatchSize()).thenReturn(2);
+        eventOutboxRelay = new EventOutboxRelay(eventOutboxRepository, streamBridge, transactionManager,
+                                                serviceConfig, meterRegistry);
+    }
+
+    @Test
+    void sendsThenDeletes() {
+        var full = List.of(event(1L), event(2L));
+        var last = List.of(event(3L));
+
+        when(eventOutboxRepository.lockNextBatch(2)).thenReturn(full, last);
+        when(streamBridge.send(eq("producer-out-0"), any())).thenReturn(true);
+
+        eventOutboxRelay.relay();
+
+        var order = inOrder(eventOutboxRepository, transactionManager);
+
+        verify(streamBridge, times(3)).send(eq("producer-out-0"), any());
+        order.verify(eventOutboxRepository).deleteAllInBatch(full);
+        order.verify(transactionManager).commit(any());
+        order.verify(eventOutboxRepository).deleteAllInBatch(last);
+        order.verify(transactionManager).commit(any());
+        verify(transactionManager, never()).rollback(any());
+
+        assertThat(meterRegistry.get("param.outbox.lag").timer().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("param.outbox.batch.size").summary().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("param.outbox.batch.size").summary().totalAmount()).isEqualTo(3);
+        assertThat(meterRegistry.get("param.outbox.failures").counter().count()).isZero();
+    }
+
+    @Test
+    void sendsTheStoredBodyAsJson() throws Exception {
+        var payload = ArgumentCaptor.forClass(Object.class);
+
+        when(eventOutboxRepository.lockNextBatch(2)).thenReturn(List.of(event(7L)));
+        when(streamBridge.send(eq("producer-out-0"), payload.capture())).thenReturn(true);
+
+        eventOutboxRelay.relay();
+
+        var mapper = new ObjectMapper();
+        var message = mapper.readTree(mapper.writeValueAsString(payload.getValue()));
+
+        // the body is embedded as a JSON object, not as a string with the escaped JSON
+        assertThat(message.findValue("notificaFacultad").asText()).isEqualTo("NOTIFICA_PARAM");
+        assertThat(message.findValue("datos").get("id").asLong()).isEqualTo(7L);
+    }
+
+    @Test
+    void rollsBackWhenASendFails() {
+        when(eventOutboxRepository.lockNextBatch(2)).thenReturn(List.of(event(1L), event(2L)));
+        when(streamBridge.send(eq("producer-out-0"), any())).thenReturn(true)
+                                                             .thenThrow(new MessageDeliveryException("no ack"));
+
+        eventOutboxRelay.relay();
+
+        verify(eventOutboxRepository, never()).deleteAllInBatch(any());
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        assertThat(meterRegistry.get("param.outbox.failures").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("param.outbox.batch.size").summary().count()).isZero();
+    }
+
+    @Test
+    void rollsBackWhenAnEventIsNotAccepted() {
+        when(eventOutboxRepository.lockNextBatch(2)).thenReturn(List.of(event(1L)));
+        when(streamBridge.send(eq("producer-out-0"), any())).thenReturn(false);
+
+        eventOutboxRelay.relay();
+
+        verify(eventOutboxRepository, never()).deleteAllInBatch(any());
+        verify(transactionManager).rollback(any());
+        assertThat(meterRegistry.get("param.outbox.failures").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void emptyOutbox() {
+        when(eventOutboxRepository.lockNextBatch(2)).thenReturn(List.of());
+
+        eventOutboxRelay.relay();
+
+        verifyNoInteractions(streamBridge);
+        verify(eventOutboxRepository, never()).deleteAllInBatch(any());
+        assertThat(meterRegistry.get("param.outbox.batch.size").summary().count()).isZero();
+    }
+
+    private static EventOutbox event(Long id) {
+        var eventOutbox = EventOutbox.of("NA", EventType.DB_STORE, "TEST", "ANADE_NUEVO_TEMPLATE", "param-service",
+                                         "param", "{\"notificaFacultad\":\"NOTIFICA_PARAM\",\"datos\":{\"id\":"
+                                                  + id + "}}");
+
+        eventOutbox.setId(id);
+
+        return eventOutbox;
+    }
+}
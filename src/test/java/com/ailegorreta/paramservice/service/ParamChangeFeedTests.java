@@ -0,0 +1,113 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamChangeFeedTests.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.paramservice.config.ServiceConfig;
+import com.ailegorreta.paramservice.domain.ParamChange;
+import com.ailegorreta.paramservice.domain.ParamChangeRepository;
+import com.ailegorreta.paramservice.domain.ParamType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the ParamChangeFeed replay window used by the SSE streams. The change log repository is mocked,
+ * we just check when a resume point (Last-Event-ID) is served from the window and when from the change log.
+ *
+ * @project param-service
+ * @autho: rlh
+ * @date: August 2023
+ */
+@ExtendWith(MockitoExtension.class)
+public class ParamChangeFeedTests {
+
+    @Mock
+    private ParamChangeRepository paramChangeRepository;
+    @Mock
+    private ServiceConfig serviceConfig;
+
+    private ParamChangeFeed paramChangeFeed;
+
+    @BeforeEach
+    void setUp() {
+        when(serviceConfig.getSubscriptionBufferSize()).thenReturn(16);
+        when(serviceConfig.getSubscriptionReplaySize()).thenReturn(100);
+        when(paramChangeRepository.findTopByOrderBySequenceDesc()).thenReturn(change(10L, ParamType.SYSTEM_RATE));
+        paramChangeFeed = new ParamChangeFeed(paramChangeRepository, serviceConfig);
+        paramChangeFeed.onApplicationReady();
+    }
+
+    @Test
+    void resumesFromChangeLog() {
+        when(paramChangeRepository.findBySequenceGreaterThanOrderBySequenceAsc(eq(7L), any()))
+                .thenReturn(List.of(change(8L, ParamType.SYSTEM_RATE), change(9L, ParamType.DOCUMENT_TYPE),
+                                    change(10L, ParamType.SYSTEM_RATE)));
+        when(paramChangeRepository.findBySequenceGreaterThanOrderBySequenceAsc(eq(10L), any()))
+                .thenReturn(List.of(change(11L, ParamType.SYSTEM_RATE)));
+
+        StepVerifier.create(paramChangeFeed.changesAfter(7L, List.of(ParamType.SYSTEM_RATE), null)
+                                           .map(ParamChange::getSequence))
+                    .expectNext(8L, 10L)
+                    .then(() -> paramChangeFeed.onParamChanged(event()))
+                    .expectNext(11L)
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void resumesFromReplayWindow() {
+        when(paramChangeRepository.findBySequenceGreaterThanOrderBySequenceAsc(eq(10L), any()))
+                .thenReturn(List.of(change(11L, ParamType.SYSTEM_RATE), change(12L, ParamType.SYSTEM_RATE)));
+        paramChangeFeed.onParamChanged(event());
+
+        StepVerifier.create(paramChangeFeed.changesAfter(11L, null, null).map(ParamChange::getSequence))
+                    .expectNext(12L)
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(5));
+        StepVerifier.create(paramChangeFeed.changes(null, null).map(ParamChange::getSequence))
+                    .expectSubscription()
+                    .expectNoEvent(Duration.ofMillis(100))
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(5));
+        verify(paramChangeRepository, times(1)).findBySequenceGreaterThanOrderBySequenceAsc(anyLong(), any());
+    }
+
+    private static ParamChange change(Long sequence, ParamType type) {
+        return ParamChange.builder().sequence(sequence).type(type).name("TEST-" + sequence).build();
+    }
+
+    private static ParamChangedEvent event() {
+        return ParamChangedEvent.remote(ParamType.SYSTEM_RATE, "TEST", "TEST", List.of(), false);
+    }
+}
@@ -0,0 +1,277 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  ParamSnapshotServiceTests.java
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.service;
+
+import com.ailegorreta.paramservice.config.DataConfig;
+import com.ailegorreta.paramservice.config.ServiceConfig;
+import com.ailegorreta.paramservice.domain.*;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the disk snapshot: the binary file round trip, the degraded mode when the database is not
+ * available, the version taken from the change log and the templates updated by id. The repositories are mocked
+ * and the file is written in a temporary directory.
+ *
+ * @project param-service
+ * @autho: rlh
+ * @date: August 2023
+ */
+@ExtendWith(MockitoExtension.class)
+public class ParamSnapshotServiceTests {
+
+    @Mock
+    private SystemDateRepository systemDateRepository;
+    @Mock
+    private SystemRateRepository systemRateRepository;
+    @Mock
+    private DocumentTypeRepository documentTypeRepository;
+    @Mock
+    private TemplateRepository templateRepository;
+    @Mock
+    private DatasourceRepository datasourceRepository;
+    @Mock
+    private ParamChangeRepository paramChangeRepository;
+    @Mock
+    private ServiceConfig serviceConfig;
+    @Mock
+    private ObjectProvider<Flyway> flyway;
+
+    @TempDir
+    private Path directory;
+
+    private ParamSnapshotFile paramSnapshotFile;
+    private ParamSnapshotService paramSnapshotService;
+
+    private final SystemDate today = new SystemDate(UUID.randomUUID(), DayType.HOY, LocalDate.of(2023, 8, 15), 3L);
+    private final SystemRate rate = new SystemRate(UUID.randomUUID(), "MXN-DLR", new BigDecimal("17.0512"), 1L);
+    private final DocumentType documentType = new DocumentType(UUID.randomUUID(), "Credencial elector", "6m", null);
+    private final Template template = template();
+    private final Datasource datasource = datasource();
+
+    @BeforeEach
+    void setUp() {
+        when(serviceConfig.getSnapshotFile()).thenReturn(directory.resolve("param-snapshot.bin").toString());
+        paramSnapshotFile = new ParamSnapshotFile(serviceConfig);
+        paramSnapshotService = newParamSnapshotService();
+    }
+
+    @Test
+    void fileRoundTrip() throws Exception {
+        var snapshot = ParamSnapshot.of(7L, List.of(today), List.of(rate), List.of(documentType), List.of(template),
+                                        List.of(datasource));
+
+        paramSnapshotFile.save(snapshot);
+
+        var restored = paramSnapshotFile.load().orElseThrow();
+
+        assertThat(restored.isDegraded()).isTrue();
+        assertThat(restored.getVersion()).isEqualTo(7L);
+        assertThat(restored.getCreatedAt()).isEqualTo(snapshot.getCreatedAt().truncatedTo(ChronoUnit.MILLIS));
+        assertThat(restored.getSystemDate(DayType.HOY))
+                .extracting(SystemDate::getId, SystemDate::getDay, SystemDate::getVersion)
+                .containsExactly(today.getId(), today.getDay(), 3L);
+        assertThat(restored.getSystemRate("MXN-DLR"))
+                .extracting(SystemRate::getId, SystemRate::getRate, SystemRate::getVersion)
+                .containsExactly(rate.getId(), new BigDecimal("17.0512"), 1L);
+        assertThat(restored.getDocumentType("Credencial elector"))
+                .extracting(DocumentType::getId, DocumentType::getExpiration, DocumentType::getVersion)
+                .containsExactly(documentType.getId(), "6m", null);
+        assertThat(restored.getTemplates("Contrato"))
+                .singleElement()
+                .extracting(Template::getId, Template::getDestino, Template::getJson, Template::getBlockly,
+                            Template::getFechaModificacion, Template::getActivo, Template::getVersion)
+                .containsExactly(template.getId(), Template.DestinoType.Email, "{\"a\": 1}", "<xml/>",
+                                 LocalDate.of(2023, 8, 15), true, 2L);
+        assertThat(restored.getTemplate(template.getId()).getCampos())
+                .extracting(TemplateField::getNombre, TemplateField::getTipo, TemplateField::getValorDefault)
+                .containsExactly(tuple("monto", TemplateField.FieldType.Real, "0.0"));
+        assertThat(restored.getDatasource(datasource.getId()))
+                .extracting(Datasource::getNombre, Datasource::getConfig, Datasource::getMapping,
+                            Datasource::getActivo, Datasource::getVersion)
+                .containsExactly("Clientes", "{}", null, null, null);
+        assertThat(restored.getDatasource(datasource.getId()).getCampos())
+                .extracting(DatasourceField::getNombre, DatasourceField::getValidaciones)
+                .containsExactly(tuple("rfc", "requerido;rfc"));
+
+        var bytes = Files.readAllBytes(paramSnapshotFile.getFile());
+
+        bytes[30] ^= 1;
+        Files.write(paramSnapshotFile.getFile(), bytes);
+        assertThatThrownBy(() -> paramSnapshotFile.load()).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void onlyConnectionFailuresSkipTheMigrations() {
+        assertThat(DataConfig.isConnectionFailure(
+                new FlywayException("Unable to obtain connection", new SQLException("Connection refused", "08001"))))
+                .isTrue();
+        assertThat(DataConfig.isConnectionFailure(new CannotGetJdbcConnectionException("Pool vacío"))).isTrue();
+        assertThat(DataConfig.isConnectionFailure(
+                new FlywayException("Migration V0006 failed", new SQLException("syntax error", "42601"))))
+                .isFalse();
+        assertThat(DataConfig.isConnectionFailure(new FlywayException("Validate failed: checksum mismatch")))
+                .isFalse();
+    }
+
+    @Test
+    void versionIsTheLastChangeSequence() {
+        when(systemRateRepository.findAll()).thenReturn(List.of(rate));
+        when(paramChangeRepository.findLastSequence()).thenReturn(41L);
+
+        var replica1 = newParamSnapshotService();
+        var replica2 = newParamSnapshotService();
+
+        assertThat(replica1.current().getVersion()).isEqualTo(41L);
+        assertThat(replica2.current().getVersion()).isEqualTo(41L);
+
+        // both replicas rebuild after the same change (local in one, remote in the other): same version
+        var event = ParamChangedEvent.saved(ParamType.SYSTEM_RATE, "MODIFICA_VARIABLE_SISTEMA", "TEST", rate);
+
+        when(paramChangeRepository.findLastSequence()).thenReturn(42L);
+        assertThat(replica1.rebuild(event).getVersion()).isEqualTo(42L);
+        assertThat(replica2.rebuild(event).getVersion()).isEqualTo(42L);
+    }
+
+    @Test
+    void templateChangesReloadOnlyThatTemplate() throws IOException {
+        var other = new Template(UUID.randomUUID(), "Pagaré", "pagare.ftl", Template.DestinoType.Email, "{}",
+                                 "<xml/>", LocalDate.of(2023, 8, 1), LocalDate.of(2023, 8, 1), "TEST", true, null);
+        var updated = new Template(template.getId(), "Contrato", "contrato-v2.ftl", Template.DestinoType.Email,
+                                   "{\"a\": 2}", "<xml/>", LocalDate.of(2023, 8, 1), LocalDate.of(2023, 8, 16),
+                                   "TEST", true, null);
+
+        when(paramChangeRepository.findLastSequence()).thenReturn(41L);
+        when(templateRepository.findAllWithContent()).thenReturn(List.of(template, other));
+        var loaded = paramSnapshotService.load();
+
+        assertThat(loaded.getTemplates()).hasSize(2);
+
+        when(paramChangeRepository.findLastSequence()).thenReturn(42L);
+        when(templateRepository.findAllWithContentByIdIn(Set.of(template.getId()))).thenReturn(List.of(updated));
+
+        var snapshot = paramSnapshotService.rebuild(ParamChangedEvent.saved(ParamType.TEMPLATE, "MODIFICA_TEMPLATE",
+                                                                            "TEST", updated));
+
+        assertThat(snapshot.getTemplate(template.getId()).getFileRepo()).isEqualTo("contrato-v2.ftl");
+        assertThat(snapshot.getTemplate(other.getId())).isSameAs(loaded.getTemplate(other.getId()));
+        verify(templateRepository, times(1)).findAllWithContent();
+
+        // the file is written later, once for a burst of changes
+        assertThat(paramSnapshotFile.load().orElseThrow().getVersion()).isEqualTo(41L);
+
+        when(paramChangeRepository.findLastSequence()).thenReturn(43L);
+        when(templateRepository.findAllWithContentByIdIn(Set.of(other.getId()))).thenReturn(List.of());
+
+        snapshot = paramSnapshotService.rebuild(ParamChangedEvent.remote(ParamType.TEMPLATE, "ELIMINA_TEMPLATE",
+                                                                         "TEST",
+                                                                         List.of(new ParamKey(other.getId(), null)),
+                                                                         true));
+        assertThat(snapshot.getTemplates()).extracting(Template::getId).containsExactly(template.getId());
+
+        paramSnapshotService.storeUnsaved();
+        assertThat(paramSnapshotFile.load().orElseThrow().getVersion()).isEqualTo(43L);
+    }
+
+    @Test
+    void degradedUntilTheDatabaseIsBack() {
+        when(paramChangeRepository.findLastSequence()).thenReturn(41L);
+        when(systemDateRepository.findAll()).thenReturn(List.of(today));
+        when(systemRateRepository.findAll()).thenReturn(List.of(rate));
+        when(documentTypeRepository.findAll()).thenReturn(List.of(documentType));
+
+        assertThat(paramSnapshotService.load().isDegraded()).isFalse();       // stored in the disk
+
+        var restarted = newParamSnapshotService();
+
+        when(systemDateRepository.findAll()).thenThrow(new DataAccessResourceFailureException("Postgres caído"));
+
+        var degraded = restarted.current();
+
+        assertThat(degraded.isDegraded()).isTrue();
+        assertThat(degraded.getSystemRate("MXN-DLR").getRate()).isEqualByComparingTo("17.0512");
+
+        restarted.recover();                    // still down
+        assertThat(restarted.current().isDegraded()).isTrue();
+
+        doReturn(List.of(today)).when(systemDateRepository).findAll();
+        when(paramChangeRepository.findLastSequence()).thenReturn(42L);
+        restarted.recover();
+        assertThat(restarted.current().isDegraded()).isFalse();
+        assertThat(restarted.current().getVersion()).isGreaterThan(degraded.getVersion());
+        verify(flyway, times(2)).ifAvailable(any());
+    }
+
+    private ParamSnapshotService newParamSnapshotService() {
+        return new ParamSnapshotService(systemDateRepository, systemRateRepository, documentTypeRepository,
+                                        templateRepository, datasourceRepository, paramChangeRepository,
+                                        paramSnapshotFile, flyway);
+    }
+
+    private static Template template() {
+        var template = new Template(UUID.randomUUID(), "Contrato", "contrato.ftl", Template.DestinoType.Email,
+                                    "{\"a\": 1}", "<xml/>", LocalDate.of(2023, 8, 1), LocalDate.of(2023, 8, 15),
+                                    "TEST", true, null);
+
+        template.setVersion(2L);
+        template.getCampos().add(new TemplateField(UUID.randomUUID(), template, "monto", TemplateField.FieldType.Real,
+                                                   "0.0"));
+
+        return template;
+    }
+
+    private static Datasource datasource() {
+        var datasource = new Datasource(UUID.randomUUID(), "Clientes", "{}", "<xml/>", "{}", null, null,
+                                        LocalDate.of(2023, 8, 1), LocalDate.of(2023, 8, 15), "TEST", null, null);
+
+        datasource.getCampos().add(new DatasourceField(UUID.randomUUID(), datasource, "rfc",
+                                                       DatasourceField.FieldType.Texto, "requerido;rfc"));
+
+        return datasource;
+    }
+}
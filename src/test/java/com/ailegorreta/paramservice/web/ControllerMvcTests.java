@@ -42,6 +42,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import javax.cache.CacheManager;
 import javax.sql.DataSource;
 
 import static org.mockito.Mockito.when;
@@ -112,6 +113,8 @@ class ControllerMvcTests {
     DataSource dataSource;
     @MockBean
     EntityManager entityManager;
+    @MockBean
+    CacheManager l2CacheManager;        // Hibernate second-level cache, see SecondLevelCacheConfig
 
     @Autowired
     private ObjectMapper objectMapper;
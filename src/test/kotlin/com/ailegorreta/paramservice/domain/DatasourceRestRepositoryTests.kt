@@ -121,6 +121,7 @@ class DatasourceRestRepositoryTests @Autowired constructor(
                                                 .map(Datasource::getActivo)))
                         ),
                         jsonPath("$.page").isNotEmpty,
+                        jsonPath("$._embedded.data_sources[*].json").doesNotExist(),
                         jsonPath("$.page.size").value(datasources.size),
                         jsonPath("$.page.number").value(0)
                     )
@@ -155,6 +156,7 @@ class DatasourceRestRepositoryTests @Autowired constructor(
                         jsonPath("$.fechaCreacion").value(datasource.fechaCreacion.toString()),
                         jsonPath("$.fechaModificacion").value(datasource.fechaModificacion.toString()),
                         jsonPath("$.activo").value(false),
+                        jsonPath("$.json").exists(),
                         jsonPath("$._links").isNotEmpty,
                         jsonPath("$._links.self.href", containsString("${BASE_PATH}/${datasource.id}")),
                         jsonPath("$._links.data_source.href", containsString("${BASE_PATH}/${datasource.id}")),
@@ -123,6 +123,7 @@ class TemplateRestRepositoryTests @Autowired constructor(
                                                                       .map(Template::getActivo)))
                     ),
                     jsonPath("$.page").isNotEmpty,
+                    jsonPath("$._embedded.templates[*].json").doesNotExist(),
                     jsonPath("$.page.size").value(templates.size),
                     jsonPath("$.page.number").value(0)
                 )
@@ -159,12 +160,23 @@ class TemplateRestRepositoryTests @Autowired constructor(
                     jsonPath("$.fechaCreacion").value(template.fechaCreacion.toString()),
                     jsonPath("$.fechaModificacion").value(template.fechaModificacion.toString()),
                     jsonPath("$.activo").value(false),
+                    jsonPath("$.json").exists(),
                     jsonPath("$._links").isNotEmpty,
                     jsonPath("$._links.self.href", containsString("${BASE_PATH}/${template.id}")),
                     jsonPath("$._links.template.href", containsString("${BASE_PATH}/${template.id}")),
                 )
                 .andDo(print())
         }
+
+        @Test
+        fun `Should reject a keyset page after an invalid cursor` () {
+            mockMvc.perform(get("/param/api/keyset/template")
+                .with(jwt().authorities(listOf(SimpleGrantedAuthority("SCOPE_iam.facultad"),
+                                               SimpleGrantedAuthority("ROLE_ADMINLEGO")))
+                )
+                .param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest)
+        }
     }
 
     @Nested
@@ -283,7 +295,8 @@ class TemplateRestRepositoryTests @Autowired constructor(
     inner class Post {
 
         @Test
-        fun `Should Create a Template` (@Autowired objectMapper: ObjectMapper) {
+        fun `Should Create a Template` (@Autowired objectMapper: ObjectMapper,
+                                        @Autowired paramChangeRepository: ParamChangeRepository) {
             val template = Template.builder()
                                     .nombre("Template name")
                                     .fileRepo("TEST")
@@ -332,6 +345,9 @@ class TemplateRestRepositoryTests @Autowired constructor(
                                     template.fechaModificacion)
 
                                  */
+            // the REST write is logged (and audited) as the GraphQL mutation addTemplate
+            assertThat(paramChangeRepository.findAll())
+                      .anyMatch { it.eventName == "ANADE_NUEVO_TEMPLATE" && it.entityId == templateID }
         }
     }
 
@@ -0,0 +1,97 @@
+/* Copyright (c) 2023, LegoSoft Soluciones, S.C.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are not permitted.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ *  PersistedQueryHttpTests.kt
+ *
+ *  Developed 2023 by LegoSoftSoluciones, S.C. www.legosoft.com.mx
+ */
+package com.ailegorreta.paramservice.gql
+
+import com.ailegorreta.paramservice.ParamServiceSpringDataREST
+import com.jayway.jsonpath.JsonPath
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.http.MediaType.APPLICATION_JSON
+import org.springframework.security.core.authority.SimpleGrantedAuthority
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt
+import org.springframework.test.web.servlet.MockMvc
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post
+
+private const val GRAPHQL_PATH = "/param/graphql"
+private const val DOCUMENT = "{ systemDates { name } }"
+
+/**
+ * Automatic persisted queries through /param/graphql: the hash-only request (without the "query" key) must reach
+ * PersistedQueryInterceptor (see PersistedQueryRequestFilter) instead of being rejected by Spring GraphQL.
+ *
+ * @project param-service
+ * @author rlh
+ * @date August 2023
+ */
+class PersistedQueryHttpTests @Autowired constructor(val mockMvc: MockMvc): ParamServiceSpringDataREST() {
+
+    @Test
+    fun `Should answer a hash only request with the registered document` () {
+        val hash = PersistedQueryInterceptor.sha256(DOCUMENT)
+        val extensions = """"extensions": { "persistedQuery": { "version": 1, "sha256Hash": "$hash" } }"""
+
+        var response = graphql("{ $extensions }")
+
+        assertThat(JsonPath.read<List<String>>(response, "$.errors[*].extensions.classification"))
+                  .containsExactly(PersistedQueryInterceptor.PERSISTED_QUERY_NOT_FOUND)
+
+        response = graphql("""{ "query": "$DOCUMENT", $extensions }""")
+        assertThat(JsonPath.read<List<String>>(response, "$.data.systemDates[*].name")).isNotEmpty
+
+        response = graphql("{ $extensions }")
+        assertThat(JsonPath.read<List<String>>(response, "$.data.systemDates[*].name")).isNotEmpty
+
+        response = graphql("""{ $extensions, "query": " " }""")
+        assertThat(JsonPath.read<List<String>>(response, "$.data.systemDates[*].name")).isNotEmpty
+    }
+
+    @Test
+    fun `Should pass the requests with a document unchanged` () {
+        val variables = """"variables": { "filler": "${"x".repeat(64 * 1024)}" }"""
+
+        var response = graphql("""{ "query": "$DOCUMENT", $variables }""")
+
+        assertThat(JsonPath.read<List<String>>(response, "$.data.systemDates[*].name")).isNotEmpty
+
+        response = graphql("""{ $variables, "operationName": null, "query": "$DOCUMENT" }""")
+        assertThat(JsonPath.read<List<String>>(response, "$.data.systemDates[*].name")).isNotEmpty
+    }
+
+    private fun graphql(body: String): String {
+        val result = mockMvc.perform(post(GRAPHQL_PATH)
+                                .with(jwt().authorities(listOf(SimpleGrantedAuthority("SCOPE_iam.facultad"),
+                                                               SimpleGrantedAuthority("ROLE_ADMINLEGO"))))
+                                .contentType(APPLICATION_JSON)
+                                .accept(APPLICATION_JSON)
+                                .content(body))
+                            .andReturn()
+        val response = if (result.request.isAsyncStarted) mockMvc.perform(asyncDispatch(result)).andReturn().response
+                       else result.response
+
+        assertThat(response.status).isEqualTo(200)
+
+        return response.contentAsString
+    }
+}